@@ -0,0 +1,92 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Dane do pomiarów, dostępne bez sieci: notowania z plików w {@code fixtures/} (format Stooq,
+ * 20 lat sesji, generowane procesem GARCH) oraz deterministycznie losowane stopy zwrotu i wartości końcowe.
+ */
+final class BenchmarkFixtures {
+
+    /** Instrumenty z plików {@code fixtures/<ticker>.csv}. */
+    static final List<String> TICKERS = List.of("BENCH_A", "BENCH_B");
+
+    private BenchmarkFixtures() {
+    }
+
+    static byte[] csv(String ticker) {
+        String resource = "fixtures/" + ticker.toLowerCase() + ".csv";
+        try (InputStream in = BenchmarkFixtures.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) throw new IllegalStateException("Brak fikstury " + resource);
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Usługa danych w trybie offline nad tymczasowym magazynem z fikstur
+     * ({@link PriceStore} importuje pliki CSV przy pierwszym odczycie).
+     */
+    static DataService offlineDataService() throws IOException {
+        Path directory = Files.createTempDirectory("riskfolio-bench");
+        directory.toFile().deleteOnExit();
+        for (String ticker : TICKERS) {
+            Path file = directory.resolve(PriceStore.fileStem(ticker) + ".csv");
+            Files.write(file, csv(ticker));
+            file.toFile().deleteOnExit();
+            directory.resolve(PriceStore.fileStem(ticker) + ".bin").toFile().deleteOnExit();
+        }
+        return new DataService(new PriceStore(directory), true);
+    }
+
+    /** Dzienne stopy zwrotu z procesu GARCH(1,1) (ω = 2e-6, α = 0,08, β = 0,90). */
+    static double[] garchReturns(int days, long seed) {
+        Random random = new Random(seed);
+        double omega = 2e-6, alpha = 0.08, beta = 0.90;
+        double variance = omega / (1 - alpha - beta);
+        double[] returns = new double[days];
+        for (int t = 0; t < days; t++) {
+            double r = 0.0003 + Math.sqrt(variance) * random.nextGaussian();
+            returns[t] = r;
+            variance = omega + alpha * r * r + beta * variance;
+        }
+        return returns;
+    }
+
+    /** Niezależne szoki N(0,1). */
+    static double[] gaussians(int count, long seed) {
+        Random random = new Random(seed);
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) values[i] = random.nextGaussian();
+        return values;
+    }
+
+    /** Wartości końcowe portfela (rozkład log-normalny wokół kapitału 100 000). */
+    static double[] finalValues(int count, long seed) {
+        Random random = new Random(seed);
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = 100_000 * Math.exp(0.05 + 0.2 * random.nextGaussian());
+        }
+        return values;
+    }
+
+    /** Lista instrumentów z {@code tickers.csv}, powielona do co najmniej {@code count} pozycji. */
+    static List<Instrument> instruments(Path tickersCsv, int count) {
+        InstrumentDatabase.loadTickersFromFile(tickersCsv.toString());
+        List<Instrument> base = InstrumentDatabase.getInstruments();
+        List<Instrument> result = new ArrayList<>(count);
+        for (int copy = 0; result.size() < count; copy++) {
+            for (Instrument i : base) {
+                result.add(copy == 0 ? i : new Instrument(i.name + " " + copy, i.ticker.replace(".", copy + ".")));
+            }
+        }
+        return result;
+    }
+}
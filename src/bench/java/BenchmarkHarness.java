@@ -0,0 +1,109 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pomiar pojedynczego przypadku: iteracje rozgrzewkowe, potem iteracje pomiarowe o zadanym czasie.
+ * Wynik to średni czas operacji z rozrzutem między iteracjami oraz liczba bajtów przydzielonych
+ * na operację przez wszystkie wątki (odpowiednik {@code gc.alloc.rate.norm} z {@code -prof gc} w JMH),
+ * a także liczba i czas odśmiecań w trakcie pomiaru.
+ *
+ * JMH nie obsługuje klas w pakiecie domyślnym (a klasy w nazwanym pakiecie nie widzą klas aplikacji),
+ * stąd własny, prosty mechanizm. Każdy przypadek warto uruchamiać w osobnej JVM (filtr w {@link Benchmarks}),
+ * żeby profil JIT z jednego przypadku nie wpływał na kolejny.
+ */
+final class BenchmarkHarness {
+
+    @FunctionalInterface
+    interface Operation {
+        Object run() throws Exception;
+    }
+
+    /**
+     * @param nsPerOp    średni czas operacji [ns]
+     * @param nsError    odchylenie standardowe czasu operacji między iteracjami [ns]
+     * @param bytesPerOp bajty przydzielone na operację (wszystkie wątki)
+     */
+    record Result(String benchmark, String params, double nsPerOp, double nsError, double opsPerSecond,
+                  double bytesPerOp, long gcCount, long gcMillis, long operations) {
+    }
+
+    // wynik każdej operacji trafia tutaj, aby JIT nie usunął obliczeń jako martwego kodu
+    static volatile Object sink;
+
+    private final int warmupIterations;
+    private final int iterations;
+    private final long iterationNanos;
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    BenchmarkHarness(int warmupIterations, int iterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.iterations = iterations;
+        this.iterationNanos = iterationMillis * 1_000_000L;
+    }
+
+    Result measure(String benchmark, String params, Operation op) throws Exception {
+        for (int i = 0; i < warmupIterations; i++) {
+            iteration(op);
+        }
+        System.gc();
+
+        long gcCountBefore = gcCount();
+        long gcMillisBefore = gcMillis();
+        long allocatedBefore = allocatedBytes();
+        List<Double> perOp = new ArrayList<>();
+        long totalOps = 0;
+        for (int i = 0; i < iterations; i++) {
+            long[] timed = iteration(op);
+            perOp.add((double) timed[1] / timed[0]);
+            totalOps += timed[0];
+        }
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        double mean = perOp.stream().mapToDouble(Double::doubleValue).average().orElse(0);
+        double variance = perOp.stream().mapToDouble(v -> (v - mean) * (v - mean)).sum() / Math.max(1, perOp.size() - 1);
+        return new Result(benchmark, params, mean, Math.sqrt(variance), 1e9 / mean,
+                (double) allocated / totalOps, gcCount() - gcCountBefore, gcMillis() - gcMillisBefore, totalOps);
+    }
+
+    /** Wykonuje operację co najmniej raz i aż do upływu czasu iteracji; zwraca {liczba operacji, czas [ns]}. */
+    private long[] iteration(Operation op) throws Exception {
+        long ops = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            sink = op.run();
+            ops++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < iterationNanos);
+        return new long[]{ops, elapsed};
+    }
+
+    private long allocatedBytes() {
+        long[] ids = threads.getAllThreadIds();
+        long sum = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(ids)) {
+            if (bytes > 0) sum += bytes;
+        }
+        return sum;
+    }
+
+    private static long gcCount() {
+        long sum = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            sum += Math.max(0, gc.getCollectionCount());
+        }
+        return sum;
+    }
+
+    private static long gcMillis() {
+        long sum = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            sum += Math.max(0, gc.getCollectionTime());
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,215 @@
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * Zestaw pomiarów gorących ścieżek aplikacji (profil Maven {@code benchmarks}):
+ * generowanie ścieżek (jądro skalarne i wektorowe), kalibracja GARCH (także wielu kandydatów naraz), VaR/CVaR, wczytywanie CSV i wyszukiwanie instrumentów.
+ *
+ * <pre>
+ * mvn -P benchmarks compile exec:exec                                   # wszystko
+ * mvn -P benchmarks compile exec:exec -Dbench.args="risk\\. -i 10 --out wyniki.json"
+ * </pre>
+ *
+ * Argumenty: wyrażenie regularne filtrujące nazwy przypadków, {@code -wi} (iteracje rozgrzewkowe),
+ * {@code -i} (iteracje pomiarowe), {@code -t} (czas iteracji w ms), {@code --out} (wyniki w JSON
+ * do porównywania między wersjami).
+ */
+public class Benchmarks {
+
+    private record Case(String benchmark, String params, BenchmarkHarness.Operation op) {
+    }
+
+    private static final List<String> ENGINE = List.of("engine.paths");
+    private static final List<String> KERNEL = List.of("kernel.garch");
+    private static final List<String> GARCH = List.of("garch.optimize", "garch.fit", "garch.errorScore", "garch.candidates");
+    private static final List<String> RISK = List.of("risk.var", "risk.cvar", "risk.summarize");
+    private static final List<String> CSV = List.of("csv.parse", "csv.parse.reused");
+    private static final List<String> INSTRUMENTS = List.of("instruments.build", "instruments.search");
+
+    public static void main(String[] args) throws Exception {
+        Pattern filter = Pattern.compile(".*");
+        int warmup = 3;
+        int iterations = 5;
+        long iterationMillis = 1000;
+        String output = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-wi" -> warmup = Integer.parseInt(args[++i]);
+                case "-i" -> iterations = Integer.parseInt(args[++i]);
+                case "-t" -> iterationMillis = Long.parseLong(args[++i]);
+                case "--out" -> output = args[++i];
+                default -> filter = Pattern.compile(args[i]);
+            }
+        }
+
+        BenchmarkHarness harness = new BenchmarkHarness(warmup, iterations, iterationMillis);
+        List<BenchmarkHarness.Result> results = new ArrayList<>();
+        System.out.printf(Locale.ROOT, "%-28s %-40s %14s %12s %14s %8s%n", "Benchmark", "(params)", "ns/op", "error", "B/op", "GC");
+        for (Case c : cases(filter)) {
+            BenchmarkHarness.Result r = harness.measure(c.benchmark(), c.params(), c.op());
+            results.add(r);
+            System.out.printf(Locale.ROOT, "%-28s %-40s %14.1f %12.1f %14.1f %8d%n",
+                    r.benchmark(), r.params(), r.nsPerOp(), r.nsError(), r.bytesPerOp(), r.gcCount());
+        }
+        if (output != null) {
+            new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(new File(output), results);
+        }
+        System.exit(0); // wątki puli obliczeniowej i pobierania są demonami, ale nie czekamy na nie
+    }
+
+    /**
+     * Przypadki pasujące do filtra. Dane przygotowywane są tylko dla grup, których nazwy pasują do filtra
+     * (albo dla wszystkich, gdy filtr dotyczy wyłącznie parametrów).
+     */
+    private static List<Case> cases(Pattern filter) throws Exception {
+        boolean anyNamed = List.of(ENGINE, KERNEL, GARCH, RISK, CSV, INSTRUMENTS).stream()
+                .flatMap(List::stream).anyMatch(name -> filter.matcher(name).find());
+        List<Case> all = new ArrayList<>();
+        if (!anyNamed || matches(filter, ENGINE)) addEngineCases(all);
+        if (!anyNamed || matches(filter, KERNEL)) addKernelCases(all);
+        if (!anyNamed || matches(filter, GARCH)) addGarchCases(all);
+        if (!anyNamed || matches(filter, RISK)) addRiskCases(all);
+        if (!anyNamed || matches(filter, CSV)) addCsvCases(all);
+        if (!anyNamed || matches(filter, INSTRUMENTS)) addInstrumentCases(all);
+        return all.stream().filter(c -> filter.matcher(c.benchmark() + " " + c.params()).find()).toList();
+    }
+
+    private static boolean matches(Pattern filter, List<String> benchmarks) {
+        return benchmarks.stream().anyMatch(name -> filter.matcher(name).find());
+    }
+
+    /**
+     * Pełne {@link MonteCarloEngine#runSimulation} na danych z fikstur; kalibracja po pierwszym
+     * wywołaniu pochodzi z pamięci podręcznej, więc mierzone jest głównie generowanie ścieżek.
+     * Przy dostępnym Vector API każdy przypadek liczony jest obydwoma jądrami.
+     */
+    private static void addEngineCases(List<Case> all) throws Exception {
+        DataService dataService = BenchmarkFixtures.offlineDataService();
+        List<Double> weights = List.of(0.5, 0.5);
+        for (PathKernel kernel : kernels()) {
+            MonteCarloEngine engine = new MonteCarloEngine(dataService, kernel);
+            for (int horizon : new int[]{21, 252}) {
+                for (int paths : new int[]{10_000, 100_000}) {
+                    for (SimulationOptions.PathStorage storage : new SimulationOptions.PathStorage[]{
+                            SimulationOptions.PathStorage.FINAL_VALUES, SimulationOptions.PathStorage.FULL_PATHS}) {
+                        SimulationOptions options = SimulationOptions.defaults().withNumSimulations(paths).withSeed(1).withStorage(storage);
+                        all.add(new Case("engine.paths", String.format("horizon=%d paths=%d %s %s", horizon, paths, storage, kernelName(kernel)),
+                                () -> engine.runSimulation(100_000, horizon, BenchmarkFixtures.TICKERS, weights, 5, false, options)));
+                    }
+                }
+            }
+        }
+    }
+
+    /** Sam krok GARCH: {@link PathKernel#WIDTH} ścieżek przez cały horyzont, bez losowania i pasm. */
+    private static void addKernelCases(List<Case> all) {
+        int horizon = 252;
+        double[] z = BenchmarkFixtures.gaussians(horizon * PathKernel.WIDTH, 5);
+        double[] price = new double[PathKernel.WIDTH];
+        double[] variance = new double[PathKernel.WIDTH];
+        double[] sumSquares = new double[PathKernel.WIDTH];
+        for (PathKernel kernel : kernels()) {
+            all.add(new Case("kernel.garch", "horizon=" + horizon + " paths=" + PathKernel.WIDTH + " " + kernelName(kernel), () -> {
+                Arrays.fill(price, 100_000);
+                Arrays.fill(variance, 1e-4);
+                Arrays.fill(sumSquares, 0.0);
+                for (int d = 0; d < horizon; d++) {
+                    kernel.step(z, d * PathKernel.WIDTH, price, variance, sumSquares, 1.0003, 2e-6, 0.08, 0.90);
+                }
+                return price[0];
+            }));
+        }
+    }
+
+    private static List<PathKernel> kernels() {
+        List<PathKernel> kernels = new ArrayList<>(List.of(PathKernel.scalar()));
+        PathKernel.vector().ifPresent(kernels::add);
+        return kernels;
+    }
+
+    private static String kernelName(PathKernel kernel) {
+        return kernel == PathKernel.scalar() ? "scalar" : "vector";
+    }
+
+    private static void addGarchCases(List<Case> all) {
+        GarchOptimizer optimizer = new GarchOptimizer();
+        for (int years : new int[]{1, 5, 10, 20}) {
+            double[] returns = BenchmarkFixtures.garchReturns(252 * years, years);
+            List<Double> boxed = Arrays.stream(returns).boxed().toList();
+            double variance = Arrays.stream(returns).map(r -> r * r).average().orElse(0);
+            String params = "years=" + years;
+            all.add(new Case("garch.optimize", params, () -> optimizer.optimize(boxed)));
+            all.add(new Case("garch.fit", params, () -> optimizer.fit(returns)));
+            all.add(new Case("garch.errorScore", params,
+                    () -> optimizer.calculateErrorScore(returns, 0.08, 0.90, variance * 0.02, variance)));
+            addCandidateCases(all, optimizer, returns, variance, params);
+        }
+    }
+
+    /** K kandydatów (α, β): jednym przebiegiem {@link GarchLikelihood} oraz K osobnymi przebiegami. */
+    private static void addCandidateCases(List<Case> all, GarchOptimizer optimizer, double[] returns, double variance, String params) {
+        int k = 2000;
+        Random random = new Random(k);
+        double[] alpha = new double[k];
+        double[] beta = new double[k];
+        for (int i = 0; i < k; i++) {
+            alpha[i] = 0.01 + 0.15 * random.nextDouble();
+            beta[i] = (0.98 - alpha[i]) * random.nextDouble();
+        }
+        GarchLikelihood likelihood = new GarchLikelihood(returns);
+        all.add(new Case("garch.candidates", params + " K=" + k + " batch",
+                () -> likelihood.evaluateTargeted(alpha, beta, variance)));
+        all.add(new Case("garch.candidates", params + " K=" + k + " loop", () -> {
+            double sum = 0.0;
+            for (int i = 0; i < k; i++) {
+                sum += optimizer.calculateErrorScore(returns, alpha[i], beta[i], variance * (1 - alpha[i] - beta[i]), variance);
+            }
+            return sum;
+        }));
+    }
+
+    private static void addRiskCases(List<Case> all) {
+        RiskService risk = new RiskService();
+        for (int count : new int[]{10_000, 100_000, 1_000_000, 10_000_000}) {
+            double[] values = BenchmarkFixtures.finalValues(count, count);
+            String params = "n=" + count;
+            all.add(new Case("risk.var", params, () -> risk.calculateVaR(values, 0.95)));
+            all.add(new Case("risk.cvar", params, () -> risk.calculateCVaR(values, 0.95)));
+            all.add(new Case("risk.summarize", params, () -> risk.summarize(values, RiskSummary.standardLevels())));
+        }
+    }
+
+    private static void addCsvCases(List<Case> all) throws IOException {
+        for (String ticker : BenchmarkFixtures.TICKERS) {
+            byte[] csv = BenchmarkFixtures.csv(ticker);
+            StooqCsvParser parser = new StooqCsvParser();
+            String params = ticker + " rows=" + StooqCsvParser.parse(new ByteArrayInputStream(csv)).size();
+            all.add(new Case("csv.parse", params, () -> StooqCsvParser.parse(new ByteArrayInputStream(csv))));
+            all.add(new Case("csv.parse.reused", params, () -> parser.read(new ByteArrayInputStream(csv)).size()));
+        }
+    }
+
+    private static void addInstrumentCases(List<Case> all) {
+        Path tickers = Path.of("tickers.csv");
+        // lista z pliku w całości oraz powielona do 100 tys. pozycji
+        for (int count : new int[]{1, 100_000}) {
+            List<Instrument> instruments = BenchmarkFixtures.instruments(tickers, count);
+            InstrumentIndex index = new InstrumentIndex(instruments);
+            all.add(new Case("instruments.build", "n=" + instruments.size(), () -> new InstrumentIndex(instruments)));
+            for (String query : new String[]{"a", "pk", "bank", "cd projekt", "inc", "łódź"}) {
+                all.add(new Case("instruments.search", "n=" + instruments.size() + " q=" + query, () -> index.search(query, 15)));
+            }
+        }
+    }
+}
@@ -0,0 +1,263 @@
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tryb wsadowy bez interfejsu graficznego: VaR/CVaR dla wielu portfeli z pliku JSON
+ * (np. nocne przeliczenie portfeli klientów).
+ *
+ * Wszystkie portfele liczone są jednym {@link MonteCarloEngine}, więc dzielą pobrane notowania
+ * (najpierw pobierane są naraz wszystkie instrumenty z pliku) i pamięć podręczną kalibracji.
+ * Portfele przetwarzane są równolegle w {@link ComputePool}; błąd jednego portfela trafia do jego
+ * wyniku i nie przerywa pozostałych. Wyniki zapisywane są jako JSON albo CSV (po rozszerzeniu pliku).
+ *
+ * <pre>
+ * java -jar RiskFolio.jar --batch portfele.json [--out wyniki.json|wyniki.csv] [--offline] [--metrics metryki.json]
+ * </pre>
+ *
+ * {@code --metrics} zapisuje po przebiegu migawkę {@link Metrics} (czasy etapów, źródła danych,
+ * przepustowość generowania ścieżek).
+ *
+ * Format wejścia (pola portfela pominięte - z sekcji {@code defaults}, wagi domyślnie równe):
+ * <pre>
+ * { "defaults": { "capital": 100000, "horizon": 252, "historyYears": 5, "interpolation": true,
+ *                 "simulations": 10000, "seed": 42 },
+ *   "portfolios": [ { "id": "klient-001", "tickers": ["PKO", "CDR"], "weights": [0.6, 0.4] } ] }
+ * </pre>
+ */
+public class BatchRunner {
+
+    /** Ustawienia wspólne dla portfeli; brakujące pola przyjmują wartości jak w aplikacji. */
+    public record Defaults(Double capital, Integer horizon, Integer historyYears, Boolean interpolation,
+                           Integer simulations, Long seed) {
+    }
+
+    public record Portfolio(String id, List<String> tickers, List<Double> weights, Double capital, Integer horizon,
+                            Integer historyYears, Boolean interpolation, Integer simulations, Long seed) {
+    }
+
+    public record Input(Defaults defaults, List<Portfolio> portfolios) {
+    }
+
+    /** Wynik jednego portfela; przy błędzie wypełnione są tylko {@code id} i {@code error}. */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Result(String id, Double capital, Integer horizon, Integer simulations,
+                         Double mean, Double meanStdError,
+                         Map<String, Double> var, Map<String, Double> cvar,
+                         Double var95StdError, Double cvar95StdError,
+                         Double seconds, String error) {
+
+        static Result failed(String id, String error) {
+            return new Result(id, null, null, null, null, null, null, null, null, null, null, error);
+        }
+    }
+
+    /** {@code generated} - chwila zakończenia w formacie ISO-8601. */
+    public record Report(String generated, int portfolios, int succeeded, int failed,
+                         double elapsedSeconds, double portfoliosPerSecond, List<Result> results) {
+    }
+
+    private static final double DEFAULT_CAPITAL = 100_000;
+    private static final int DEFAULT_HORIZON = 252;
+    private static final int DEFAULT_HISTORY_YEARS = 5;
+    private static final int DEFAULT_SIMULATIONS = 10_000;
+    private static final double WEIGHT_TOLERANCE = 0.01;
+
+    private final MonteCarloEngine engine;
+
+    public BatchRunner(MonteCarloEngine engine) {
+        this.engine = engine;
+    }
+
+    public static void main(String[] args) {
+        String input = null;
+        String output = null;
+        String metrics = null;
+        boolean offline = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--out" -> output = i + 1 < args.length ? args[++i] : null;
+                case "--offline" -> offline = true;
+                case "--metrics" -> metrics = i + 1 < args.length ? args[++i] : null;
+                default -> input = args[i];
+            }
+        }
+        if (input == null) {
+            System.err.println("Użycie: --batch <portfele.json> [--out wyniki.json|wyniki.csv] [--offline] [--metrics metryki.json]");
+            System.exit(2);
+        }
+
+        try {
+            ObjectMapper mapper = mapper();
+            Input spec = mapper.readValue(new File(input), Input.class);
+            DataService dataService = new DataService(new PriceStore(PriceStore.defaultDirectory()), offline);
+            Report report = new BatchRunner(new MonteCarloEngine(dataService)).run(spec);
+
+            if (output == null) {
+                System.out.println(mapper.writeValueAsString(report));
+            } else if (output.toLowerCase(Locale.ROOT).endsWith(".csv")) {
+                Files.writeString(Path.of(output), toCsv(report), StandardCharsets.UTF_8);
+            } else {
+                mapper.writeValue(new File(output), report);
+            }
+            if (metrics != null) {
+                Metrics.global().writeJson(Path.of(metrics));
+            }
+            System.err.printf(Locale.ROOT, "Przetworzono %d portfeli (%d błędów) w %.1f s: %.2f portfeli/s%n",
+                    report.portfolios(), report.failed(), report.elapsedSeconds(), report.portfoliosPerSecond());
+            System.exit(report.failed() == 0 ? 0 : 1);
+        } catch (IOException e) {
+            System.err.println("Błąd odczytu lub zapisu: " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    static ObjectMapper mapper() {
+        return new ObjectMapper()
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .enable(SerializationFeature.INDENT_OUTPUT);
+    }
+
+    /** Przelicza wszystkie portfele; wyniki w kolejności z pliku. */
+    public Report run(Input spec) {
+        Defaults defaults = spec.defaults() != null ? spec.defaults() : new Defaults(null, null, null, null, null, null);
+        List<Portfolio> portfolios = spec.portfolios() != null ? spec.portfolios() : List.of();
+        long start = System.nanoTime();
+
+        prefetch(portfolios);
+        AtomicInteger finished = new AtomicInteger();
+        List<Result> results = ComputePool.map(0, portfolios.size(), i -> {
+            Result result = evaluate(portfolios.get(i), i, defaults);
+            System.err.printf(Locale.ROOT, "[%d/%d] %s: %s%n", finished.incrementAndGet(), portfolios.size(), result.id(),
+                    result.error() == null ? String.format(Locale.ROOT, "VaR 95%% %.2f", result.var().get("0.95")) : result.error());
+            return result;
+        });
+
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        int failed = (int) results.stream().filter(r -> r.error() != null).count();
+        return new Report(Instant.now().toString(), results.size(), results.size() - failed, failed,
+                elapsed, elapsed > 0 ? results.size() / elapsed : 0, results);
+    }
+
+    /** Pobiera naraz wszystkie instrumenty z pliku (błędy zgłosi później portfel, który ich potrzebuje). */
+    private void prefetch(List<Portfolio> portfolios) {
+        Set<String> tickers = new LinkedHashSet<>();
+        for (Portfolio p : portfolios) {
+            if (p.tickers() != null) tickers.addAll(p.tickers());
+        }
+        List<CompletableFuture<PriceSeries>> futures = tickers.stream().map(engine.getDataService()::getPricesAsync).toList();
+        for (CompletableFuture<PriceSeries> f : futures) {
+            f.exceptionally(e -> null).join();
+        }
+    }
+
+    private Result evaluate(Portfolio p, int index, Defaults d) {
+        String id = p.id() != null ? p.id() : "portfel-" + (index + 1);
+        try {
+            if (p.tickers() == null || p.tickers().isEmpty()) {
+                throw new IllegalArgumentException("Portfel bez instrumentów.");
+            }
+            List<Double> weights = p.weights() != null ? p.weights()
+                    : Collections.nCopies(p.tickers().size(), 1.0 / p.tickers().size());
+            if (weights.size() != p.tickers().size()) {
+                throw new IllegalArgumentException("Liczba wag (" + weights.size() + ") różna od liczby instrumentów ("
+                        + p.tickers().size() + ").");
+            }
+            if (Math.abs(weights.stream().mapToDouble(w -> w).sum() - 1.0) > WEIGHT_TOLERANCE) {
+                throw new IllegalArgumentException("Suma wag musi wynosić 1.0");
+            }
+            double capital = first(p.capital(), d.capital(), DEFAULT_CAPITAL);
+            int horizon = first(p.horizon(), d.horizon(), DEFAULT_HORIZON);
+            int historyYears = first(p.historyYears(), d.historyYears(), DEFAULT_HISTORY_YEARS);
+            boolean interpolation = first(p.interpolation(), d.interpolation(), true);
+            int simulations = first(p.simulations(), d.simulations(), DEFAULT_SIMULATIONS);
+            Long seed = p.seed() != null ? p.seed() : d.seed();
+
+            SimulationOptions options = SimulationOptions.defaults()
+                    .withNumSimulations(simulations)
+                    .withStorage(SimulationOptions.PathStorage.FINAL_VALUES);
+            if (seed != null) options = options.withSeed(seed);
+
+            long start = System.nanoTime();
+            SimulationResult result = engine.runSimulation(capital, horizon, p.tickers(), weights, historyYears, interpolation, options);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            RiskSummary summary = result.summary();
+            Map<String, Double> var = new LinkedHashMap<>();
+            Map<String, Double> cvar = new LinkedHashMap<>();
+            for (int i = 0; i < summary.confidences().length; i++) {
+                String level = String.valueOf(summary.confidences()[i]);
+                var.put(level, summary.var()[i]);
+                cvar.put(level, summary.cvar()[i]);
+            }
+            PrecisionReport precision = result.precision();
+            return new Result(id, capital, horizon, simulations, summary.mean(), precision.meanStdError(), var, cvar,
+                    precision.varStdError(), precision.cvarStdError(), seconds, null);
+        } catch (Exception e) {
+            return Result.failed(id, e.getMessage() != null ? e.getMessage() : e.toString());
+        }
+    }
+
+    private static <T> T first(T value, T fallback, T defaultValue) {
+        return value != null ? value : fallback != null ? fallback : defaultValue;
+    }
+
+    /** Jeden wiersz na portfel, separator ';' jak w tickers.csv, liczby z kropką dziesiętną. */
+    static String toCsv(Report report) {
+        double[] levels = RiskSummary.standardLevels();
+        StringWriter out = new StringWriter();
+        PrintWriter w = new PrintWriter(out);
+        List<String> header = new ArrayList<>(List.of("id", "capital", "horizon", "simulations", "mean", "mean_se"));
+        for (double level : levels) header.add("var_" + level);
+        for (double level : levels) header.add("cvar_" + level);
+        header.addAll(List.of("var_95_se", "cvar_95_se", "seconds", "error"));
+        w.println(String.join(";", header));
+        for (Result r : report.results()) {
+            List<String> row = new ArrayList<>();
+            row.add(csvText(r.id()));
+            row.add(csvNumber(r.capital()));
+            row.add(r.horizon() == null ? "" : r.horizon().toString());
+            row.add(r.simulations() == null ? "" : r.simulations().toString());
+            row.add(csvNumber(r.mean()));
+            row.add(csvNumber(r.meanStdError()));
+            for (double level : levels) row.add(csvNumber(r.var() == null ? null : r.var().get(String.valueOf(level))));
+            for (double level : levels) row.add(csvNumber(r.cvar() == null ? null : r.cvar().get(String.valueOf(level))));
+            row.add(csvNumber(r.var95StdError()));
+            row.add(csvNumber(r.cvar95StdError()));
+            row.add(csvNumber(r.seconds()));
+            row.add(r.error() == null ? "" : csvText(r.error()));
+            w.println(String.join(";", row));
+        }
+        w.flush();
+        return out.toString();
+    }
+
+    private static String csvNumber(Double value) {
+        return value == null ? "" : String.format(Locale.ROOT, "%.4f", value);
+    }
+
+    private static String csvText(String text) {
+        if (text.indexOf(';') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0) return text;
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+}
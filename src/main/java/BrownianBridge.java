@@ -0,0 +1,67 @@
+/**
+ * Konstrukcja mostu Browna dla kroków jednostkowych. Zamienia wektor niezależnych
+ * normalnych N(0,1) na przyrosty ruchu Browna tak, że pierwsze współrzędne wejścia
+ * wyznaczają najważniejsze punkty (koniec, środek, ćwiartki...). W połączeniu z ciągiem
+ * Sobola najlepsze współrzędne ciągu trafiają tam, gdzie najbardziej wpływają na wynik.
+ */
+final class BrownianBridge {
+
+    private final int size;
+    private final int[] bridgeIndex;
+    private final int[] leftIndex;
+    private final int[] rightIndex;
+    private final double[] leftWeight;
+    private final double[] rightWeight;
+    private final double[] stdDev;
+
+    BrownianBridge(int size) {
+        this.size = size;
+        bridgeIndex = new int[size];
+        leftIndex = new int[size];
+        rightIndex = new int[size];
+        leftWeight = new double[size];
+        rightWeight = new double[size];
+        stdDev = new double[size];
+
+        // Punkt l odpowiada czasowi t = l + 1.
+        int[] map = new int[size];
+        map[size - 1] = 1;
+        bridgeIndex[0] = size - 1;
+        stdDev[0] = Math.sqrt(size);
+
+        for (int j = 0, i = 1; i < size; i++) {
+            while (map[j] != 0) j++;
+            int k = j;
+            while (map[k] == 0) k++;
+
+            int l = j + ((k - 1 - j) >> 1);
+            map[l] = i;
+            bridgeIndex[i] = l;
+            leftIndex[i] = j;
+            rightIndex[i] = k;
+
+            double tl = l + 1, tk = k + 1, tj = j; // tj: czas punktu j - 1
+            leftWeight[i] = (tk - tl) / (tk - tj);
+            rightWeight[i] = (tl - tj) / (tk - tj);
+            stdDev[i] = Math.sqrt((tl - tj) * (tk - tl) / (tk - tj));
+
+            j = k + 1;
+            if (j >= size) j = 0;
+        }
+    }
+
+    /** Przekształca normalne {@code normals} w przyrosty {@code increments} (oba o długości size). */
+    void transform(double[] normals, double[] increments) {
+        increments[size - 1] = stdDev[0] * normals[0];
+        for (int i = 1; i < size; i++) {
+            int j = leftIndex[i];
+            int k = rightIndex[i];
+            int l = bridgeIndex[i];
+            double left = j != 0 ? leftWeight[i] * increments[j - 1] : 0.0;
+            increments[l] = left + rightWeight[i] * increments[k] + stdDev[i] * normals[i];
+        }
+        for (int i = size - 1; i >= 1; i--) {
+            increments[i] -= increments[i - 1];
+        }
+    }
+}
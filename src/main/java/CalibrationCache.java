@@ -0,0 +1,97 @@
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Pamięć podręczna kalibracji GARCH z wypieraniem LRU.
+ * Kluczem jest skład portfela i okno danych, więc zmiana kapitału lub horyzontu
+ * nie wymaga ponownej kalibracji. Przy niewielkiej zmianie wag optymalizator może
+ * wystartować z parametrów najbliższego zapamiętanego portfela. Razem z dopasowaniem zapamiętywana
+ * jest powierzchnia wiarygodności (diagnostyka raportu), która zależy tylko od danych i dopasowania.
+ */
+public class CalibrationCache {
+
+    /**
+     * @param lastDataDate data ostatniej notowanej sesji w danych portfela (null, gdy nieznana)
+     */
+    public record Key(List<String> tickers, List<Double> weights, int historyYears,
+                      boolean interpolation, LocalDate lastDataDate) {
+
+        public Key {
+            tickers = List.copyOf(tickers);
+            weights = List.copyOf(weights);
+        }
+
+        private boolean sameUniverse(Key other) {
+            return tickers.equals(other.tickers) && historyYears == other.historyYears
+                    && interpolation == other.interpolation
+                    && Objects.equals(lastDataDate, other.lastDataDate);
+        }
+
+        /** Odległość L1 między wektorami wag (tylko dla tego samego zestawu instrumentów). */
+        private double weightDistance(Key other) {
+            double sum = 0.0;
+            for (int i = 0; i < weights.size(); i++) {
+                sum += Math.abs(weights.get(i) - other.weights.get(i));
+            }
+            return sum;
+        }
+    }
+
+    /** Zapamiętana kalibracja: dopasowanie i jego powierzchnia wiarygodności. */
+    public record Entry(GarchFit fit, GarchLikelihood.Surface surface) {
+    }
+
+    private final int capacity;
+    private final double maxWarmStartDistance;
+    private final LinkedHashMap<Key, Entry> entries;
+
+    /**
+     * @param capacity             maksymalna liczba zapamiętanych kalibracji
+     * @param maxWarmStartDistance maksymalna odległość L1 wag, przy której używamy ciepłego startu
+     */
+    public CalibrationCache(int capacity, double maxWarmStartDistance) {
+        this.capacity = capacity;
+        this.maxWarmStartDistance = maxWarmStartDistance;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > CalibrationCache.this.capacity;
+            }
+        };
+    }
+
+    public synchronized Entry get(Key key) {
+        return entries.get(key);
+    }
+
+    public synchronized void put(Key key, GarchFit fit, GarchLikelihood.Surface surface) {
+        entries.put(key, new Entry(fit, surface));
+    }
+
+    /** Parametry najbliższej (w sensie wag) kalibracji tego samego zestawu instrumentów i okna danych. */
+    public synchronized Optional<GarchParams> nearestStart(Key key) {
+        GarchParams best = null;
+        double bestDistance = maxWarmStartDistance;
+        for (Map.Entry<Key, Entry> e : entries.entrySet()) {
+            if (!e.getKey().sameUniverse(key)) continue;
+            double distance = e.getKey().weightDistance(key);
+            if (distance <= bestDistance) {
+                bestDistance = distance;
+                best = e.getValue().fit().params();
+            }
+        }
+        return Optional.ofNullable(best);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+}
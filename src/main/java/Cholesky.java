@@ -0,0 +1,68 @@
+/**
+ * Rozkład Cholesky'ego macierzy symetrycznej dodatnio określonej, A = L·Lᵀ, na płaskich tablicach
+ * (wierszami, n×n). Wariant blokowy "prawostronny": po rozłożeniu bloku diagonalnego liczony jest
+ * panel pod nim, a następnie aktualizowana pozostała część macierzy; pętle wewnętrzne biegną
+ * wzdłuż wierszy, więc dla kilkudziesięciu i więcej aktywów dane bloku pozostają w pamięci podręcznej.
+ */
+final class Cholesky {
+
+    private static final int BLOCK = 32;
+
+    private Cholesky() {
+    }
+
+    /**
+     * Zwraca dolnotrójkątne L (wierszami, n×n, zera nad przekątną).
+     *
+     * @throws IllegalArgumentException gdy macierz nie jest dodatnio określona
+     */
+    static double[] decompose(double[] a, int n) {
+        double[] l = a.clone();
+
+        for (int k0 = 0; k0 < n; k0 += BLOCK) {
+            int k1 = Math.min(n, k0 + BLOCK);
+
+            // blok diagonalny
+            for (int j = k0; j < k1; j++) {
+                double d = l[j * n + j] - dot(l, j * n, j * n, k0, j);
+                if (!(d > 0)) {
+                    throw new IllegalArgumentException("Macierz nie jest dodatnio określona (wiersz " + j + ").");
+                }
+                double djj = Math.sqrt(d);
+                l[j * n + j] = djj;
+                for (int i = j + 1; i < k1; i++) {
+                    l[i * n + j] = (l[i * n + j] - dot(l, i * n, j * n, k0, j)) / djj;
+                }
+            }
+
+            // panel pod blokiem diagonalnym: L21 = A21 · L11⁻ᵀ
+            for (int i = k1; i < n; i++) {
+                for (int j = k0; j < k1; j++) {
+                    l[i * n + j] = (l[i * n + j] - dot(l, i * n, j * n, k0, j)) / l[j * n + j];
+                }
+            }
+
+            // aktualizacja reszty: A22 -= L21 · L21ᵀ (tylko dolny trójkąt)
+            for (int i = k1; i < n; i++) {
+                for (int j = k1; j <= i; j++) {
+                    l[i * n + j] -= dot(l, i * n, j * n, k0, k1);
+                }
+            }
+        }
+
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                l[i * n + j] = 0.0;
+            }
+        }
+        return l;
+    }
+
+    private static double dot(double[] m, int rowA, int rowB, int from, int to) {
+        double sum = 0.0;
+        for (int p = from; p < to; p++) {
+            sum += m[rowA + p] * m[rowB + p];
+        }
+        return sum;
+    }
+}
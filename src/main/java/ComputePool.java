@@ -0,0 +1,77 @@
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Dedykowana pula wątków obliczeniowych symulacji, o rozmiarze równym liczbie procesorów.
+ * Strumienie równoległe uruchomione z zadania tej puli wykonują się w niej, a nie we wspólnej
+ * {@link ForkJoinPool#commonPool()}, więc symulacja nie konkuruje z innymi użytkownikami puli wspólnej.
+ */
+final class ComputePool {
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(
+            Runtime.getRuntime().availableProcessors(),
+            pool -> {
+                ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                t.setName("mc-compute-" + t.getPoolIndex());
+                t.setDaemon(true);
+                return t;
+            },
+            null, false);
+
+    private ComputePool() {
+    }
+
+    /** Równoległe {@code body(i)} dla i z [from, to). */
+    static void forEach(int from, int to, IntConsumer body) {
+        run(() -> IntStream.range(from, to).parallel().forEach(body));
+    }
+
+    /**
+     * Równoległe {@code body(state, i)} dla i z [from, to) ze stanem roboczym tworzonym przez
+     * {@code open} raz na zadanie (najwyżej tyle zadań, ile wątków puli) i używanym dla kolejnych
+     * indeksów; na koniec zadania stan trafia do {@code close}. Indeksy pobierane są ze wspólnego
+     * licznika, więc zadania same wyrównują obciążenie. Stan nie jest związany z wątkiem (bez
+     * {@link ThreadLocal}), więc nic nie zostaje w wątkach puli po zakończeniu.
+     */
+    static <S> void forEach(int from, int to, Supplier<S> open, ObjIntConsumer<S> body, Consumer<S> close) {
+        int tasks = Math.min(POOL.getParallelism(), to - from);
+        if (tasks <= 0) return;
+        AtomicInteger next = new AtomicInteger(from);
+        forEach(0, tasks, t -> {
+            S state = open.get();
+            try {
+                for (int i = next.getAndIncrement(); i < to; i = next.getAndIncrement()) body.accept(state, i);
+            } finally {
+                close.accept(state);
+            }
+        });
+    }
+
+    /** Równoległe {@code body(i)} dla i z [from, to); wyniki w kolejności indeksów. */
+    static <T> List<T> map(int from, int to, IntFunction<T> body) {
+        return call(() -> IntStream.range(from, to).parallel().mapToObj(body).toList());
+    }
+
+    private static void run(Runnable task) {
+        call(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    private static <T> T call(Supplier<T> task) {
+        if (ForkJoinTask.getPool() == POOL) {
+            return task.get(); // już w puli - zagnieżdżona równoległość korzysta z tych samych wątków
+        }
+        return POOL.submit(task::get).join();
+    }
+}
@@ -0,0 +1,52 @@
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Skalibrowany model wieloaktywowy CCC-GARCH: osobny GARCH(1,1) dla każdego instrumentu
+ * i stała macierz korelacji reszt standaryzowanych (wraz z jej czynnikiem Cholesky'ego).
+ * Nie zależy od wag ani kapitału, więc może być użyty ponownie przy zmianie składu portfela.
+ *
+ * @param drifts       średnie dzienne stopy zwrotu instrumentów
+ * @param correlation  macierz korelacji reszt (n×n, wierszami), po ewentualnym ściągnięciu do jednostkowej
+ * @param cholesky     dolnotrójkątny czynnik L macierzy korelacji (n×n, wierszami)
+ * @param shrinkage    waga macierzy jednostkowej użyta, by korelacja była dodatnio określona (zwykle 0)
+ * @param observations liczba wspólnych sesji użytych do kalibracji
+ * @param dataReport   opis jakości danych z etapu wyrównania historii
+ * @param calibratedOn dzień kalibracji
+ */
+public record CorrelatedModel(
+        List<String> tickers,
+        int historyYears,
+        boolean interpolation,
+        List<GarchFit> fits,
+        double[] drifts,
+        double[] correlation,
+        double[] cholesky,
+        double shrinkage,
+        int observations,
+        String dataReport,
+        LocalDate calibratedOn
+) {
+    public CorrelatedModel {
+        tickers = List.copyOf(tickers);
+        fits = List.copyOf(fits);
+    }
+
+    public int size() {
+        return tickers.size();
+    }
+
+    public GarchParams params(int asset) {
+        return fits.get(asset).params();
+    }
+
+    public double correlation(int i, int j) {
+        return correlation[i * size() + j];
+    }
+
+    /** Czy model pasuje do zestawu danych (ten sam skład, okno i tryb uzupełniania, kalibracja z dziś). */
+    public boolean matches(List<String> tickers, int historyYears, boolean interpolation, LocalDate today) {
+        return this.tickers.equals(tickers) && this.historyYears == historyYears
+                && this.interpolation == interpolation && calibratedOn.equals(today);
+    }
+}
@@ -0,0 +1,756 @@
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Silnik Monte Carlo dla portfela wielu aktywów (CCC-GARCH).
+ *
+ * W odróżnieniu od {@link MonteCarloEngine}, który modeluje jeden szereg stóp portfela,
+ * każdy instrument ma własny GARCH(1,1), a wstrząsy są skorelowane stałą macierzą korelacji
+ * reszt standaryzowanych (z = L·ε, L - czynnik Cholesky'ego). Wartość portfela to suma pozycji
+ * kupionych na starcie, dzięki czemu widać efekt dywersyfikacji i udział każdego instrumentu w CVaR.
+ *
+ * Kalibracja ({@link #calibrate}) nie zależy od wag: zmiana samych wag lub kapitału wymaga
+ * tylko ponownej symulacji ({@link #simulate}) na zapamiętanym modelu, a na zapamiętanych
+ * scenariuszach ({@link #scenarios}) nawet jej nie wymaga.
+ */
+public class CorrelatedMonteCarloEngine {
+
+    private final DataService dataService;
+    private final GarchOptimizer optimizer = new GarchOptimizer();
+    private final RiskService riskService = new RiskService();
+    private volatile CorrelatedModel lastModel;
+
+    private static final double REPORT_CONFIDENCE = 0.95;
+    private static final int BLOCK_SIZE = 256;
+    private static final int PATH_TILE = 16;
+    private static final int PRECISION_BATCHES = 32;
+    private static final int FIRST_SNAPSHOT_PATHS = 1024;
+    private static final long SNAPSHOT_INTERVAL_NANOS = 250_000_000L;
+    private static final double[] SHRINKAGE_STEPS = {0.0, 0.001, 0.01, 0.05, 0.1, 0.25, 0.5, 1.0};
+
+    public CorrelatedMonteCarloEngine() {
+        this(new DataService());
+    }
+
+    public CorrelatedMonteCarloEngine(DataService dataService) {
+        this.dataService = dataService;
+    }
+
+    public DataService getDataService() {
+        return dataService;
+    }
+
+    public CorrelatedSimulationResult runSimulation(double capital, int horizon, List<String> tickers, List<Double> weights,
+                                                    int historyYears, boolean useInterpolation,
+                                                    SimulationOptions options) throws Exception {
+        return runSimulation(capital, horizon, tickers, weights, historyYears, useInterpolation, options, JobControl.none());
+    }
+
+    /** Kalibracja i symulacja jako zadanie z postępem etapów i kooperacyjnym anulowaniem. */
+    public CorrelatedSimulationResult runSimulation(double capital, int horizon, List<String> tickers, List<Double> weights,
+                                                    int historyYears, boolean useInterpolation,
+                                                    SimulationOptions options, JobControl control) throws Exception {
+        StageTimes times = new StageTimes();
+        CorrelatedModel model = calibrate(tickers, historyYears, useInterpolation, control, times);
+        return simulate(model, capital, horizon, weights, options, control, times);
+    }
+
+    /**
+     * Dopasowuje GARCH do każdego instrumentu (równolegle) i estymuje korelację reszt.
+     * Model skalibrowany dziś dla tego samego zestawu danych jest zwracany bez pobierania danych.
+     */
+    public CorrelatedModel calibrate(List<String> tickers, int historyYears, boolean useInterpolation) throws Exception {
+        return calibrate(tickers, historyYears, useInterpolation, JobControl.none());
+    }
+
+    public CorrelatedModel calibrate(List<String> tickers, int historyYears, boolean useInterpolation,
+                                     JobControl control) throws Exception {
+        return calibrate(tickers, historyYears, useInterpolation, control, new StageTimes());
+    }
+
+    private CorrelatedModel calibrate(List<String> tickers, int historyYears, boolean useInterpolation,
+                                      JobControl control, StageTimes times) throws Exception {
+        CorrelatedModel cached = lastModel;
+        LocalDate today = LocalDate.now();
+        if (cached != null && cached.matches(tickers, historyYears, useInterpolation, today)) {
+            Metrics.global().increment("calibration.model.reused");
+            times.add("Kalibracja", 0, "model z pamięci podręcznej");
+            return cached;
+        }
+
+        long loadStart = System.nanoTime();
+        PortfolioHistory history = PortfolioHistory.load(dataService, tickers, historyYears, useInterpolation, control);
+        times.add("Dane", StageTimes.millisSince(loadStart), tickers.size() + " instr.");
+        long calibrationStart = System.nanoTime();
+        ReturnMatrix matrix = history.matrix();
+        int n = matrix.cols();
+        int t = matrix.rows();
+
+        double[][] columns = new double[n][];
+        double[] drifts = new double[n];
+        for (int i = 0; i < n; i++) {
+            columns[i] = matrix.column(i);
+            double sum = 0.0;
+            for (double r : columns[i]) sum += r;
+            drifts[i] = sum / t;
+        }
+
+        control.begin(JobControl.Stage.CALIBRATE, n);
+        List<GarchFit> fits = ComputePool.map(0, n, i -> {
+            Telemetry.Calibration calibration = Telemetry.Calibration.start(tickers.get(i));
+            GarchFit fit = optimizer.fit(columns[i]);
+            calibration.finish("cold", fit);
+            control.advance(1);
+            return fit;
+        });
+
+        double[] residuals = new double[n * t];
+        for (int i = 0; i < n; i++) {
+            standardize(columns[i], drifts[i], fits.get(i).params(), residuals, i * t);
+        }
+        double[] sample = correlation(residuals, n, t);
+
+        double[] correlation = null;
+        double[] cholesky = null;
+        double shrinkage = 0.0;
+        for (double s : SHRINKAGE_STEPS) {
+            correlation = shrink(sample, n, s);
+            try {
+                cholesky = Cholesky.decompose(correlation, n);
+                shrinkage = s;
+                break;
+            } catch (IllegalArgumentException e) {
+                // przy współliniowych instrumentach ściągamy korelację mocniej do jednostkowej
+            }
+        }
+
+        CorrelatedModel model = new CorrelatedModel(tickers, historyYears, useInterpolation, fits, drifts,
+                correlation, cholesky, shrinkage, t, history.warnings(), today);
+        lastModel = model;
+        times.add("Kalibracja", StageTimes.millisSince(calibrationStart), "GARCH dla " + n + " instr. i korelacja");
+        return model;
+    }
+
+    /** Symulacja portfela o wagach {@code weights} na skalibrowanym modelu. */
+    public CorrelatedSimulationResult simulate(CorrelatedModel model, double capital, int horizon, List<Double> weights,
+                                               SimulationOptions options) {
+        return simulate(model, capital, horizon, weights, options, JobControl.none());
+    }
+
+    public CorrelatedSimulationResult simulate(CorrelatedModel model, double capital, int horizon, List<Double> weights,
+                                               SimulationOptions options, JobControl control) {
+        return simulate(model, capital, horizon, weights, options, control, new StageTimes());
+    }
+
+    private CorrelatedSimulationResult simulate(CorrelatedModel model, double capital, int horizon, List<Double> weights,
+                                                SimulationOptions options, JobControl control, StageTimes times) {
+        int n = model.size();
+        if (weights.size() != n) {
+            throw new IllegalArgumentException("Liczba wag (" + weights.size() + ") różna od liczby instrumentów (" + n + ").");
+        }
+        if (options.convergence() != null) {
+            throw new IllegalArgumentException("Model wieloaktywowy nie obsługuje trybu adaptacyjnego.");
+        }
+        if (options.storage() == SimulationOptions.PathStorage.SKETCH) {
+            throw new IllegalArgumentException("Model wieloaktywowy wymaga wartości końcowych (udziały w ryzyku), a nie szkicu kwantyli.");
+        }
+
+        double[] w = weights.stream().mapToDouble(Double::doubleValue).toArray();
+        PathModel pathModel = PathModel.of(model, capital, horizon, w);
+        int numSimulations = options.numSimulations();
+        VarianceReduction reduction = options.reduction();
+        boolean fullPaths = options.storage() == SimulationOptions.PathStorage.FULL_PATHS;
+
+        int batchSize = ShockSampler.batchSizeFor(numSimulations, PRECISION_BATCHES, reduction);
+        ShockSampler sampler = new ShockSampler(reduction, options.random(), horizon * n, batchSize);
+        PathStore paths = fullPaths ? new PathStore(numSimulations, horizon) : null;
+        double[] finalValues = new double[numSimulations];
+        PercentileBands.Collector bandCollector = new PercentileBands.Collector(capital,
+                Math.log1p(pathModel.expectedDailyReturn()), pathModel.expectedDailyVariance());
+
+        control.begin(JobControl.Stage.SIMULATE, numSimulations);
+        Telemetry.PathGeneration generation = Telemetry.PathGeneration.start();
+        if (control.wantsSnapshots()) {
+            // porcjami, z wynikiem pośrednim po każdej; ścieżki zależą tylko od indeksu, więc wynik się nie zmienia
+            long start = System.nanoTime();
+            int done = 0;
+            int chunk = FIRST_SNAPSHOT_PATHS;
+            while (done < numSimulations) {
+                int to = (int) Math.min(numSimulations, (long) done + chunk);
+                simulateRange(sampler, pathModel, done, to, paths, finalValues, bandCollector, null, null, control);
+                done = to;
+                if (done < numSimulations) {
+                    RiskSummary s = riskService.summarize(Arrays.copyOf(finalValues, done), REPORT_CONFIDENCE);
+                    control.publish(new SimulationSnapshot(done, numSimulations, s.mean(), s.var()[0], s.cvar()[0],
+                            bandCollector.finish(PercentileBands.standardLevels())));
+                }
+                double nanosPerPath = (double) (System.nanoTime() - start) / done;
+                chunk = (int) Math.max(FIRST_SNAPSHOT_PATHS, Math.min(Integer.MAX_VALUE, SNAPSHOT_INTERVAL_NANOS / nanosPerPath));
+            }
+        } else {
+            simulateRange(sampler, pathModel, 0, numSimulations, paths, finalValues, bandCollector, null, null, control);
+        }
+        times.addThroughput("Ścieżki", generation.finish(numSimulations, horizon), numSimulations, "ścieżek");
+
+        Telemetry.RiskMetrics risk = Telemetry.RiskMetrics.start();
+        double[][] controls = null;
+        double[] expected = null;
+        if (reduction == VarianceReduction.CONTROL_VARIATE) {
+            controls = new double[][]{finalValues};
+            expected = new double[]{pathModel.expectedFinalValue()};
+        }
+        PrecisionReport precision = riskService.estimatePrecision(finalValues, controls, expected, batchSize, REPORT_CONFIDENCE);
+        double[] contributions = tailContributions(sampler, pathModel, finalValues, precision.var(), control);
+
+        String infoLog = buildModelReport(model) + "\n=== JAKOŚĆ DANYCH ===\n" + model.dataReport()
+                + "\nGenerator losowy: " + options.random() + "\n"
+                + buildPrecisionReport(precision, reduction)
+                + buildContributionReport(model.tickers(), contributions);
+
+        RiskSummary summary = riskService.summarize(finalValues, RiskSummary.standardLevels());
+        PercentileBands bands = bandCollector.finish(PercentileBands.standardLevels());
+        HorizonProfile horizons = options.horizonProfile()
+                ? new HorizonProfile(bandCollector.totals(), reduction == VarianceReduction.CONTROL_VARIATE ? pathModel.expectedUnitValues() : null)
+                : null;
+        times.add("Miary ryzyka", risk.finish(numSimulations), "z udziałami w ryzyku ogona");
+        infoLog += times.report();
+        SimulationResult result = new SimulationResult(paths, finalValues, precision, summary, bands, null, horizons, infoLog);
+        return new CorrelatedSimulationResult(result, model.tickers(), w, contributions);
+    }
+
+    public Scenarios scenarios(CorrelatedModel model, int horizon, SimulationOptions options) {
+        return scenarios(model, horizon, options, JobControl.none());
+    }
+
+    /**
+     * Scenariusze do szybkiej zmiany wag: wzrost każdego instrumentu na wszystkich ścieżkach jest
+     * symulowany raz i zapamiętywany. Pozycje kupowane są na starcie, więc wartość portfela to
+     * C·Σ wᵢgᵢ, a nowe wagi wymagają tylko tej sumy i miar ryzyka ({@link Scenarios#evaluate}).
+     * Ścieżki są te same (wspólne liczby losowe), więc wynik jest identyczny z {@link #simulate}
+     * przy tym samym ziarnie. Gdy się mieści ({@link HorizonProfile.Recorder#fits}), zapamiętywany
+     * jest też wzrost z każdego dnia na potrzeby pasm percentyli i profilu horyzontów; inaczej
+     * {@link Scenarios#evaluate} odtwarza je ponowną symulacją tych samych ścieżek.
+     */
+    public Scenarios scenarios(CorrelatedModel model, int horizon, SimulationOptions options, JobControl control) {
+        if (options.convergence() != null) {
+            throw new IllegalArgumentException("Model wieloaktywowy nie obsługuje trybu adaptacyjnego.");
+        }
+        if (options.storage() == SimulationOptions.PathStorage.SKETCH) {
+            throw new IllegalArgumentException("Scenariusze wymagają wzrostu instrumentów na każdej ścieżce, a nie szkicu kwantyli.");
+        }
+        int n = model.size();
+        double[] equal = new double[n];
+        Arrays.fill(equal, 1.0 / n);
+        PathModel pathModel = PathModel.of(model, 1.0, horizon, equal);
+        int numSimulations = options.numSimulations();
+        int batchSize = ShockSampler.batchSizeFor(numSimulations, PRECISION_BATCHES, options.reduction());
+        ShockSampler sampler = new ShockSampler(options.reduction(), options.random(), horizon * n, batchSize);
+        int positions = Math.multiplyExact(numSimulations, n);
+        HorizonProfile.Recorder daily = HorizonProfile.Recorder.fits(horizon, positions)
+                ? new HorizonProfile.Recorder(horizon, positions, 1.0)
+                : null;
+        double[] growth = new double[positions];
+
+        control.begin(JobControl.Stage.SIMULATE, numSimulations);
+        Telemetry.PathGeneration generation = Telemetry.PathGeneration.start();
+        simulateRange(sampler, pathModel, 0, numSimulations, null, null, null, growth, daily, control);
+        double millis = generation.finish(numSimulations, horizon);
+        return new Scenarios(model, horizon, options, sampler, batchSize, growth, daily, millis);
+    }
+
+    /**
+     * Zapamiętane scenariusze jednego modelu i horyzontu ({@link #scenarios}). {@link #evaluate} liczy
+     * wynik portfela dla nowych wag i kapitału bez danych i kalibracji: O(ścieżki·n) na wartości
+     * końcowe i udziały w ryzyku, O(dni·ścieżki·n) na pasma percentyli i profil horyzontów z
+     * zapamiętanego wzrostu z każdego dnia, a gdy go nie zapamiętano - ponowna symulacja ścieżek
+     * do histogramów dziennych. Obiekt jest niezmienny.
+     */
+    public static final class Scenarios {
+        private final CorrelatedModel model;
+        private final int horizon;
+        private final SimulationOptions options;
+        private final ShockSampler sampler;
+        private final int batchSize;
+        private final double[] growth;
+        private final HorizonProfile.Recorder daily;
+        private final double simulationMillis;
+        private final RiskService riskService = new RiskService();
+
+        private Scenarios(CorrelatedModel model, int horizon, SimulationOptions options, ShockSampler sampler, int batchSize,
+                          double[] growth, HorizonProfile.Recorder daily, double simulationMillis) {
+            this.model = model;
+            this.horizon = horizon;
+            this.options = options;
+            this.sampler = sampler;
+            this.batchSize = batchSize;
+            this.growth = growth;
+            this.daily = daily;
+            this.simulationMillis = simulationMillis;
+        }
+
+        public CorrelatedModel model() {
+            return model;
+        }
+
+        public int horizon() {
+            return horizon;
+        }
+
+        public SimulationOptions options() {
+            return options;
+        }
+
+        public int paths() {
+            return growth.length / model.size();
+        }
+
+        /** Wynik portfela o wagach {@code weights}; wartości, VaR/CVaR i udziały jak z {@link #simulate}. */
+        public CorrelatedSimulationResult evaluate(double capital, List<Double> weights) {
+            int n = model.size();
+            if (weights.size() != n) {
+                throw new IllegalArgumentException("Liczba wag (" + weights.size() + ") różna od liczby instrumentów (" + n + ").");
+            }
+            long start = System.nanoTime();
+            double[] w = weights.stream().mapToDouble(Double::doubleValue).toArray();
+            PathModel pathModel = PathModel.of(model, capital, horizon, w);
+            int paths = paths();
+            double[] finalValues = new double[paths];
+            for (int p = 0; p < paths; p++) {
+                double total = 0.0;
+                for (int i = 0; i < n; i++) total += w[i] * growth[p * n + i];
+                finalValues[p] = capital * total;
+            }
+
+            VarianceReduction reduction = options.reduction();
+            double[][] controls = null;
+            double[] expected = null;
+            if (reduction == VarianceReduction.CONTROL_VARIATE) {
+                controls = new double[][]{finalValues};
+                expected = new double[]{pathModel.expectedFinalValue()};
+            }
+            PrecisionReport precision = riskService.estimatePrecision(finalValues, controls, expected, batchSize, REPORT_CONFIDENCE);
+            double[] contributions = tailContributions(pathModel, growth, finalValues, precision.var());
+            RiskSummary summary = riskService.summarize(finalValues, RiskSummary.standardLevels());
+            double[] expectedUnitValues = reduction == VarianceReduction.CONTROL_VARIATE ? pathModel.expectedUnitValues() : null;
+            HorizonProfile horizons;
+            PercentileBands bands;
+            if (daily != null) {
+                horizons = portfolioProfile(w, paths, expectedUnitValues);
+                bands = horizons.bands(capital, PercentileBands.standardLevels());
+            } else {
+                // wzrost z każdego dnia nie zmieścił się w pamięci: te same ścieżki liczone są ponownie
+                PercentileBands.Collector collector = new PercentileBands.Collector(capital,
+                        Math.log1p(pathModel.expectedDailyReturn()), pathModel.expectedDailyVariance());
+                simulateRange(sampler, pathModel, 0, paths, null, null, collector, null, null, JobControl.none());
+                horizons = new HorizonProfile(collector.totals(), expectedUnitValues);
+                bands = collector.finish(PercentileBands.standardLevels());
+            }
+
+            StageTimes times = new StageTimes();
+            times.add("Nowe wagi", StageTimes.millisSince(start), daily != null ? "bez ponownej symulacji" : "pasma z ponownej symulacji");
+            String infoLog = buildModelReport(model) + "\n=== JAKOŚĆ DANYCH ===\n" + model.dataReport()
+                    + "\nGenerator losowy: " + options.random() + "\n"
+                    + buildPrecisionReport(precision, reduction)
+                    + buildContributionReport(model.tickers(), contributions)
+                    + String.format("\nScenariusze: %,d ścieżek × %d instr. wygenerowane raz (%.1f ms), wspólne dla wszystkich wag\n",
+                            paths, n, simulationMillis)
+                    + times.report();
+            SimulationResult result = new SimulationResult(null, finalValues, precision, summary, bands, null, horizons, infoLog);
+            return new CorrelatedSimulationResult(result, model.tickers(), w, contributions);
+        }
+
+        /** Wartości portfela (na jednostkę kapitału) z każdego dnia: Σ wᵢgᵢ. */
+        private HorizonProfile portfolioProfile(double[] w, int paths, double[] expectedUnitValues) {
+            int n = w.length;
+            float[] unitValues = new float[paths * horizon];
+            for (int p = 0; p < paths; p++) {
+                for (int d = 1; d <= horizon; d++) {
+                    double v = 0.0;
+                    for (int i = 0; i < n; i++) v += w[i] * daily.value(d, p * n + i);
+                    unitValues[p * horizon + d - 1] = (float) v;
+                }
+            }
+            return new HorizonProfile(horizon, paths, unitValues, expectedUnitValues, batchSize);
+        }
+    }
+
+    /**
+     * Symuluje ścieżki portfela [from, to) równolegle (w {@link ComputePool}), w blokach po {@link #BLOCK_SIZE}.
+     * Opcjonalne (null) wyjścia: {@code finalValues}, {@code bands}, końcowy wzrost instrumentów
+     * {@code growth[ścieżka·n + i]} i wzrost instrumentów z każdego dnia {@code daily}.
+     */
+    private static void simulateRange(ShockSampler sampler, PathModel m, int from, int to, PathStore paths,
+                                      double[] finalValues, PercentileBands.Collector bands, double[] growth,
+                                      HorizonProfile.Recorder daily, JobControl control) {
+        int numBlocks = (to - from + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        ComputePool.forEach(0, numBlocks, () -> new Worker(sampler, m, bands), (w, b) -> {
+            control.checkCancelled();
+            int start = from + b * BLOCK_SIZE;
+            int end = Math.min(to, start + BLOCK_SIZE);
+            for (int i = start; i < end; i += PATH_TILE) {
+                int count = Math.min(PATH_TILE, end - i);
+                for (int p = 0; p < count; p++) w.ids[p] = i + p;
+                simulateTile(w.ids, count, w.cursor, w.ws, m, paths, w.ids, w.histogram, daily);
+                if (finalValues != null) System.arraycopy(w.ws.finals, 0, finalValues, i, count);
+                if (growth != null) System.arraycopy(w.ws.growth, 0, growth, i * m.assets(), count * m.assets());
+            }
+            control.advance(end - start);
+        }, w -> w.close(bands));
+    }
+
+    /** Parametry instrumentów w płaskich tablicach, wspólne dla wszystkich ścieżek przebiegu. */
+    private record PathModel(int assets, int horizon, double capital, double[] weights, double[] drifts,
+                             double[] omega, double[] alpha, double[] beta, double[] initialVariance, double[] cholesky) {
+
+        static PathModel of(CorrelatedModel model, double capital, int horizon, double[] weights) {
+            int n = model.size();
+            double[] omega = new double[n], alpha = new double[n], beta = new double[n], h0 = new double[n];
+            for (int i = 0; i < n; i++) {
+                GarchParams g = model.params(i);
+                omega[i] = g.omega();
+                alpha[i] = g.alpha();
+                beta[i] = g.beta();
+                h0[i] = g.initialVol();
+            }
+            return new PathModel(n, horizon, capital, weights, model.drifts(), omega, alpha, beta, h0, model.cholesky());
+        }
+
+        /** E[wartość końcowa] = C·Σ wᵢ(1+μᵢ)^T, bo wstrząsy mają średnią zero i są niezależne w czasie. */
+        double expectedFinalValue() {
+            double sum = 0.0;
+            for (int i = 0; i < assets; i++) {
+                sum += weights[i] * Math.pow(1 + drifts[i], horizon);
+            }
+            return capital * sum;
+        }
+
+        /** E[wartość/kapitał] w dniach 0..horyzont: Σ wᵢ(1+μᵢ)^d (zmienna kontrolna profilu horyzontów). */
+        double[] expectedUnitValues() {
+            double[] out = new double[horizon + 1];
+            for (int d = 0; d <= horizon; d++) {
+                for (int i = 0; i < assets; i++) out[d] += weights[i] * Math.pow(1 + drifts[i], d);
+            }
+            return out;
+        }
+
+        /** Oczekiwana dzienna stopa zwrotu portfela Σ wᵢμᵢ. */
+        double expectedDailyReturn() {
+            double sum = 0.0;
+            for (int i = 0; i < assets; i++) sum += weights[i] * drifts[i];
+            return sum;
+        }
+
+        /**
+         * Przybliżona wariancja dziennej stopy portfela w kolejnych dniach: Σ wᵢwⱼρᵢⱼ√(E[hᵢ]E[hⱼ]),
+         * z korelacjami odtworzonymi z czynnika Cholesky'ego (skala siatki pasm percentyli).
+         */
+        double[] expectedDailyVariance() {
+            double[] rho = new double[assets * assets];
+            for (int i = 0; i < assets; i++) {
+                for (int j = 0; j < assets; j++) {
+                    for (int k = 0; k <= Math.min(i, j); k++) rho[i * assets + j] += cholesky[i * assets + k] * cholesky[j * assets + k];
+                }
+            }
+            double[] h = initialVariance.clone();
+            double[] sd = new double[assets];
+            double[] out = new double[horizon];
+            for (int d = 0; d < horizon; d++) {
+                for (int i = 0; i < assets; i++) sd[i] = weights[i] * Math.sqrt(h[i]);
+                double v = 0.0;
+                for (int i = 0; i < assets; i++) {
+                    for (int j = 0; j < assets; j++) v += rho[i * assets + j] * sd[i] * sd[j];
+                }
+                out[d] = v;
+                for (int i = 0; i < assets; i++) h[i] = omega[i] + (alpha[i] + beta[i]) * h[i];
+            }
+            return out;
+        }
+    }
+
+    /**
+     * Bufory jednego wątku dla {@link #PATH_TILE} ścieżek naraz. Wstrząsy ułożone są instrumentami,
+     * a w nich ścieżkami i dniami: {@code e[k·(P·T) + p·T + d]}.
+     */
+    private static final class Workspace {
+        final double[] sample;
+        final double[] independent;
+        final double[] correlated;
+        final double[] growth;
+        final double[] finals;
+        final double[] values;
+
+        Workspace(int assets, int horizon) {
+            sample = new double[assets * horizon];
+            independent = new double[assets * PATH_TILE * horizon];
+            correlated = new double[assets * PATH_TILE * horizon];
+            growth = new double[PATH_TILE * assets];
+            finals = new double[PATH_TILE];
+            values = new double[horizon + 1];
+        }
+    }
+
+    /** Stan jednego wątku puli: bufory, kursor szoków i (opcjonalny) histogram pasm percentyli. */
+    private static final class Worker {
+        final Workspace ws;
+        final ShockSampler.Cursor cursor;
+        final PercentileBands.Collector.Histogram histogram;
+        final int[] ids = new int[PATH_TILE];
+
+        Worker(ShockSampler sampler, PathModel m, PercentileBands.Collector bands) {
+            ws = new Workspace(m.assets(), m.horizon());
+            cursor = sampler.cursor();
+            histogram = bands != null ? bands.acquire() : null;
+        }
+
+        void close(PercentileBands.Collector bands) {
+            if (histogram != null) bands.release(histogram);
+        }
+    }
+
+    /**
+     * Symuluje ścieżki {@code paths[0..count)} wszystkich instrumentów. Wartości końcowe portfela
+     * trafiają do {@code ws.finals[p]}, końcowy wzrost pozycji (względem 1) do {@code ws.growth[p·n + i]},
+     * a gdy podano {@code store}, ścieżka p zapisywana jest w wierszu {@code rows[p]}. Dzienne wartości
+     * portfela trafiają do {@code histogram} pasm percentyli, a dzienny wzrost pozycji do
+     * {@code recorder} pod indeksem {@code paths[p]·n + i} - każde o ile nie jest null.
+     *
+     * Korelowanie Z = L·E dla całej kafli to ciąg operacji z += l·e na ciągłych odcinkach
+     * długości count·T, które JIT wektoryzuje; rekursja GARCH biegnie potem po dniach.
+     */
+    private static void simulateTile(int[] paths, int count, ShockSampler.Cursor cursor, Workspace ws, PathModel m,
+                                     PathStore store, int[] rows, PercentileBands.Collector.Histogram histogram,
+                                     HorizonProfile.Recorder recorder) {
+        int n = m.assets();
+        int horizon = m.horizon();
+        int stride = count * horizon;
+        double[] e = ws.independent;
+        double[] z = ws.correlated;
+        double[] l = m.cholesky();
+
+        for (int p = 0; p < count; p++) {
+            cursor.fill(paths[p], ws.sample);
+            for (int k = 0; k < n; k++) {
+                System.arraycopy(ws.sample, k * horizon, e, k * stride + p * horizon, horizon);
+            }
+        }
+
+        for (int i = 0; i < n; i++) {
+            int zi = i * stride;
+            Arrays.fill(z, zi, zi + stride, 0.0);
+            for (int k = 0; k <= i; k++) {
+                double lik = l[i * n + k];
+                if (lik == 0.0) continue;
+                int ek = k * stride;
+                for (int j = 0; j < stride; j++) {
+                    z[zi + j] += lik * e[ek + j];
+                }
+            }
+        }
+
+        double[] values = ws.values;
+        boolean daily = store != null || histogram != null;
+        for (int p = 0; p < count; p++) {
+            if (daily) Arrays.fill(values, 0.0);
+            double total = 0.0;
+            for (int i = 0; i < n; i++) {
+                double w = m.weights()[i];
+                double drift = m.drifts()[i];
+                double omega = m.omega()[i], alpha = m.alpha()[i], beta = m.beta()[i];
+                double h = m.initialVariance()[i];
+                double g = 1.0;
+                int zi = i * stride + p * horizon;
+                for (int d = 0; d < horizon; d++) {
+                    double shock = Math.sqrt(h) * z[zi + d];
+                    g *= 1 + drift + shock;
+                    h = omega + alpha * shock * shock + beta * h;
+                    if (daily) values[d + 1] += w * g;
+                    if (recorder != null) recorder.record(d + 1, paths[p] * n + i, g);
+                }
+                ws.growth[p * n + i] = g;
+                total += w * g;
+                if (daily) values[0] += w;
+            }
+            ws.finals[p] = m.capital() * total;
+            if (store != null) {
+                for (int d = 0; d <= horizon; d++) {
+                    store.set(rows[p], d, m.capital() * values[d]);
+                }
+            }
+            if (histogram != null) {
+                for (int d = 1; d <= horizon; d++) {
+                    histogram.add(d, m.capital() * values[d]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Udział instrumentów w CVaR: ścieżki z ogona (wartość ≤ VaR) są symulowane ponownie - ścieżka
+     * zależy tylko od swojego indeksu w strumieniu losowym - a straty pozycji uśredniane. Dzięki temu
+     * wynik nie wymaga wzrostu instrumentów na wszystkich ścieżkach ({@code samplePaths} jest null).
+     */
+    private static double[] tailContributions(ShockSampler sampler, PathModel m, double[] finalValues, double var,
+                                              JobControl control) {
+        int n = m.assets();
+        int[] tail = IntStream.range(0, finalValues.length).filter(i -> finalValues[i] <= var).toArray();
+        double[] total = new double[n];
+        if (tail.length == 0) return total;
+
+        // Sumy częściowe zapisywane są per blok i sumowane w kolejności bloków, niezależnie od wątków.
+        int numBlocks = (tail.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        double[][] partial = new double[numBlocks][];
+        ComputePool.forEach(0, numBlocks, () -> new Worker(sampler, m, null), (w, b) -> {
+            control.checkCancelled();
+            double[] losses = new double[n];
+            int end = Math.min(tail.length, (b + 1) * BLOCK_SIZE);
+            for (int k = b * BLOCK_SIZE; k < end; k += PATH_TILE) {
+                int count = Math.min(PATH_TILE, end - k);
+                System.arraycopy(tail, k, w.ids, 0, count);
+                simulateTile(w.ids, count, w.cursor, w.ws, m, null, null, null, null);
+                for (int p = 0; p < count; p++) {
+                    for (int i = 0; i < n; i++) {
+                        losses[i] += m.capital() * m.weights()[i] * (1 - w.ws.growth[p * n + i]);
+                    }
+                }
+            }
+            partial[b] = losses;
+        }, w -> w.close(null));
+
+        for (double[] losses : partial) {
+            for (int i = 0; i < n; i++) total[i] += losses[i];
+        }
+        for (int i = 0; i < n; i++) total[i] /= tail.length;
+        return total;
+    }
+
+    /**
+     * Jak {@link #tailContributions(ShockSampler, PathModel, double[], double, JobControl)}, ale
+     * z zapamiętanego wzrostu instrumentów {@code growth[ścieżka·n + i]}, bez odtwarzania ścieżek.
+     * Sumy częściowe idą w tych samych blokach i kolejności, więc wynik jest identyczny.
+     */
+    private static double[] tailContributions(PathModel m, double[] growth, double[] finalValues, double var) {
+        int n = m.assets();
+        int[] tail = IntStream.range(0, finalValues.length).filter(i -> finalValues[i] <= var).toArray();
+        double[] total = new double[n];
+        if (tail.length == 0) return total;
+
+        for (int b = 0; b < tail.length; b += BLOCK_SIZE) {
+            double[] losses = new double[n];
+            int end = Math.min(tail.length, b + BLOCK_SIZE);
+            for (int k = b; k < end; k++) {
+                for (int i = 0; i < n; i++) {
+                    losses[i] += m.capital() * m.weights()[i] * (1 - growth[tail[k] * n + i]);
+                }
+            }
+            for (int i = 0; i < n; i++) total[i] += losses[i];
+        }
+        for (int i = 0; i < n; i++) total[i] /= tail.length;
+        return total;
+    }
+
+    /** Reszty (r - μ)/σₜ z wariancją warunkową liczoną tą samą rekursją co w estymacji. */
+    private static void standardize(double[] returns, double drift, GarchParams g, double[] out, int offset) {
+        double h = g.initialVol();
+        for (int t = 0; t < returns.length; t++) {
+            double r = returns[t];
+            out[offset + t] = (r - drift) / Math.sqrt(h);
+            h = g.omega() + g.alpha() * r * r + g.beta() * h;
+        }
+    }
+
+    /** Macierz korelacji próbkowej wierszy {@code data} (n wierszy po t obserwacji). */
+    private static double[] correlation(double[] data, int n, int t) {
+        double[] centered = new double[n * t];
+        for (int i = 0; i < n; i++) {
+            double mean = 0.0;
+            for (int k = 0; k < t; k++) mean += data[i * t + k];
+            mean /= t;
+            double norm = 0.0;
+            for (int k = 0; k < t; k++) {
+                double d = data[i * t + k] - mean;
+                centered[i * t + k] = d;
+                norm += d * d;
+            }
+            double scale = norm > 0 ? 1.0 / Math.sqrt(norm) : 0.0;
+            for (int k = 0; k < t; k++) centered[i * t + k] *= scale;
+        }
+
+        double[] corr = new double[n * n];
+        for (int i = 0; i < n; i++) {
+            corr[i * n + i] = 1.0;
+            for (int j = 0; j < i; j++) {
+                double dot = 0.0;
+                for (int k = 0; k < t; k++) dot += centered[i * t + k] * centered[j * t + k];
+                corr[i * n + j] = dot;
+                corr[j * n + i] = dot;
+            }
+        }
+        return corr;
+    }
+
+    private static double[] shrink(double[] corr, int n, double lambda) {
+        double[] out = new double[corr.length];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                out[i * n + j] = i == j ? 1.0 : (1 - lambda) * corr[i * n + j];
+            }
+        }
+        return out;
+    }
+
+    private static String buildModelReport(CorrelatedModel model) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("=== MODEL WIELOAKTYWOWY (CCC-GARCH) ===\n");
+        sb.append(String.format("Instrumenty: %d, wspólnych sesji: %d\n", model.size(), model.observations()));
+        for (int i = 0; i < model.size(); i++) {
+            GarchParams g = model.params(i);
+            sb.append(String.format("• %-10s α=%.4f β=%.4f μ=%.5f%s\n", model.tickers().get(i), g.alpha(), g.beta(),
+                    model.drifts()[i], model.fits().get(i).converged() ? "" : " (brak zbieżności!)"));
+        }
+        if (model.size() > 1) {
+            double sum = 0.0, min = 1.0, max = -1.0;
+            int pairs = 0;
+            for (int i = 0; i < model.size(); i++) {
+                for (int j = 0; j < i; j++) {
+                    double c = model.correlation(i, j);
+                    sum += c;
+                    min = Math.min(min, c);
+                    max = Math.max(max, c);
+                    pairs++;
+                }
+            }
+            sb.append(String.format("Korelacja reszt: średnia %.2f (od %.2f do %.2f)\n", sum / pairs, min, max));
+        }
+        if (model.shrinkage() > 0) {
+            sb.append(String.format("  -> Korelację ściągnięto o %.1f%% do jednostkowej (macierz nie była dodatnio określona).\n",
+                    100 * model.shrinkage()));
+        }
+        return sb.toString();
+    }
+
+    private static String buildPrecisionReport(PrecisionReport p, VarianceReduction reduction) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("\n=== PRECYZJA SYMULACJI ===\n");
+        sb.append("Redukcja wariancji: ").append(reduction).append("\n");
+        sb.append(String.format("Błąd std. średniej: %.2f PLN\n", p.meanStdError()));
+        sb.append(String.format("Błąd std. VaR:      %.2f PLN\n", p.varStdError()));
+        sb.append(String.format("Błąd std. CVaR:     %.2f PLN\n", p.cvarStdError()));
+        sb.append("(metoda średnich z ").append(p.batches()).append(" partii)\n");
+        return sb.toString();
+    }
+
+    private static String buildContributionReport(List<String> tickers, double[] contributions) {
+        double total = 0.0;
+        for (double c : contributions) total += c;
+        StringBuilder sb = new StringBuilder();
+        sb.append("\n=== UDZIAŁ W RYZYKU (CVaR 95%) ===\n");
+        for (int i = 0; i < tickers.size(); i++) {
+            double share = total != 0.0 ? 100 * contributions[i] / total : 0.0;
+            sb.append(String.format("• %-10s %12.2f PLN (%5.1f%%)\n", tickers.get(i), contributions[i], share));
+        }
+        sb.append(String.format("Razem: %.2f PLN średniej straty w najgorszych 5%% scenariuszy\n", total));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,29 @@
+import java.util.List;
+
+/**
+ * Wynik symulacji wieloaktywowej: rozkład wartości portfela oraz udziały instrumentów w ryzyku.
+ *
+ * @param portfolio          ścieżki, wartości końcowe i precyzja dla całego portfela
+ * @param tickers            instrumenty w kolejności kolumn
+ * @param weights            wagi użyte w symulacji
+ * @param cvarContributions  udział każdego instrumentu w CVaR (PLN): średnia strata pozycji w scenariuszach
+ *                           ogona rozkładu portfela; suma równa się oczekiwanej stracie portfela w ogonie
+ */
+public record CorrelatedSimulationResult(
+        SimulationResult portfolio,
+        List<String> tickers,
+        double[] weights,
+        double[] cvarContributions
+) {
+    /** Udziały w CVaR jako ułamki sumy (0 dla każdego, gdy ogon nie przynosi straty). */
+    public double[] contributionShares() {
+        double total = 0.0;
+        for (double c : cvarContributions) total += c;
+        double[] shares = new double[cvarContributions.length];
+        if (total == 0.0) return shares;
+        for (int i = 0; i < shares.length; i++) {
+            shares[i] = cvarContributions[i] / total;
+        }
+        return shares;
+    }
+}
@@ -1,74 +1,299 @@
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.net.ConnectException;
 import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
 import java.net.URI;
 import java.net.URL;
 import java.net.UnknownHostException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Odpowiada za pobieranie historycznych danych finansowych z serwisu Stooq
  * oraz przetwarzanie ich na procentowe stopy zwrotu.
+ *
+ * Notowania trzymane są w lokalnym {@link PriceStore}: przy kolejnych uruchomieniach
+ * pobierane są tylko sesje brakujące od ostatniej synchronizacji (najwyżej raz dziennie),
+ * a w trybie offline dane serwowane są wyłącznie z dysku.
+ *
+ * Pobrania wykonywane są na wątkach wirtualnych: równoczesne żądania tego samego tickera
+ * są łączone w jedno, liczba jednoczesnych połączeń do jednego hosta jest ograniczona,
+ * a błędy przejściowe (timeout, HTTP 429/5xx) ponawiane z wykładniczym odstępem.
+ * Serie zsynchronizowane w bieżącym dniu trzymane są też w pamięci (LRU), więc wiele portfeli
+ * z tymi samymi instrumentami (np. w trybie wsadowym) nie czyta ich ponownie z dysku.
  */
 public class DataService {
 
     private static final String USER_AGENT = "Mozilla/5.0";
     private static final int TRADING_DAYS = 252;
     private static final int TIMEOUT_MS = 5000; // 5s
+    private static final DateTimeFormatter STOOQ_DATE = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final String STOOQ_URL = "https://stooq.pl/q/d/l/";
+    private static final int MAX_CONNECTIONS_PER_HOST = 4;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long BACKOFF_MS = 250;
+    private static final long CANCEL_POLL_MS = 100;
+    private static final int MEMORY_CACHE_SIZE = 512;
+
+    /** Ceny instrumentu razem ze stopami zwrotu, liczonymi raz na wczytanie, a nie przy każdym żądaniu. */
+    private record Prices(PriceSeries series, ReturnSeries returns) {
+        static Prices of(PriceSeries series) {
+            return new Prices(series, series.returns());
+        }
+    }
+
+    private record Synced(LocalDate day, Prices prices) {}
+
+    private final PriceStore store;
+    private final String baseUrl;
+    private volatile boolean offline;
+
+    private final ExecutorService fetchExecutor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("stooq-fetch-", 0).factory());
+    private final Map<String, CompletableFuture<Prices>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+    // Parsery CSV z buforami wielokrotnego użytku. Parsowanie odbywa się w trakcie pobrania,
+    // więc parserów jest najwyżej tyle, ile jednoczesnych połączeń (MAX_CONNECTIONS_PER_HOST na host).
+    private final Queue<StooqCsvParser> idleParsers = new ConcurrentLinkedQueue<>();
+    private final Map<String, Synced> synced = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Synced> eldest) {
+            return size() > MEMORY_CACHE_SIZE;
+        }
+    });
+
+    public DataService() {
+        this(new PriceStore(PriceStore.defaultDirectory()), false);
+    }
+
+    public DataService(PriceStore store, boolean offline) {
+        this(store, offline, STOOQ_URL);
+    }
+
+    /**
+     * @param baseUrl adres usługi w formacie Stooq (np. lokalna zaślepka HTTP w testach)
+     */
+    public DataService(PriceStore store, boolean offline, String baseUrl) {
+        this.store = store;
+        this.offline = offline;
+        this.baseUrl = baseUrl;
+    }
+
+    public boolean isOffline() {
+        return offline;
+    }
+
+    public void setOffline(boolean offline) {
+        this.offline = offline;
+    }
 
     public List<Double> getHistoricalReturns(String ticker, int years) throws Exception {
-        String tickerClean = ticker.trim().toLowerCase().replace("^", "%5E");
-        String urlString = String.format("https://stooq.pl/q/d/l/?s=%s&i=d", tickerClean);
+        return getReturnSeries(ticker, years).toList();
+    }
 
+    public List<List<Double>> getHistoricalReturns(List<String> tickers, int years) throws Exception {
+        List<List<Double>> result = new ArrayList<>(tickers.size());
+        for (ReturnSeries series : getReturnSeries(tickers, years)) {
+            result.add(series.toList());
+        }
+        return result;
+    }
+
+    /**
+     * Pełna historia datowanych stóp zwrotu wielu instrumentów, pobieranych równolegle
+     * (do wyrównania po datach w {@link ReturnMatrix}).
+     */
+    public List<ReturnSeries> getReturnSeries(List<String> tickers) throws Exception {
+        return getReturnSeries(tickers, JobControl.none());
+    }
+
+    /**
+     * Jak {@link #getReturnSeries(List)}, z postępem liczonym w instrumentach; oczekiwanie
+     * przerywa anulowanie zadania (samo pobranie kończy się w tle i trafia do magazynu).
+     */
+    public List<ReturnSeries> getReturnSeries(List<String> tickers, JobControl control) throws Exception {
+        return getReturnSeries(tickers, Integer.MAX_VALUE / TRADING_DAYS, control);
+    }
+
+    /** Datowane stopy zwrotu z ostatnich {@code years} lat (w prymitywnych kolumnach). */
+    public ReturnSeries getReturnSeries(String ticker, int years) throws Exception {
+        return toReturns(ticker, await(loadAsync(ticker)), years);
+    }
+
+    /**
+     * Stopy zwrotu wielu instrumentów pobieranych równolegle; całość trwa tyle,
+     * ile najwolniejsze pobranie. Kolejność wyników odpowiada kolejności tickerów.
+     */
+    public List<ReturnSeries> getReturnSeries(List<String> tickers, int years) throws Exception {
+        return getReturnSeries(tickers, years, JobControl.none());
+    }
+
+    private List<ReturnSeries> getReturnSeries(List<String> tickers, int years, JobControl control) throws Exception {
+        List<CompletableFuture<Prices>> futures = tickers.stream().map(this::loadAsync).toList();
+        List<ReturnSeries> result = new ArrayList<>(tickers.size());
+        for (int i = 0; i < tickers.size(); i++) {
+            result.add(toReturns(tickers.get(i), await(futures.get(i), control), years));
+            control.advance(1);
+        }
+        return result;
+    }
+
+    /** Rozpoczyna pobieranie w tle (np. indeksów zastępczych), nie czekając na wynik. */
+    public void prefetch(List<String> tickers) {
+        tickers.forEach(this::loadAsync);
+    }
+
+    private ReturnSeries toReturns(String ticker, Prices prices, int years) throws Exception {
+        if (prices.series().size() < 2) {
+            throw new Exception("Brak danych lub błędny ticker: " + ticker);
+        }
+        return prices.returns().tail(years * TRADING_DAYS - 1);
+    }
+
+    /** Data ostatniej sesji w lokalnych danych instrumentu (null, gdy nieznana). */
+    public LocalDate getLastDataDate(String ticker) {
         try {
-            URL url = new URI(urlString).toURL();
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-
-            // Konfiguracja połączenia
-            conn.setRequestMethod("GET");
-            conn.setRequestProperty("User-Agent", USER_AGENT);
-            conn.setConnectTimeout(TIMEOUT_MS);
-            conn.setReadTimeout(TIMEOUT_MS);
-
-            int responseCode = conn.getResponseCode();
-            if (responseCode != 200) {
-                throw new IOException("Serwer zwrócił błąd HTTP: " + responseCode +
-                        " (prawdopodobnie błędny ticker: " + ticker + ")");
+            PriceStore.Entry entry = store.read(ticker);
+            return entry == null ? null : entry.series().lastDate();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public PriceSeries getPrices(String ticker) throws Exception {
+        return await(getPricesAsync(ticker));
+    }
+
+    /** Pobranie w tle; żądania tego samego tickera w toku współdzielą jeden wynik. */
+    public CompletableFuture<PriceSeries> getPricesAsync(String ticker) {
+        return loadAsync(ticker).thenApply(Prices::series);
+    }
+
+    private CompletableFuture<Prices> loadAsync(String ticker) {
+        String key = ticker.trim().toUpperCase();
+        CompletableFuture<Prices> future = new CompletableFuture<>();
+        CompletableFuture<Prices> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            return existing;
+        }
+
+        // Wpis usuwany jest przed zakończeniem przyszłości: żądanie wysłane po wyniku (np. ponowienie
+        // po błędzie) zaczyna nowe pobranie zamiast dostać wynik zakończonego.
+        fetchExecutor.execute(() -> {
+            Telemetry.DataFetch fetch = Telemetry.DataFetch.start(key);
+            Prices prices;
+            try {
+                prices = loadPrices(ticker, key, fetch);
+            } catch (Throwable e) {
+                fetch.finish("error", 0);
+                inFlight.remove(key, future);
+                future.completeExceptionally(e);
+                return;
             }
+            inFlight.remove(key, future);
+            future.complete(prices);
+        });
+        return future;
+    }
+
+    /**
+     * Pełna historia cen instrumentu. Lokalne dane są uzupełniane o sesje od ostatniej
+     * zapisanej daty; sesja bieżąca (jeszcze niezamknięta) jest pomijana, aby wynik
+     * nie zależał od pory uruchomienia.
+     * Gdy źródło zdalne jest niedostępne, zwracane są dane z dysku.
+     * Źródło wyniku (pamięć, dysk, sieć) trafia do zdarzenia {@code fetch}.
+     */
+    private Prices loadPrices(String ticker, String key, Telemetry.DataFetch fetch) throws Exception {
+        LocalDate today = LocalDate.now();
+        Synced memo = synced.get(key);
+        if (memo != null && memo.day().equals(today)) {
+            return fetched(fetch, "memory", memo.prices());
+        }
+        PriceStore.Entry stored = store.read(ticker);
 
-            List<Double> prices = new ArrayList<>();
-            try (BufferedReader br = new BufferedReader(new InputStreamReader(conn.getInputStream()))) {
-                prices = br.lines()
-                        .skip(1)
-                        .map(line -> line.split(","))
-                        .filter(values -> values.length >= 5)
-                        .map(values -> {
-                            try {
-                                return Double.parseDouble(values[4]);
-                            } catch (NumberFormatException e) {
-                                return null;
-                            }
-                        })
-                        .filter(java.util.Objects::nonNull)
-                        .collect(Collectors.toList());
+        if (offline) {
+            if (stored == null || stored.series().isEmpty()) {
+                throw new Exception("Tryb offline: brak lokalnych danych dla " + ticker);
             }
+            return fetched(fetch, "offline", Prices.of(stored.series()));
+        }
+        if (stored != null && today.equals(stored.lastSync())) {
+            Prices prices = Prices.of(stored.series());
+            synced.put(key, new Synced(today, prices));
+            return fetched(fetch, "disk", prices);
+        }
 
-            if (prices.size() < 2) {
-                throw new Exception("Brak danych lub błędny ticker: " + ticker);
+        LocalDate from = stored == null || stored.series().isEmpty() ? null : stored.series().lastDate().plusDays(1);
+        Prices fresh;
+        try {
+            fresh = download(ticker, from, today);
+        } catch (Exception e) {
+            if (stored != null && !stored.series().isEmpty()) {
+                System.err.println("Nie udało się odświeżyć " + ticker + " (" + e.getMessage() + "), używam danych lokalnych.");
+                return fetched(fetch, "disk-fallback", Prices.of(stored.series()));
             }
+            throw e;
+        }
 
-            int daysNeeded = years * TRADING_DAYS;
-            List<Double> finalPrices = prices.size() > daysNeeded
-                    ? prices.subList(prices.size() - daysNeeded, prices.size())
-                    : prices;
+        int todayDay = (int) today.toEpochDay();
+        PriceSeries base = stored == null ? PriceSeries.empty() : stored.series();
+        PriceSeries closedSessions = fresh.series().before(todayDay);
+        PriceSeries merged = base.append(closedSessions);
+        store.append(ticker, new PriceSeries(
+                Arrays.copyOfRange(merged.dates(), base.size(), merged.size()),
+                Arrays.copyOfRange(merged.closes(), base.size(), merged.size())), today);
 
-            return IntStream.range(1, finalPrices.size())
-                    .mapToObj(i -> (finalPrices.get(i) - finalPrices.get(i - 1)) / finalPrices.get(i - 1))
-                    .collect(Collectors.toList());
+        // Przy pełnym pobraniu stopy zwrotu policzył już parser; dopisanie do danych z dysku liczy je od nowa.
+        Prices prices = base.isEmpty() ? new Prices(merged, fresh.returns().before(todayDay)) : Prices.of(merged);
+        synced.put(key, new Synced(today, prices));
+        return fetched(fetch, "network", prices);
+    }
+
+    private static Prices fetched(Telemetry.DataFetch fetch, String source, Prices prices) {
+        fetch.finish(source, prices.series().size());
+        return prices;
+    }
+
+    private Prices download(String ticker, LocalDate from, LocalDate to) throws Exception {
+        String tickerClean = ticker.trim().toLowerCase().replace("^", "%5E");
+        String urlString = String.format("%s?s=%s&i=d", baseUrl, tickerClean);
+        if (from != null) {
+            urlString += "&d1=" + from.format(STOOQ_DATE) + "&d2=" + to.format(STOOQ_DATE);
+        }
+
+        try {
+            URL url = new URI(urlString).toURL();
+            Semaphore permits = hostPermits.computeIfAbsent(url.getHost(), h -> new Semaphore(MAX_CONNECTIONS_PER_HOST));
+
+            for (int attempt = 1; ; attempt++) {
+                permits.acquire();
+                try {
+                    return downloadOnce(url, ticker, from);
+                } catch (TransientHttpException | SocketTimeoutException | ConnectException e) {
+                    if (attempt >= MAX_ATTEMPTS) throw e;
+                } finally {
+                    permits.release();
+                }
+                Thread.sleep(BACKOFF_MS << (attempt - 1));
+            }
 
         } catch (UnknownHostException e) {
             throw new Exception("Brak połączenia z internetem lub serwer jest nieosiągalny.");
@@ -76,4 +301,71 @@ public class DataService {
             throw new Exception("Błąd podczas pobierania danych: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    private Prices downloadOnce(URL url, String ticker, LocalDate from) throws Exception {
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+
+        // Konfiguracja połączenia
+        conn.setRequestMethod("GET");
+        conn.setRequestProperty("User-Agent", USER_AGENT);
+        conn.setConnectTimeout(TIMEOUT_MS);
+        conn.setReadTimeout(TIMEOUT_MS);
+
+        int responseCode = conn.getResponseCode();
+        if (responseCode == 429 || responseCode >= 500) {
+            throw new TransientHttpException("Serwer zwrócił błąd HTTP: " + responseCode);
+        }
+        if (responseCode != 200) {
+            throw new IOException("Serwer zwrócił błąd HTTP: " + responseCode +
+                    " (prawdopodobnie błędny ticker: " + ticker + ")");
+        }
+
+        StooqCsvParser parser = idleParsers.poll();
+        if (parser == null) parser = new StooqCsvParser();
+        try (InputStream in = conn.getInputStream()) {
+            parser.read(in);
+            if (from == null && parser.size() < 2) {
+                throw new Exception("Brak danych lub błędny ticker: " + ticker);
+            }
+            return new Prices(parser.toSeries(), parser.toReturns());
+        } finally {
+            idleParsers.offer(parser);
+        }
+    }
+
+    /** Czeka na wynik pobrania, przekazując dalej oryginalny wyjątek. */
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception ex) throw ex;
+            throw e;
+        }
+    }
+
+    /** Czeka na wynik pobrania, co {@link #CANCEL_POLL_MS} ms sprawdzając anulowanie zadania. */
+    private static <T> T await(CompletableFuture<T> future, JobControl control) throws Exception {
+        while (true) {
+            control.checkCancelled();
+            try {
+                return future.get(CANCEL_POLL_MS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // pobranie trwa - sprawdzamy anulowanie i czekamy dalej
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception ex) throw ex;
+                throw e;
+            }
+        }
+    }
+
+    /** Błąd, który warto ponowić (HTTP 429 lub 5xx). */
+    private static final class TransientHttpException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        TransientHttpException(String message) {
+            super(message);
+        }
+    }
+}
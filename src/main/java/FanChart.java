@@ -0,0 +1,57 @@
+import javafx.scene.chart.LineChart;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.shape.Polygon;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wykres liniowy z wypełnionymi pasmami między parami serii (wykres wachlarzowy percentyli).
+ * Wielokąty pasm przeliczane są przy każdym układzie wykresu i leżą pod liniami serii.
+ */
+public class FanChart extends LineChart<Number, Number> {
+
+    private record Band(Series<Number, Number> lower, Series<Number, Number> upper, Polygon fill) {}
+
+    private final List<Band> bands = new ArrayList<>();
+
+    public FanChart(NumberAxis xAxis, NumberAxis yAxis) {
+        super(xAxis, yAxis);
+    }
+
+    /** Wypełnia obszar między seriami {@code lower} i {@code upper} (o tych samych wartościach x) kolorem CSS {@code color}. */
+    public void addBand(Series<Number, Number> lower, Series<Number, Number> upper, String color) {
+        Polygon fill = new Polygon();
+        fill.setStyle("-fx-fill: " + color + "; -fx-stroke: transparent;");
+        fill.setMouseTransparent(true);
+        bands.add(new Band(lower, upper, fill));
+        getPlotChildren().add(0, fill);
+        requestChartLayout();
+    }
+
+    /** Usuwa wszystkie pasma (serie pozostają bez zmian). */
+    public void clearBands() {
+        for (Band band : bands) {
+            getPlotChildren().remove(band.fill());
+        }
+        bands.clear();
+    }
+
+    @Override
+    protected void layoutPlotChildren() {
+        super.layoutPlotChildren();
+        for (Band band : bands) {
+            List<Double> points = new ArrayList<>();
+            for (Data<Number, Number> d : band.lower().getData()) {
+                points.add(getXAxis().getDisplayPosition(d.getXValue()));
+                points.add(getYAxis().getDisplayPosition(d.getYValue()));
+            }
+            List<Data<Number, Number>> upper = band.upper().getData();
+            for (int i = upper.size() - 1; i >= 0; i--) {
+                points.add(getXAxis().getDisplayPosition(upper.get(i).getXValue()));
+                points.add(getYAxis().getDisplayPosition(upper.get(i).getYValue()));
+            }
+            band.fill().getPoints().setAll(points);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+import java.util.List;
+
+/**
+ * Wynik estymacji GARCH(1,1) metodą największej wiarygodności.
+ *
+ * @param params        dopasowane parametry
+ * @param logLikelihood wartość log-wiarygodności w optimum (rozkład normalny)
+ * @param alphaStdError błąd standardowy α (z odwrotności hesjanu), NaN gdy hesjan nie jest dodatnio określony
+ * @param betaStdError  błąd standardowy β
+ * @param omegaStdError błąd standardowy ω (metoda delta, ω = σ²·(1 - α - β))
+ * @param evaluations   liczba przebiegów po historii (wartość + gradient)
+ * @param converged     czy spełniono kryterium zbieżności przed limitem iteracji
+ * @param trace         kolejne kroki optymalizatora
+ */
+public record GarchFit(
+        GarchParams params,
+        double logLikelihood,
+        double alphaStdError,
+        double betaStdError,
+        double omegaStdError,
+        int evaluations,
+        boolean converged,
+        List<Step> trace
+) {
+
+    /** Stan optymalizatora po zakończonej iteracji. */
+    public record Step(int iteration, int evaluations, double objective, double alpha, double beta) {
+    }
+
+    public int iterations() {
+        return trace.isEmpty() ? 0 : trace.getLast().iteration();
+    }
+}
@@ -1,46 +1,180 @@
+import org.apache.commons.math3.linear.LUDecomposition;
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.RealMatrix;
+
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
-import java.util.stream.IntStream;
 
 
 /**
- * Optymalizator typu Brute-Force / Random Search.
- * Próbuje tysiące kombinacji parametrów, aby znaleźć te,
- * które najlepiej pasują do historycznych danych.
+ * Estymator GARCH(1,1) metodą największej wiarygodności.
+ * Wariancja bezwarunkowa jest ustalona na wariancję próbkową (variance targeting),
+ * więc optymalizowane są tylko α i β. Ograniczenia α, β > 0 i α + β < 1 spełnia
+ * reparametryzacja α = p·s, β = p·(1 - s), p = P_MAX·σ(x₀), s = σ(x₁), a minimum
+ * szukane jest metodą BFGS z analitycznym gradientem funkcji wiarygodności.
+ * Bez podanego punktu startowego BFGS startuje z najlepszego punktu siatki (p, s),
+ * policzonej jednym przebiegiem {@link GarchLikelihood}.
  */
 public class GarchOptimizer {
 
-    private static final int ITERATIONS = 2000;
+    private static final double MAX_PERSISTENCE = 0.999;
+    private static final int MAX_ITERATIONS = 100;
+    private static final int MAX_BACKTRACKS = 40;
+    private static final double ARMIJO = 1e-4;
+    private static final double VALUE_TOLERANCE = 1e-10;
+    private static final double GRADIENT_TOLERANCE = 1e-6;
+
+    private static final double DEFAULT_ALPHA = 0.05;
+    private static final double DEFAULT_BETA = 0.90;
+
+    /** Siatka startowa: trwałość p = α + β i udział s = α / (α + β). */
+    private static final double[] START_PERSISTENCE = {0.50, 0.80, 0.90, 0.95, 0.98, 0.99, 0.995};
+    private static final double[] START_SHARE = {0.02, 0.04, 0.06, 0.08, 0.12, 0.20, 0.35};
+
+    /** Siatka diagnostyczna: punkty na oś i połowa szerokości w błędach standardowych. */
+    private static final int SURFACE_POINTS = 41;
+    private static final double SURFACE_HALF_WIDTH = 4.0;
 
     public GarchParams optimize(List<Double> returns) {
+        return fit(returns.stream().mapToDouble(Double::doubleValue).toArray()).params();
+    }
+
+    public GarchFit fit(double[] returns) {
+        double variance = calculateVariance(returns);
+        return fit(returns, bestStart(returns, variance), 1);
+    }
+
+    /** Estymacja startująca z podanych α i β (np. z wcześniejszej kalibracji). */
+    public GarchFit fit(double[] returns, GarchParams start) {
+        return fit(returns, start, 0);
+    }
+
+    /**
+     * Najlepszy punkt siatki startowej (oraz domyślnego startu α = 0,05, β = 0,90),
+     * wszystkie kandydaty w jednym przebiegu po historii.
+     */
+    private GarchParams bestStart(double[] returns, double variance) {
+        int k = START_PERSISTENCE.length * START_SHARE.length + 1;
+        double[] alpha = new double[k];
+        double[] beta = new double[k];
+        alpha[0] = DEFAULT_ALPHA;
+        beta[0] = DEFAULT_BETA;
+        int c = 1;
+        for (double p : START_PERSISTENCE) {
+            for (double share : START_SHARE) {
+                alpha[c] = p * share;
+                beta[c] = p * (1 - share);
+                c++;
+            }
+        }
+        double[] values = new GarchLikelihood(returns).evaluateTargeted(alpha, beta, variance);
+        int best = 0;
+        for (int i = 1; i < k; i++) {
+            if (values[i] < values[best]) best = i;
+        }
+        return new GarchParams(variance * (1 - alpha[best] - beta[best]), alpha[best], beta[best], variance);
+    }
+
+    /**
+     * Funkcja celu na siatce α × β wokół dopasowania (±{@link #SURFACE_HALF_WIDTH} błędów
+     * standardowych, a gdy ich brak - wokół względnego otoczenia), do profilu wiarygodności
+     * i sprawdzenia, czy BFGS nie utknął w minimum lokalnym.
+     */
+    public GarchLikelihood.Surface likelihoodSurface(double[] returns, GarchFit fit) {
+        GarchParams g = fit.params();
+        double halfA = Double.isFinite(fit.alphaStdError()) ? SURFACE_HALF_WIDTH * fit.alphaStdError() : 0.75 * g.alpha();
+        double halfB = Double.isFinite(fit.betaStdError()) ? SURFACE_HALF_WIDTH * fit.betaStdError() : 0.15;
+        double[] alphas = axis(Math.max(1e-4, g.alpha() - halfA), Math.min(MAX_PERSISTENCE, g.alpha() + halfA));
+        double[] betas = axis(Math.max(1e-4, g.beta() - halfB), Math.min(MAX_PERSISTENCE, g.beta() + halfB));
+        return new GarchLikelihood(returns).surface(alphas, betas, g.initialVol());
+    }
+
+    /** Wartość funkcji celu {@link GarchLikelihood} w optimum dopasowania (z log-wiarygodności). */
+    public static double objectiveAt(GarchFit fit, int observations) {
+        return -2 * fit.logLikelihood() - observations * Math.log(2 * Math.PI);
+    }
 
+    private static double[] axis(double from, double to) {
+        double[] axis = new double[SURFACE_POINTS];
+        for (int i = 0; i < SURFACE_POINTS; i++) axis[i] = from + (to - from) * i / (SURFACE_POINTS - 1);
+        return axis;
+    }
+
+    private GarchFit fit(double[] returns, GarchParams start, int priorEvaluations) {
         double variance = calculateVariance(returns);
+        int n = 2;
 
-        final double[] bestScore = {Double.MAX_VALUE};
-        final GarchParams[] bestParams = {new GarchParams(variance * 0.05, 0.05, 0.90, variance)};
+        double[] x = toUnconstrained(start.alpha(), start.beta());
+        double[] g = new double[n];
+        int[] evaluations = {priorEvaluations};
+        double f = objective(returns, variance, x, g, evaluations);
 
-        IntStream.range(0, ITERATIONS).parallel().forEach(i -> {
+        List<GarchFit.Step> trace = new ArrayList<>();
+        double[][] h = identity(n);
+        boolean converged = false;
+
+        for (int iter = 1; iter <= MAX_ITERATIONS; iter++) {
+            double[] d = multiply(h, g);
+            for (int i = 0; i < n; i++) d[i] = -d[i];
+            double slope = dot(g, d);
+            if (slope >= 0) {
+                h = identity(n);
+                for (int i = 0; i < n; i++) d[i] = -g[i];
+                slope = dot(g, d);
+            }
 
-            Random rand = new Random();
+            // Wyszukiwanie liniowe z warunkiem Armijo; pierwszy krok ograniczony do 1 w każdej współrzędnej.
+            double t = Math.min(1.0, 1.0 / maxAbs(d));
+            double[] xNew = new double[n];
+            double[] gNew = new double[n];
+            double fNew = Double.NaN;
+            for (int k = 0; k < MAX_BACKTRACKS; k++) {
+                for (int i = 0; i < n; i++) xNew[i] = x[i] + t * d[i];
+                fNew = objective(returns, variance, xNew, gNew, evaluations);
+                if (Double.isFinite(fNew) && fNew <= f + ARMIJO * t * slope) break;
+                t *= 0.5;
+            }
+            if (!Double.isFinite(fNew) || fNew > f) {
+                double[] ab = toConstrained(x);
+                trace.add(new GarchFit.Step(iter, evaluations[0], f, ab[0], ab[1]));
+                converged = maxAbs(g) < GRADIENT_TOLERANCE * (1 + Math.abs(f));
+                break;
+            }
 
-            double alpha = 0.01 + (0.25 * rand.nextDouble());
-            double beta = 0.50 + (0.49 * rand.nextDouble());
+            double[] s = new double[n];
+            double[] y = new double[n];
+            for (int i = 0; i < n; i++) {
+                s[i] = xNew[i] - x[i];
+                y[i] = gNew[i] - g[i];
+            }
+            double change = Math.abs(f - fNew);
+            x = xNew;
+            g = gNew;
+            f = fNew;
 
-            if (alpha + beta < 0.999) {
+            double[] ab = toConstrained(x);
+            trace.add(new GarchFit.Step(iter, evaluations[0], f, ab[0], ab[1]));
 
-                double omega = variance * (1.0 - alpha - beta);
-                double score = calculateErrorScore(returns, alpha, beta, omega, variance);
+            if (change <= VALUE_TOLERANCE * (1 + Math.abs(f)) || maxAbs(g) <= GRADIENT_TOLERANCE * (1 + Math.abs(f))) {
+                converged = true;
+                break;
+            }
 
-                synchronized (bestScore) {
-                    if (score < bestScore[0]) {
-                        bestScore[0] = score;
-                        bestParams[0] = new GarchParams(omega, alpha, beta, variance);
-                    }
-                }
+            double ys = dot(y, s);
+            if (ys > 1e-14) {
+                if (iter == 1) h = scaled(identity(n), ys / dot(y, y));
+                h = bfgsUpdate(h, s, y, ys);
             }
-        });
+        }
 
-        return bestParams[0];
+        double[] ab = toConstrained(x);
+        double alpha = ab[0], beta = ab[1];
+        double omega = variance * (1.0 - alpha - beta);
+        GarchParams params = new GarchParams(omega, alpha, beta, variance);
+
+        double[] se = standardErrors(returns, variance, alpha, beta);
+        double logLikelihood = -0.5 * (f + returns.length * Math.log(2 * Math.PI));
+        return new GarchFit(params, logLikelihood, se[0], se[1], se[2], evaluations[0], converged, List.copyOf(trace));
     }
 
 
@@ -49,24 +183,161 @@ public class GarchOptimizer {
      * Oblicza "błąd" modelu. Im mniejszy wynik, tym parametry lepiej opisują historię.
      * Używamy uproszczonego ujemnego Log-Likelihood.
      */
-    private double calculateErrorScore(List<Double> returns,
-                                       double alpha, double beta, double omega,
-                                       double initialVar) {
+    double calculateErrorScore(double[] returns,
+                               double alpha, double beta, double omega,
+                               double initialVar) {
 
         double currentVar = initialVar;
         double totalLogLikelihood = 0.0;
 
-        for (Double r : returns) {
+        for (double r : returns) {
             if (currentVar <= 0) currentVar = 0.000001;
-            totalLogLikelihood += Math.log(currentVar) + (Math.pow(r, 2) / currentVar);
-            currentVar = omega + alpha * Math.pow(r, 2) + beta * currentVar;
+            totalLogLikelihood += Math.log(currentVar) + (r * r / currentVar);
+            currentVar = omega + alpha * r * r + beta * currentVar;
         }
         return totalLogLikelihood;
     }
 
+    /**
+     * Funkcja celu wraz z analitycznym gradientem względem (α, β), liczonym rekurencyjnie:
+     * ∂h/∂α = -σ² + r² + β·∂h/∂α,  ∂h/∂β = -σ² + h + β·∂h/∂β.
+     * Zwraca {wartość, ∂f/∂α, ∂f/∂β}.
+     */
+    double[] errorScoreWithGradient(double[] returns, double alpha, double beta, double variance) {
+        double omega = variance * (1.0 - alpha - beta);
+        double h = variance, dhA = 0.0, dhB = 0.0;
+        double value = 0.0, gA = 0.0, gB = 0.0;
+
+        for (double r : returns) {
+            double r2 = r * r;
+            double weight = 1.0 / h - r2 / (h * h);
+            value += Math.log(h) + r2 / h;
+            gA += weight * dhA;
+            gB += weight * dhB;
+
+            double nextDhA = -variance + r2 + beta * dhA;
+            double nextDhB = -variance + h + beta * dhB;
+            h = omega + alpha * r2 + beta * h;
+            dhA = nextDhA;
+            dhB = nextDhB;
+        }
+        return new double[]{value, gA, gB};
+    }
+
+    /** Funkcja celu w przestrzeni nieograniczonej; gradient zapisywany do {@code grad}. */
+    private double objective(double[] returns, double variance, double[] x, double[] grad, int[] evaluations) {
+        evaluations[0]++;
+        double sp = sigmoid(x[0]), ss = sigmoid(x[1]);
+        double p = MAX_PERSISTENCE * sp;
+        double alpha = p * ss, beta = p * (1 - ss);
+
+        double[] v = errorScoreWithGradient(returns, alpha, beta, variance);
+        double dp = MAX_PERSISTENCE * sp * (1 - sp);
+        double ds = ss * (1 - ss);
+        grad[0] = (v[1] * ss + v[2] * (1 - ss)) * dp;
+        grad[1] = (v[1] - v[2]) * p * ds;
+        return v[0];
+    }
+
+    /**
+     * Błędy standardowe z odwrotności hesjanu ujemnej log-wiarygodności (= ½ funkcji celu),
+     * liczonego różnicami centralnymi analitycznego gradientu.
+     */
+    private double[] standardErrors(double[] returns, double variance, double alpha, double beta) {
+        double[] nan = {Double.NaN, Double.NaN, Double.NaN};
+        double eps = 1e-5;
+        if (alpha <= eps || beta <= eps || alpha + beta + eps >= 1.0) return nan;
+
+        double[] ap = errorScoreWithGradient(returns, alpha + eps, beta, variance);
+        double[] am = errorScoreWithGradient(returns, alpha - eps, beta, variance);
+        double[] bp = errorScoreWithGradient(returns, alpha, beta + eps, variance);
+        double[] bm = errorScoreWithGradient(returns, alpha, beta - eps, variance);
+
+        double haa = 0.5 * (ap[1] - am[1]) / (2 * eps);
+        double hbb = 0.5 * (bp[2] - bm[2]) / (2 * eps);
+        double hab = 0.5 * ((ap[2] - am[2]) + (bp[1] - bm[1])) / (4 * eps);
+
+        RealMatrix hessian = MatrixUtils.createRealMatrix(new double[][]{{haa, hab}, {hab, hbb}});
+        LUDecomposition lu = new LUDecomposition(hessian);
+        if (!lu.getSolver().isNonSingular() || haa <= 0 || lu.getDeterminant() <= 0) return nan;
+
+        RealMatrix cov = lu.getSolver().getInverse();
+        double varA = cov.getEntry(0, 0), varB = cov.getEntry(1, 1), covAB = cov.getEntry(0, 1);
+        double varOmega = variance * variance * (varA + varB + 2 * covAB);
+        return new double[]{Math.sqrt(varA), Math.sqrt(varB), varOmega > 0 ? Math.sqrt(varOmega) : Double.NaN};
+    }
+
+    private static double[] toUnconstrained(double alpha, double beta) {
+        double p = Math.min(Math.max(alpha + beta, 1e-6), MAX_PERSISTENCE * (1 - 1e-6));
+        double s = Math.min(Math.max(alpha / (alpha + beta), 1e-6), 1 - 1e-6);
+        return new double[]{logit(p / MAX_PERSISTENCE), logit(s)};
+    }
+
+    private static double[] toConstrained(double[] x) {
+        double p = MAX_PERSISTENCE * sigmoid(x[0]);
+        double s = sigmoid(x[1]);
+        return new double[]{p * s, p * (1 - s)};
+    }
+
+    private static double sigmoid(double v) {
+        return 1.0 / (1.0 + Math.exp(-v));
+    }
+
+    private static double logit(double p) {
+        return Math.log(p / (1 - p));
+    }
+
+    private static double[][] bfgsUpdate(double[][] h, double[] s, double[] y, double ys) {
+        int n = s.length;
+        double rho = 1.0 / ys;
+        double[] hy = multiply(h, y);
+        double yhy = dot(y, hy);
+        double[][] next = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                next[i][j] = h[i][j]
+                        - rho * (hy[i] * s[j] + s[i] * hy[j])
+                        + (rho * rho * yhy + rho) * s[i] * s[j];
+            }
+        }
+        return next;
+    }
+
+    private static double[][] identity(int n) {
+        double[][] m = new double[n][n];
+        for (int i = 0; i < n; i++) m[i][i] = 1.0;
+        return m;
+    }
+
+    private static double[][] scaled(double[][] m, double factor) {
+        for (double[] row : m) for (int j = 0; j < row.length; j++) row[j] *= factor;
+        return m;
+    }
+
+    private static double[] multiply(double[][] m, double[] v) {
+        double[] out = new double[v.length];
+        for (int i = 0; i < v.length; i++) out[i] = dot(m[i], v);
+        return out;
+    }
+
+    private static double dot(double[] a, double[] b) {
+        double sum = 0.0;
+        for (int i = 0; i < a.length; i++) sum += a[i] * b[i];
+        return sum;
+    }
+
+    private static double maxAbs(double[] v) {
+        double max = 0.0;
+        for (double x : v) max = Math.max(max, Math.abs(x));
+        return max;
+    }
 
-    private double calculateVariance(List<Double> data) {
-        double mean = data.stream().mapToDouble(d -> d).average().orElse(0.0);
-        return data.stream().mapToDouble(d -> Math.pow(d - mean, 2)).average().orElse(0.0);
+    private double calculateVariance(double[] data) {
+        double mean = 0.0;
+        for (double d : data) mean += d;
+        mean /= Math.max(1, data.length);
+        double sum = 0.0;
+        for (double d : data) sum += (d - mean) * (d - mean);
+        return data.length == 0 ? 0.0 : sum / data.length;
     }
-}
\ No newline at end of file
+}
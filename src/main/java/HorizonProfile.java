@@ -0,0 +1,287 @@
+import java.util.Arrays;
+
+/**
+ * Rozkład wartości portfela w każdym dniu 1..{@link #maxHorizon()} jednego przebiegu, na jednostkę
+ * kapitału (wartość / kapitał). Ścieżki są liniowe względem kapitału, a krótszy horyzont to początek
+ * dłuższej ścieżki, więc średnia, VaR i CVaR dla dowolnego kapitału i horyzontu ≤ {@link #maxHorizon()}
+ * liczone są bez ponownej symulacji.
+ *
+ * Gdy wartości wszystkich ścieżek ze wszystkich dni mieszczą się w {@link Recorder#MAX_VALUES},
+ * profil trzyma je dokładnie ({@link #exact()}; zapis float, ~1e-7 względnie) i wynik jest taki jak
+ * z osobnej, krótszej symulacji. Inaczej (np. w trybie adaptacyjnym) profil to dzienne histogramy
+ * pasm percentyli ({@link PercentileBands.Totals}): kwantyle interpolowane wewnątrz przedziału,
+ * średnia i CVaR ze średnich przedziałów, bez błędów standardowych.
+ *
+ * Przy zmiennych kontrolnych ({@code expectedUnitValues[d]} - oczekiwana wartość/kapitał w dniu d)
+ * estymaty precyzji ważone są jedyną kontrolą: wartością portfela w tym dniu.
+ *
+ * Przy quasi-Monte Carlo most Browna budowany jest dla całego horyzontu, więc wartości pośrednie
+ * mają właściwy rozkład, ale nie są identyczne z osobną, krótszą symulacją.
+ */
+public final class HorizonProfile {
+
+    private static final double REPORT_CONFIDENCE = 0.95;
+    private static final int BINS = PercentileBands.Totals.BINS;
+
+    private final int maxHorizon;
+    private final int paths;
+    private final float[] unitValues;
+    private final PercentileBands.Totals histograms;
+    private final double[] expectedUnitValues;
+    private final int batchSize;
+    private final RiskService riskService = new RiskService();
+
+    /**
+     * Wynik dla kapitału {@code capital} i horyzontu {@code horizon}; {@code exact} gdy policzony
+     * z wartości ścieżek, a nie z histogramów dziennych.
+     */
+    public record Estimate(double capital, int horizon, boolean exact, RiskSummary summary, PrecisionReport precision) {
+    }
+
+    /** Profil z dokładnych wartości {@code unitValues[ścieżka·maxHorizon + dzień - 1]}. */
+    HorizonProfile(int maxHorizon, int paths, float[] unitValues, double[] expectedUnitValues, int batchSize) {
+        this.maxHorizon = maxHorizon;
+        this.paths = paths;
+        this.unitValues = unitValues;
+        this.histograms = null;
+        this.expectedUnitValues = expectedUnitValues;
+        this.batchSize = batchSize;
+    }
+
+    /** Profil z dziennych histogramów wszystkich ścieżek. */
+    HorizonProfile(PercentileBands.Totals histograms, double[] expectedUnitValues) {
+        this.maxHorizon = histograms.horizon();
+        this.paths = (int) histograms.count(1);
+        this.unitValues = null;
+        this.histograms = histograms;
+        this.expectedUnitValues = expectedUnitValues;
+        this.batchSize = 0;
+    }
+
+    public int maxHorizon() {
+        return maxHorizon;
+    }
+
+    public int paths() {
+        return paths;
+    }
+
+    /** Czy profil trzyma wartości wszystkich ścieżek (a nie histogramy dzienne). */
+    public boolean exact() {
+        return unitValues != null;
+    }
+
+    /** Średnia, VaR/CVaR (standardowe poziomy) oraz estymaty dla 95%, z błędami standardowymi z partii. */
+    public Estimate estimate(double capital, int horizon) {
+        if (horizon < 1 || horizon > maxHorizon) {
+            throw new IllegalArgumentException("Horyzont musi należeć do [1, " + maxHorizon + "] dni.");
+        }
+        if (unitValues == null) return binnedEstimate(capital, horizon);
+        double[] values = new double[paths];
+        for (int i = 0; i < paths; i++) values[i] = capital * unitValues[i * maxHorizon + horizon - 1];
+        double[][] controls = null;
+        double[] expected = null;
+        if (expectedUnitValues != null) {
+            controls = new double[][]{values};
+            expected = new double[]{capital * expectedUnitValues[horizon]};
+        }
+        RiskSummary summary = riskService.summarize(values, RiskSummary.standardLevels());
+        PrecisionReport precision = riskService.estimatePrecision(values, controls, expected,
+                Math.min(batchSize, paths), REPORT_CONFIDENCE);
+        return new Estimate(capital, horizon, true, summary, precision);
+    }
+
+    /** Pasma percentyli {@code levels} dla kapitału {@code capital} we wszystkich dniach profilu. */
+    public PercentileBands bands(double capital, double... levels) {
+        if (unitValues == null) return histograms.bands(capital, levels);
+        double[][] quantiles = new double[maxHorizon][];
+        float[] day = new float[paths];
+        for (int d = 1; d <= maxHorizon; d++) {
+            for (int i = 0; i < paths; i++) day[i] = unitValues[i * maxHorizon + d - 1];
+            quantiles[d - 1] = quantiles(day, 0, paths, levels);
+            for (int j = 0; j < levels.length; j++) quantiles[d - 1][j] *= capital;
+        }
+        return PercentileBands.fromDays(capital, quantiles, levels);
+    }
+
+    /**
+     * Estymata z histogramów dnia {@code day}. Podsumowanie jak z wartości bez wag; raport precyzji
+     * przy zmiennej kontrolnej waży przedziały tak jak {@link RiskService} ścieżki:
+     * w_b = c_b·(1 - (r_b - m)·β)/n, β = (m - E[v])/s², gdzie r_b to średnia przedziału,
+     * a m i s² to średnia i wariancja z przedziałów.
+     */
+    private Estimate binnedEstimate(double capital, int day) {
+        long n = histograms.count(day);
+        double mean = 0.0, squares = 0.0;
+        for (int b = 0; b < BINS; b++) {
+            long c = histograms.counts()[day * BINS + b];
+            if (c == 0) continue;
+            double r = histograms.meanOf(day, b, 1.0);
+            mean += c * r;
+            squares += c * r * r;
+        }
+        mean /= n;
+        double variance = squares / n - mean * mean;
+        double beta = expectedUnitValues != null && variance > 0 ? (mean - expectedUnitValues[day]) / variance : 0.0;
+
+        double[] levels = RiskSummary.standardLevels();
+        double[] var = new double[levels.length];
+        double[] cvar = new double[levels.length];
+        for (int j = 0; j < levels.length; j++) {
+            double[] tail = binnedTail(day, n, 1 - levels[j], mean, 0.0);
+            var[j] = capital * tail[0];
+            cvar[j] = capital * tail[1];
+        }
+        RiskSummary summary = new RiskSummary((int) n, capital * mean, capital * histograms.min()[day],
+                capital * histograms.max()[day], levels, var, cvar);
+
+        double[] tail = binnedTail(day, n, 1 - REPORT_CONFIDENCE, mean, beta);
+        PrecisionReport precision = new PrecisionReport(REPORT_CONFIDENCE,
+                capital * (mean - beta * variance), Double.NaN,
+                capital * tail[0], Double.NaN,
+                capital * tail[1], Double.NaN, 0);
+        return new Estimate(capital, day, false, summary, precision);
+    }
+
+    /** {VaR, CVaR} na jednostkę kapitału dla ogona o wadze {@code tail}, przy wagach przedziałów z β. */
+    private double[] binnedTail(int day, long n, double tail, double mean, double beta) {
+        int base = day * BINS;
+        double cumulative = 0.0, tailSum = 0.0;
+        for (int b = 0; b < BINS; b++) {
+            long c = histograms.counts()[base + b];
+            if (c == 0) continue;
+            double r = histograms.meanOf(day, b, 1.0);
+            double w = c * (1 - (r - mean) * beta) / n;
+            if (w > 0 && cumulative + w >= tail) {
+                double fraction = (tail - cumulative) / w;
+                double partial = fraction * w * histograms.meanOf(day, b, fraction);
+                return new double[]{histograms.valueAt(day, b, fraction), (tailSum + partial) / tail};
+            }
+            cumulative += w;
+            tailSum += w * r;
+        }
+        return new double[]{histograms.max()[day], tailSum / cumulative};
+    }
+
+    /** Przedziały histogramu w {@link #quantiles}; sortowane są tylko te, w które trafiają szukane pozycje. */
+    private static final int SELECT_BINS = 1024;
+
+    /**
+     * Kwantyle (interpolacja liniowa między statystykami pozycyjnymi, jak w posortowanej tablicy)
+     * wartości {@code values[offset, offset + count)} bez sortowania całości: histogram o
+     * {@link #SELECT_BINS} przedziałach między min a max wskazuje przedziały z potrzebnymi
+     * statystykami, a sortowane są tylko ich elementy. Trzy przebiegi po danych zamiast n·log n.
+     */
+    static double[] quantiles(float[] values, int offset, int count, double[] levels) {
+        float min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY;
+        for (int i = offset; i < offset + count; i++) {
+            min = Math.min(min, values[i]);
+            max = Math.max(max, values[i]);
+        }
+        double[] out = new double[levels.length];
+        if (!(max > min)) {
+            Arrays.fill(out, min);
+            return out;
+        }
+        double scale = SELECT_BINS / ((double) max - min);
+        int[] start = new int[SELECT_BINS + 1];
+        for (int i = offset; i < offset + count; i++) start[bin(values[i], min, scale) + 1]++;
+        for (int b = 0; b < SELECT_BINS; b++) start[b + 1] += start[b];
+
+        // pozycje k i k+1 każdego poziomu -> przedziały do posortowania
+        int[] ranks = new int[2 * levels.length];
+        for (int j = 0; j < levels.length; j++) {
+            int k = (int) (levels[j] * (count - 1));
+            ranks[2 * j] = k;
+            ranks[2 * j + 1] = Math.min(k + 1, count - 1);
+        }
+        int[] slot = new int[SELECT_BINS];
+        Arrays.fill(slot, -1);
+        int[] bins = new int[ranks.length];
+        int needed = 0;
+        for (int r = 0; r < ranks.length; r++) {
+            int b = binOfRank(start, ranks[r]);
+            if (slot[b] < 0) {
+                slot[b] = needed;
+                bins[needed++] = b;
+            }
+        }
+        float[][] selected = new float[needed][];
+        int[] filled = new int[needed];
+        for (int s = 0; s < needed; s++) selected[s] = new float[start[bins[s] + 1] - start[bins[s]]];
+        for (int i = offset; i < offset + count; i++) {
+            int s = slot[bin(values[i], min, scale)];
+            if (s >= 0) selected[s][filled[s]++] = values[i];
+        }
+        for (float[] part : selected) Arrays.sort(part);
+
+        for (int j = 0; j < levels.length; j++) {
+            double position = levels[j] * (count - 1);
+            double lower = statistic(ranks[2 * j], start, slot, selected);
+            double upper = statistic(ranks[2 * j + 1], start, slot, selected);
+            out[j] = lower + (position - ranks[2 * j]) * (upper - lower);
+        }
+        return out;
+    }
+
+    private static int bin(float value, float min, double scale) {
+        return Math.min(SELECT_BINS - 1, (int) ((value - min) * scale));
+    }
+
+    /** Przedział b, w którym leży statystyka pozycyjna {@code rank}: start[b] ≤ rank &lt; start[b + 1]. */
+    private static int binOfRank(int[] start, int rank) {
+        int b = Arrays.binarySearch(start, rank);
+        if (b < 0) return -b - 2;
+        while (start[b + 1] == rank) b++; // puste przedziały o tym samym początku
+        return b;
+    }
+
+    private static double statistic(int rank, int[] start, int[] slot, float[][] selected) {
+        int b = binOfRank(start, rank);
+        return selected[slot[b]][rank - start[b]];
+    }
+
+    /**
+     * Zapis dokładnych wartości z wątków symulacji: {@code capacity} pozycji (ścieżek albo par
+     * ścieżka-instrument) na każdy dzień 1..horyzont, w komórkach {@code [pozycja·horyzont + dzień - 1]}.
+     * Każda pozycja pisze do własnych komórek, więc synchronizacja nie jest potrzebna.
+     */
+    static final class Recorder {
+        /** Pamięć na wartości (float, 64 MB); większe przebiegi zapisują profil w histogramach dziennych. */
+        static final int MAX_VALUES = 1 << 24;
+
+        private final int horizon;
+        private final int capacity;
+        private final double capital;
+        private final float[] values;
+
+        /** Czy {@code capacity} pozycji ze wszystkich {@code horizon} dni zmieści się w {@link #MAX_VALUES}. */
+        static boolean fits(int horizon, long capacity) {
+            return horizon * capacity <= MAX_VALUES;
+        }
+
+        Recorder(int horizon, int capacity, double capital) {
+            if (!fits(horizon, capacity)) {
+                throw new IllegalArgumentException("Profil " + capacity + " pozycji × " + horizon + " dni nie mieści się w pamięci.");
+            }
+            this.horizon = horizon;
+            this.capacity = capacity;
+            this.capital = capital;
+            this.values = new float[horizon * capacity];
+        }
+
+        float value(int day, int position) {
+            return values[position * horizon + day - 1];
+        }
+
+        void record(int day, int position, double value) {
+            values[position * horizon + day - 1] = (float) (value / capital);
+        }
+
+        /** Profil pierwszych {@code paths} ścieżek (w trybie adaptacyjnym mniej niż pojemność). */
+        HorizonProfile finish(int paths, int batchSize, double[] expectedUnitValues) {
+            float[] compact = paths < capacity ? Arrays.copyOf(values, paths * horizon) : values;
+            return new HorizonProfile(horizon, paths, compact, expectedUnitValues, batchSize);
+        }
+    }
+}
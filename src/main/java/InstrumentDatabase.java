@@ -6,10 +6,11 @@ import java.util.List;
 
 public class InstrumentDatabase {
 
-    private static List<Instrument> instruments = new ArrayList<>();
+    // podmieniany w całości po wczytaniu listy; sam indeks jest niezmienny
+    private static volatile InstrumentIndex index = new InstrumentIndex(List.of());
 
     public static void loadTickersFromFile(String filePath) {
-        instruments.clear();
+        List<Instrument> instruments = new ArrayList<>();
         try (BufferedReader br = new BufferedReader(new FileReader(filePath, StandardCharsets.UTF_8))) {
             String line;
             while ((line = br.readLine()) != null) {
@@ -31,9 +32,20 @@ public class InstrumentDatabase {
             instruments.add(new Instrument("Apple (Fallback)", "AAPL.US"));
             instruments.add(new Instrument("CD Projekt (Fallback)", "CDR.PL"));
         }
+        index = new InstrumentIndex(instruments);
     }
 
     public static List<Instrument> getInstruments() {
-        return instruments;
+        return index.instruments();
     }
-}
\ No newline at end of file
+
+    /** Podpowiedzi do pola wyszukiwania: najlepiej dopasowane instrumenty (nazwa lub ticker, bez względu na polskie znaki). */
+    public static List<Instrument> search(String query, int limit) {
+        return index.search(query, limit);
+    }
+
+    /** Instrument o dokładnie takim tickerze lub nazwie albo {@code null}. */
+    public static Instrument find(String tickerOrName) {
+        return index.find(tickerOrName);
+    }
+}
@@ -0,0 +1,281 @@
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Niezmienny indeks wyszukiwania instrumentów, budowany raz po wczytaniu listy.
+ *
+ * Nazwy i tickery są normalizowane ({@link #normalize(String)}: małe litery, bez znaków diakrytycznych,
+ * ciągi znaków innych niż litery i cyfry zastąpione jedną spacją). Zapytania od 3 znaków korzystają
+ * z indeksu trigramów (posortowane listy identyfikatorów w jednej tablicy, przecinane od najkrótszej),
+ * a kandydaci są sprawdzani na znormalizowanych tekstach. Zapytania 1-2 znakowe dopasowują tylko
+ * początki słów; ich rankingi (do {@link #SHORT_LIMIT} pozycji) są liczone z góry dla każdego prefiksu.
+ */
+final class InstrumentIndex {
+
+    private static final int GRAM = 3;
+    private static final int SHORT_LIMIT = 32;
+    private static final int MAX_INSTRUMENTS = 1 << 24;
+
+    // znaki kodowane na 13 bitach: trigram (39 bitów) i id (24 bity) mieszczą się w jednym long;
+    // znaki ponad limit alfabetu dzielą jeden kod - daje to tylko nadmiarowych kandydatów, odrzucanych przy sprawdzeniu
+    private static final int CHAR_BITS = 13;
+    private static final int MAX_CODE = (1 << CHAR_BITS) - 1;
+
+    // ranking: mniejszy = lepszy
+    private static final int EXACT_TICKER = 0;
+    private static final int TICKER_PREFIX = 1;
+    private static final int NAME_PREFIX = 2;
+    private static final int WORD_PREFIX = 3;
+    private static final int TICKER_INFIX = 4;
+    private static final int NAME_INFIX = 5;
+
+    private final List<Instrument> instruments;
+    private final String[] names;
+    private final String[] tickers;
+
+    private final short[] charCodes = new short[Character.MAX_VALUE + 1];
+
+    // grams[k] -> identyfikatory postings[offsets[k], offsets[k + 1])
+    private final long[] grams;
+    private final int[] offsets;
+    private final int[] postings;
+
+    // prefiks 1-2 znakowy -> klucze rankingu (rosnąco)
+    private final Map<String, long[]> shortQueries;
+
+    private final Map<String, Instrument> byTicker;
+    private final Map<String, Instrument> byName;
+
+    InstrumentIndex(List<Instrument> instruments) {
+        if (instruments.size() >= MAX_INSTRUMENTS) {
+            throw new IllegalArgumentException("Zbyt wiele instrumentów do indeksowania: " + instruments.size());
+        }
+        this.instruments = List.copyOf(instruments);
+        int n = this.instruments.size();
+        names = new String[n];
+        tickers = new String[n];
+        byTicker = new HashMap<>(2 * n);
+        byName = new HashMap<>(2 * n);
+        int alphabet = 0;
+        long occurrences = 0;
+        for (int id = 0; id < n; id++) {
+            Instrument inst = this.instruments.get(id);
+            names[id] = normalize(inst.name);
+            tickers[id] = normalize(inst.ticker);
+            // przy powtórzeniach wygrywa pierwszy wpis, jak przy wcześniejszym przeszukiwaniu listy
+            byTicker.putIfAbsent(inst.ticker.trim().toUpperCase(Locale.ROOT), inst);
+            byName.putIfAbsent(names[id], inst);
+            for (String key : new String[]{names[id], tickers[id]}) {
+                for (int i = 0; i < key.length(); i++) {
+                    char c = key.charAt(i);
+                    if (charCodes[c] == 0) charCodes[c] = (short) Math.min(++alphabet, MAX_CODE);
+                }
+                occurrences += Math.max(0, key.length() - GRAM + 1);
+            }
+        }
+
+        // pary (trigram, id) spakowane w long; sortowanie grupuje je w listy rosnących identyfikatorów
+        long[] pairs = new long[Math.toIntExact(occurrences)];
+        int count = 0;
+        for (int id = 0; id < n; id++) {
+            for (String key : new String[]{names[id], tickers[id]}) {
+                for (int i = 0; i + GRAM <= key.length(); i++) {
+                    pairs[count++] = (gramCode(key, i) << 24) | id;
+                }
+            }
+        }
+        Arrays.sort(pairs);
+        long[] gramList = new long[count];
+        int[] starts = new int[count + 1];
+        int[] ids = new int[count];
+        int distinct = 0, size = 0;
+        for (int i = 0; i < count; i++) {
+            if (i > 0 && pairs[i] == pairs[i - 1]) continue;
+            long gram = pairs[i] >>> 24;
+            if (distinct == 0 || gramList[distinct - 1] != gram) {
+                gramList[distinct] = gram;
+                starts[distinct++] = size;
+            }
+            ids[size++] = (int) (pairs[i] & (MAX_INSTRUMENTS - 1));
+        }
+        starts[distinct] = size;
+        grams = Arrays.copyOf(gramList, distinct);
+        offsets = Arrays.copyOf(starts, distinct + 1);
+        postings = Arrays.copyOf(ids, size);
+
+        Map<String, TopK> prefixes = new HashMap<>();
+        for (int id = 0; id < n; id++) {
+            for (String key : new String[]{names[id], tickers[id]}) {
+                for (int i = 0; i < key.length(); i++) {
+                    if (i > 0 && key.charAt(i - 1) != ' ') continue; // początek słowa
+                    for (int len = 1; len < GRAM && i + len <= key.length() && key.charAt(i + len - 1) != ' '; len++) {
+                        String q = key.substring(i, i + len);
+                        offer(id, q, prefixes.computeIfAbsent(q, k -> new TopK(SHORT_LIMIT)));
+                    }
+                }
+            }
+        }
+        shortQueries = new HashMap<>(2 * prefixes.size());
+        prefixes.forEach((q, top) -> shortQueries.put(q, Arrays.copyOf(top.keys, top.size)));
+    }
+
+    List<Instrument> instruments() {
+        return instruments;
+    }
+
+    /** Instrument o podanym tickerze (bez względu na wielkość liter), a w drugiej kolejności o podanej nazwie. */
+    Instrument find(String tickerOrName) {
+        String raw = tickerOrName.trim();
+        Instrument inst = byTicker.get(raw.toUpperCase(Locale.ROOT));
+        return inst != null ? inst : byName.get(normalize(raw));
+    }
+
+    /**
+     * Najlepiej dopasowane instrumenty, najwyżej {@code limit}: dokładny ticker, początek tickera,
+     * początek nazwy, początek słowa nazwy, fragment tickera, fragment nazwy; w obrębie grupy krótsze nazwy
+     * i kolejność z pliku. Dla zapytań krótszych niż 3 znaki najwyżej {@link #SHORT_LIMIT} wyników.
+     */
+    List<Instrument> search(String query, int limit) {
+        String q = normalize(query);
+        if (q.isEmpty() || limit <= 0) return List.of();
+        long[] keys;
+        int size;
+        if (q.length() < GRAM) {
+            keys = shortQueries.getOrDefault(q, new long[0]);
+            size = Math.min(limit, keys.length);
+        } else {
+            TopK top = new TopK(limit);
+            collectTrigramMatches(q, top);
+            keys = top.keys;
+            size = top.size;
+        }
+        List<Instrument> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(instruments.get((int) (keys[i] & (MAX_INSTRUMENTS - 1))));
+        }
+        return result;
+    }
+
+    private void collectTrigramMatches(String q, TopK top) {
+        int count = q.length() - GRAM + 1;
+        int[] from = new int[count];
+        int[] to = new int[count];
+        for (int i = 0; i < count; i++) {
+            long code = gramCode(q, i);
+            int k = code < 0 ? -1 : Arrays.binarySearch(grams, code);
+            if (k < 0) return;
+            from[i] = offsets[k];
+            to[i] = offsets[k + 1];
+        }
+        int shortest = 0;
+        for (int i = 1; i < count; i++) {
+            if (to[i] - from[i] < to[shortest] - from[shortest]) shortest = i;
+        }
+        int[] candidates = Arrays.copyOfRange(postings, from[shortest], to[shortest]);
+        int size = candidates.length;
+        for (int i = 0; i < count && size > 0; i++) {
+            if (i != shortest) size = intersect(candidates, size, from[i], to[i]);
+        }
+        for (int i = 0; i < size; i++) {
+            offer(candidates[i], q, top);
+        }
+    }
+
+    /** Zostawia w {@code candidates[0, size)} tylko identyfikatory obecne w {@code postings[from, to)}. */
+    private int intersect(int[] candidates, int size, int from, int to) {
+        int kept = 0;
+        int j = from;
+        for (int i = 0; i < size && j < to; i++) {
+            int id = candidates[i];
+            while (j < to && postings[j] < id) j++;
+            if (j < to && postings[j] == id) candidates[kept++] = id;
+        }
+        return kept;
+    }
+
+    private void offer(int id, String q, TopK top) {
+        int rank = rank(names[id], tickers[id], q);
+        if (rank < 0) return;
+        long key = ((long) rank << 44) | ((long) Math.min(names[id].length(), 0xFFFFF) << 24) | id;
+        top.offer(key);
+    }
+
+    private static int rank(String name, String ticker, String q) {
+        if (ticker.equals(q) || symbolEquals(ticker, q)) return EXACT_TICKER;
+        if (ticker.startsWith(q)) return TICKER_PREFIX;
+        if (name.startsWith(q)) return NAME_PREFIX;
+        int at = name.indexOf(q);
+        for (int i = at; i > 0; i = name.indexOf(q, i + 1)) {
+            if (name.charAt(i - 1) == ' ') return WORD_PREFIX;
+        }
+        if (ticker.contains(q)) return TICKER_INFIX;
+        return at >= 0 ? NAME_INFIX : -1;
+    }
+
+    /** Ticker bez sufiksu rynku: "cdr pl" pasuje do "cdr". */
+    private static boolean symbolEquals(String ticker, String q) {
+        return ticker.length() > q.length() && ticker.charAt(q.length()) == ' ' && ticker.startsWith(q);
+    }
+
+    /** Kod trigramu od pozycji {@code i} albo -1, gdy zawiera znak nieobecny w indeksie. */
+    private long gramCode(String s, int i) {
+        long code = 0;
+        for (int j = i; j < i + GRAM; j++) {
+            int c = charCodes[s.charAt(j)];
+            if (c == 0) return -1;
+            code = (code << CHAR_BITS) | c;
+        }
+        return code;
+    }
+
+    /** Małe litery bez znaków diakrytycznych; ciągi innych znaków niż litery i cyfry stają się jedną spacją. */
+    static String normalize(String s) {
+        String decomposed = Normalizer.normalize(s, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(decomposed.length());
+        boolean gap = false;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) continue;
+            c = switch (c) {
+                case 'ł', 'Ł' -> 'l'; // nie rozkłada się w NFD
+                case 'ø', 'Ø' -> 'o';
+                case 'đ', 'Đ' -> 'd';
+                default -> Character.toLowerCase(c);
+            };
+            if (Character.isLetterOrDigit(c)) {
+                if (gap && sb.length() > 0) sb.append(' ');
+                gap = false;
+                sb.append(c);
+            } else {
+                gap = true;
+            }
+        }
+        return sb.toString();
+    }
+
+    /** Rosnąco posortowane najlepsze klucze rankingu, najwyżej {@code capacity}. */
+    private static final class TopK {
+        final long[] keys;
+        int size;
+
+        TopK(int capacity) {
+            keys = new long[capacity];
+        }
+
+        void offer(long key) {
+            if (size == keys.length && key >= keys[size - 1]) return;
+            int pos = Arrays.binarySearch(keys, 0, size, key);
+            if (pos >= 0) return; // ten sam instrument z innego słowa
+            pos = -pos - 1;
+            int moved = Math.min(size, keys.length - 1) - pos;
+            if (moved > 0) System.arraycopy(keys, pos, keys, pos + 1, moved);
+            keys[pos] = key;
+            if (size < keys.length) size++;
+        }
+    }
+}
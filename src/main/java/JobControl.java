@@ -0,0 +1,104 @@
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Sterowanie pojedynczym zadaniem symulacji: kooperacyjne anulowanie i raportowanie postępu etapów.
+ * Silniki wywołują {@link #checkCancelled()} oraz {@link #advance(long)} w pętlach (co blok ścieżek),
+ * więc anulowanie przerywa obliczenia najpóźniej po jednym bloku na wątek.
+ * Słuchacz wywoływany jest z wątków roboczych i nie częściej niż co 1% postępu etapu.
+ * Opcjonalny odbiorca wyników pośrednich ({@link SimulationSnapshot}) dostaje je w trakcie symulacji;
+ * silniki liczą je tylko wtedy, gdy odbiorca istnieje.
+ */
+public final class JobControl {
+
+    public enum Stage {
+        FETCH("Pobieranie danych"),
+        CALIBRATE("Kalibracja modelu"),
+        SIMULATE("Generowanie scenariuszy");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    @FunctionalInterface
+    public interface Listener {
+        /** {@code fraction} z przedziału [0, 1] w obrębie etapu {@code stage}. */
+        void onProgress(Stage stage, double fraction);
+    }
+
+    private static final int REPORT_STEPS = 100;
+
+    private final Listener listener;
+    private final Consumer<SimulationSnapshot> snapshots;
+    private volatile boolean cancelled;
+    private volatile Stage stage;
+    private volatile long total = 1; // advance() przed begin() (np. z JobControl.none()) nie dzieli przez zero
+    private final AtomicLong done = new AtomicLong();
+    private final AtomicLong reportedStep = new AtomicLong();
+
+    public JobControl(Listener listener) {
+        this(listener, null);
+    }
+
+    public JobControl(Listener listener, Consumer<SimulationSnapshot> snapshots) {
+        this.listener = listener;
+        this.snapshots = snapshots;
+    }
+
+    /** Zadanie bez słuchacza (wywołania synchroniczne, testy, tryb wsadowy). */
+    public static JobControl none() {
+        return new JobControl((stage, fraction) -> { });
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /** @throws CancellationException gdy zadanie anulowano */
+    public void checkCancelled() {
+        if (cancelled) throw new CancellationException("Symulacja anulowana.");
+    }
+
+    public boolean wantsSnapshots() {
+        return snapshots != null;
+    }
+
+    /** Przekazuje wynik pośredni odbiorcy (pomijany po anulowaniu). */
+    public void publish(SimulationSnapshot snapshot) {
+        if (snapshots != null && !cancelled) snapshots.accept(snapshot);
+    }
+
+    /** Rozpoczyna etap złożony z {@code total} jednostek pracy (np. instrumentów, ścieżek). */
+    public void begin(Stage stage, long total) {
+        checkCancelled();
+        this.stage = stage;
+        this.total = Math.max(1, total);
+        done.set(0);
+        reportedStep.set(0);
+        listener.onProgress(stage, 0.0);
+    }
+
+    /** Zalicza {@code units} jednostek bieżącego etapu i sprawdza anulowanie. */
+    public void advance(long units) {
+        checkCancelled();
+        long now = done.addAndGet(units);
+        long step = Math.min(REPORT_STEPS, now * REPORT_STEPS / total);
+        long previous = reportedStep.get();
+        if (step > previous && reportedStep.compareAndSet(previous, step)) {
+            listener.onProgress(stage, (double) step / REPORT_STEPS);
+        }
+    }
+}
@@ -1,5 +1,12 @@
+import java.util.Arrays;
+
 public class MainLauncher {
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--batch")) {
+            // tryb wsadowy nie ładuje JavaFX, więc działa na serwerze bez środowiska graficznego
+            BatchRunner.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         RiskFolioApp.main(args);
     }
 }
@@ -0,0 +1,116 @@
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rejestr metryk procesu: liczniki i histogramy wartości (czasy etapów w ms, przepustowość).
+ * Wypełniany przez {@link Telemetry}; migawka ({@link #snapshot()}) zapisywana jest jako JSON,
+ * np. po przebiegu wsadowym albo przy zamykaniu aplikacji.
+ */
+public final class Metrics {
+
+    private static final Metrics GLOBAL = new Metrics();
+
+    public record HistogramSnapshot(long count, double sum, double min, double max, double mean,
+                                    double p50, double p90, double p99) {
+    }
+
+    /** {@code taken} - chwila wykonania w formacie ISO-8601. */
+    public record Snapshot(String taken, Map<String, Long> counters, Map<String, HistogramSnapshot> histograms) {
+    }
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    public static Metrics global() {
+        return GLOBAL;
+    }
+
+    public void increment(String name) {
+        add(name, 1);
+    }
+
+    public void add(String name, long delta) {
+        counters.computeIfAbsent(name, k -> new LongAdder()).add(delta);
+    }
+
+    public void record(String name, double value) {
+        histograms.computeIfAbsent(name, k -> new Histogram()).record(value);
+    }
+
+    public Snapshot snapshot() {
+        Map<String, Long> c = new TreeMap<>();
+        counters.forEach((name, adder) -> c.put(name, adder.sum()));
+        Map<String, HistogramSnapshot> h = new TreeMap<>();
+        histograms.forEach((name, histogram) -> h.put(name, histogram.snapshot()));
+        return new Snapshot(Instant.now().toString(), c, h);
+    }
+
+    public void writeJson(Path file) throws IOException {
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file.toFile(), snapshot());
+    }
+
+    public void reset() {
+        counters.clear();
+        histograms.clear();
+    }
+
+    /**
+     * Histogram o przedziałach rosnących geometrycznie (8 na każde podwojenie, błąd względny
+     * kwantyli do ~4,5%) od {@link #MIN_VALUE}; wartości mniejsze trafiają do pierwszego przedziału.
+     * Zapisy są rzadkie (raz na etap lub instrument), więc wystarcza synchronizacja.
+     */
+    static final class Histogram {
+        private static final double MIN_VALUE = 1e-3;
+        private static final int PER_DOUBLING = 8;
+        private static final int BUCKETS = 64 * PER_DOUBLING;
+
+        private final long[] counts = new long[BUCKETS];
+        private long count;
+        private double sum;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+
+        synchronized void record(double value) {
+            if (Double.isNaN(value)) return;
+            counts[bucket(value)]++;
+            count++;
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        synchronized HistogramSnapshot snapshot() {
+            if (count == 0) return new HistogramSnapshot(0, 0, 0, 0, 0, 0, 0, 0);
+            return new HistogramSnapshot(count, sum, min, max, sum / count,
+                    quantile(0.50), quantile(0.90), quantile(0.99));
+        }
+
+        /** Środek geometryczny przedziału, w którym leży kwantyl, przycięty do [min, max]. */
+        private double quantile(double q) {
+            long rank = (long) Math.ceil(q * count);
+            long cumulative = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                cumulative += counts[b];
+                if (cumulative >= rank && counts[b] > 0) {
+                    double mid = MIN_VALUE * Math.pow(2, (b - 0.5) / PER_DOUBLING);
+                    return Math.max(min, Math.min(max, mid));
+                }
+            }
+            return max;
+        }
+
+        private static int bucket(double value) {
+            if (!(value > MIN_VALUE)) return 0;
+            int b = (int) Math.ceil(Math.log(value / MIN_VALUE) / Math.log(2) * PER_DOUBLING);
+            return Math.min(BUCKETS - 1, b);
+        }
+    }
+}
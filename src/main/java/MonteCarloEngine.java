@@ -1,156 +1,553 @@
+import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Random;
-import java.util.stream.IntStream;
+import java.util.Optional;
 
 public class MonteCarloEngine {
 
-    private final DataService dataService = new DataService();
+    private final DataService dataService;
     private final GarchOptimizer optimizer = new GarchOptimizer();
+    private final RiskService riskService = new RiskService();
+    private final CalibrationCache calibrationCache = new CalibrationCache(CALIBRATION_CACHE_SIZE, WARM_START_DISTANCE);
+    private final PathKernel kernel;
+
+    private static final double REPORT_CONFIDENCE = 0.95;
+    private static final int CALIBRATION_CACHE_SIZE = 64;
+    private static final double WARM_START_DISTANCE = 0.5;
+    private static final int BLOCK_SIZE = 256;
+    private static final int PRECISION_BATCHES = 32;
+    private static final int ADAPTIVE_BATCH_SIZE = 1024;
+    private static final int MIN_ADAPTIVE_BATCHES = 8;
+    private static final int SKETCH_BATCH_LIMIT = 1 << 16;
+    private static final int SKETCH_SEGMENT = 4096;
+    private static final int FIRST_SNAPSHOT_PATHS = 1024;
+    private static final long SNAPSHOT_INTERVAL_NANOS = 250_000_000L;
+    private static final double Z_95 = 1.959963984540054;
+
+    public MonteCarloEngine() {
+        this(new DataService());
+    }
 
-    private static final int NUM_SIMULATIONS = 10_000;
+    public MonteCarloEngine(DataService dataService) {
+        this(dataService, PathKernel.preferred());
+    }
 
-    private static final String PROXY_PL = "WIG20";
-    private static final String PROXY_US = "^SPX";
+    /** Silnik z wybranym jądrem kroku ścieżek (np. skalarnym do porównań). */
+    MonteCarloEngine(DataService dataService, PathKernel kernel) {
+        this.dataService = dataService;
+        this.kernel = kernel;
+    }
+
+    public DataService getDataService() {
+        return dataService;
+    }
 
     public SimulationResult runSimulation(double capital, int horizon, List<String> tickers, List<Double> weights, int historyYears, boolean useInterpolation) throws Exception {
+        return runSimulation(capital, horizon, tickers, weights, historyYears, useInterpolation, SimulationOptions.defaults());
+    }
 
-        List<List<Double>> rawReturns = new ArrayList<>();
-        for (String t : tickers) {
-            rawReturns.add(dataService.getHistoricalReturns(t, historyYears));
-        }
+    public SimulationResult runSimulation(double capital, int horizon, List<String> tickers, List<Double> weights, int historyYears, boolean useInterpolation,
+                                          SimulationOptions options) throws Exception {
+        return runSimulation(capital, horizon, tickers, weights, historyYears, useInterpolation, options, JobControl.none());
+    }
 
-        List<List<Double>> processedReturns = new ArrayList<>();
-        StringBuilder warnings = new StringBuilder();
+    /**
+     * Symulacja jako zadanie: postęp etapów trafia do {@code control}, a jego anulowanie przerywa
+     * pobieranie danych lub pętlę ścieżek wyjątkiem {@link java.util.concurrent.CancellationException}.
+     */
+    public SimulationResult runSimulation(double capital, int horizon, List<String> tickers, List<Double> weights, int historyYears, boolean useInterpolation,
+                                          SimulationOptions options, JobControl control) throws Exception {
+
+        StageTimes times = new StageTimes();
+        long loadStart = System.nanoTime();
+        PortfolioHistory history = PortfolioHistory.load(dataService, tickers, historyYears, useInterpolation, control);
+        times.add("Dane", StageTimes.millisSince(loadStart), tickers.size() + " instr.");
+        ReturnMatrix matrix = history.matrix();
+        String warnings = history.warnings();
+
+        double[] portfolioReturns = matrix.weightedSum(weights.stream().mapToDouble(Double::doubleValue).toArray());
+        double avgDailyReturn = Arrays.stream(portfolioReturns).average().orElse(0.0);
+        RandomSource random = options.random();
+        CalibrationCache.Key calibrationKey = new CalibrationCache.Key(tickers, weights, historyYears, useInterpolation,
+                LocalDate.ofEpochDay(matrix.lastDate()));
+        control.begin(JobControl.Stage.CALIBRATE, 1);
+        Telemetry.Calibration calibration = Telemetry.Calibration.start("portfel");
+        CalibrationCache.Entry cached = calibrationCache.get(calibrationKey);
+        GarchFit fit = cached != null ? cached.fit() : null;
+        String calibrationNote = "z pamięci podręcznej (bez ponownej estymacji)";
+        String calibrationSource = "cache";
+        if (fit == null) {
+            Optional<GarchParams> warmStart = calibrationCache.nearestStart(calibrationKey);
+            fit = warmStart.isPresent() ? optimizer.fit(portfolioReturns, warmStart.get()) : optimizer.fit(portfolioReturns);
+            calibrationNote = warmStart.isPresent() ? "start z najbliższej zapamiętanej kalibracji" : "od zera (start z najlepszego punktu siatki)";
+            calibrationSource = warmStart.isPresent() ? "warm" : "cold";
+        }
+        times.add("Kalibracja", calibration.finish(calibrationSource, fit),
+                calibrationSource.equals("cache") ? "z pamięci podręcznej" : fit.iterations() + " iteracji");
+        GarchParams garch = fit.params();
+        GarchLikelihood.Surface surface;
+        if (cached != null) {
+            surface = cached.surface();
+        } else {
+            long surfaceStart = System.nanoTime();
+            surface = optimizer.likelihoodSurface(portfolioReturns, fit);
+            times.add("Diagnostyka", StageTimes.millisSince(surfaceStart), "profil wiarygodności");
+            calibrationCache.put(calibrationKey, fit, surface);
+        }
+        control.advance(1);
+
+        String infoLog = buildModelReport(fit, tickers, surface, portfolioReturns.length) + "Kalibracja: " + calibrationNote + "\n" + "\n=== JAKOŚĆ DANYCH ===\n" + warnings
+                + "\nGenerator losowy: " + random + "\n"
+                + "Jądro ścieżek: " + kernel.description() + "\n";
+
+        final int numSimulations = options.numSimulations();
+        final VarianceReduction reduction = options.reduction();
+        final SimulationOptions.Convergence convergence = options.convergence();
+        final boolean fullPaths = options.storage() == SimulationOptions.PathStorage.FULL_PATHS;
+        final boolean sketched = options.storage() == SimulationOptions.PathStorage.SKETCH;
+        // Profil horyzontów: wartości ze wszystkich dni, gdy mieszczą się w pamięci, inaczej histogramy pasm.
+        final HorizonProfile.Recorder recorder = options.horizonProfile() && !sketched
+                && HorizonProfile.Recorder.fits(horizon, numSimulations)
+                ? new HorizonProfile.Recorder(horizon, numSimulations, capital)
+                : null;
+        final double[] expectedUnitValues = reduction == VarianceReduction.CONTROL_VARIATE
+                ? expectedUnitValues(avgDailyReturn, horizon)
+                : null;
+        final PathModel model = new PathModel(capital, horizon, avgDailyReturn, garch,
+                new PercentileBands.Collector(capital, Math.log1p(avgDailyReturn), expectedDailyVariance(garch, horizon)),
+                recorder, control);
+        control.begin(JobControl.Stage.SIMULATE, numSimulations);
+
+        int batchSize = convergence != null
+                ? ADAPTIVE_BATCH_SIZE
+                : ShockSampler.batchSizeFor(numSimulations, PRECISION_BATCHES, reduction);
+        if (sketched) batchSize = Math.min(batchSize, SKETCH_BATCH_LIMIT);
+        ShockSampler sampler = new ShockSampler(reduction, random, horizon, batchSize);
+        if (sketched) {
+            double[] expected = reduction == VarianceReduction.CONTROL_VARIATE
+                    ? new double[]{capital * Math.pow(1 + avgDailyReturn, horizon), expectedRealizedVariance(garch, horizon)}
+                    : null;
+            return runSketched(sampler, numSimulations, model, expected, options.sketchCompression(), reduction,
+                    options.horizonProfile() ? expectedUnitValues : null, options.horizonProfile(), infoLog, times);
+        }
+        PathStore paths = fullPaths ? new PathStore(numSimulations, horizon) : null;
+        double[] finalValues = new double[numSimulations];
+        double[] realizedVariance = null;
+        double[][] controls = null;
+        double[] expected = null;
+        if (reduction == VarianceReduction.CONTROL_VARIATE) {
+            realizedVariance = new double[numSimulations];
+            controls = new double[][]{finalValues, realizedVariance};
+            expected = new double[]{capital * Math.pow(1 + avgDailyReturn, horizon), expectedRealizedVariance(garch, horizon)};
+        }
 
-        if (useInterpolation) {
-            List<Double> wig20 = null;
-            List<Double> spx = null;
+        AdaptiveOutcome adaptive = null;
+        Telemetry.PathGeneration generation = Telemetry.PathGeneration.start();
+        if (convergence == null && control.wantsSnapshots()) {
+            simulateProgressively(sampler, numSimulations, model, paths, finalValues, realizedVariance);
+        } else if (convergence == null) {
+            simulateRange(sampler, 0, numSimulations, model, paths, finalValues, realizedVariance);
+        } else {
+            adaptive = runUntilConverged(sampler, convergence, numSimulations, model, finalValues, realizedVariance, controls, expected);
+            finalValues = Arrays.copyOf(finalValues, adaptive.paths());
+            if (controls != null) {
+                realizedVariance = Arrays.copyOf(realizedVariance, adaptive.paths());
+                controls = new double[][]{finalValues, realizedVariance};
+            }
+        }
 
-            int maxLen = rawReturns.stream().mapToInt(List::size).max().orElse(0);
+        times.addThroughput("Ścieżki", generation.finish(finalValues.length, horizon), finalValues.length, "ścieżek");
 
-            for (int i = 0; i < tickers.size(); i++) {
-                String ticker = tickers.get(i);
-                List<Double> assetData = rawReturns.get(i);
+        Telemetry.RiskMetrics risk = Telemetry.RiskMetrics.start();
+        PrecisionReport precision = riskService.estimatePrecision(finalValues, controls, expected, batchSize, REPORT_CONFIDENCE);
+        infoLog += buildPrecisionReport(precision, reduction, adaptive, numSimulations);
 
-                if (assetData.size() < maxLen) {
-                    List<Double> filledData = new ArrayList<>();
-                    int missingPoints = maxLen - assetData.size();
-                    boolean patched = false;
+        RiskSummary summary = riskService.summarize(finalValues, RiskSummary.standardLevels());
+        PercentileBands bands = model.bands().finish(PercentileBands.standardLevels());
+        HorizonProfile horizons = null;
+        if (recorder != null) {
+            horizons = recorder.finish(finalValues.length, batchSize, expectedUnitValues);
+        } else if (options.horizonProfile()) {
+            horizons = new HorizonProfile(model.bands().totals(), expectedUnitValues);
+        }
+        times.add("Miary ryzyka", risk.finish(finalValues.length));
+        if (horizons != null) infoLog += profileReport(horizons);
+        infoLog += times.report();
+        return new SimulationResult(paths, finalValues, precision, summary, bands, null, horizons, infoLog);
+    }
 
-                    if (!ticker.endsWith(".*")) {
-                        if (wig20 == null) wig20 = dataService.getHistoricalReturns(PROXY_PL, historyYears);
-                        patched = tryPatchData(filledData, wig20, assetData, missingPoints);
-                        if(patched) warnings.append(String.format("ℹ %s: Uzupełniono %d dni danymi WIG20.\n", ticker, missingPoints));
+    /**
+     * Tryb SKETCH: partie ścieżek liczone są do jednego bufora wielokrotnego użytku, a segmenty
+     * partii wypełniają własne szkice kwantyli, scalane w stałej kolejności (wynik nie zależy
+     * od liczby wątków). Średnia jest dokładna, VaR i CVaR pochodzą ze szkicu; błędy standardowe
+     * liczone są dokładnie w obrębie partii.
+     */
+    private SimulationResult runSketched(ShockSampler sampler, int numSimulations, PathModel model, double[] expected,
+                                         double compression, VarianceReduction reduction, double[] expectedUnitValues,
+                                         boolean profiled, String infoLog, StageTimes times) {
+        int batchSize = sampler.batchSize();
+        double[] buffer = new double[batchSize];
+        double[] realizedVariance = expected != null ? new double[batchSize] : null;
+        double[][] controls = expected != null ? new double[][]{buffer, realizedVariance} : null;
+
+        QuantileSketch sketch = new QuantileSketch(compression);
+        List<double[]> batchEstimates = new ArrayList<>();
+        long lastSnapshot = System.nanoTime();
+
+        // szkice i estymaty partii liczone są w tej samej pętli, więc wliczają się do czasu ścieżek
+        Telemetry.PathGeneration generation = Telemetry.PathGeneration.start();
+        for (int from = 0; from < numSimulations; from += batchSize) {
+            int to = Math.min(numSimulations, from + batchSize);
+            for (QuantileSketch part : simulateIntoSketches(sampler, from, to, model, buffer, realizedVariance, compression)) {
+                sketch.merge(part);
+            }
+            if (to - from == batchSize) {
+                batchEstimates.add(riskService.estimateRange(buffer, controls, expected, 0, batchSize, REPORT_CONFIDENCE));
+            }
+            if (model.control().wantsSnapshots() && to < numSimulations
+                    && (from == 0 || System.nanoTime() - lastSnapshot >= SNAPSHOT_INTERVAL_NANOS)) {
+                QuantileSketch current = sketch.copy();
+                model.control().publish(new SimulationSnapshot(to, numSimulations, current.mean(),
+                        riskService.calculateVaR(current, REPORT_CONFIDENCE), riskService.calculateCVaR(current, REPORT_CONFIDENCE),
+                        model.bands().finish(PercentileBands.standardLevels())));
+                lastSnapshot = System.nanoTime();
+            }
+        }
+        times.addThroughput("Ścieżki", generation.finish(numSimulations, model.horizon()), numSimulations, "ścieżek");
 
-                    } else if (ticker.endsWith(".US")) {
-                        if (spx == null) spx = dataService.getHistoricalReturns(PROXY_US, historyYears);
-                        patched = tryPatchData(filledData, spx, assetData, missingPoints);
-                        if(patched) warnings.append(String.format("ℹ %s: Uzupełniono %d dni danymi S&P500.\n", ticker, missingPoints));
-                    }
+        Telemetry.RiskMetrics risk = Telemetry.RiskMetrics.start();
+        double[] overall;
+        if (expected == null) {
+            overall = new double[]{sketch.mean(),
+                    riskService.calculateVaR(sketch, REPORT_CONFIDENCE), riskService.calculateCVaR(sketch, REPORT_CONFIDENCE)};
+        } else {
+            // ze zmiennymi kontrolnymi: średnia estymat ważonych z partii
+            overall = new double[3];
+            for (double[] e : batchEstimates) {
+                for (int k = 0; k < 3; k++) overall[k] += e[k] / batchEstimates.size();
+            }
+        }
+        PrecisionReport precision = riskService.combine(overall, batchEstimates, REPORT_CONFIDENCE);
+        infoLog += buildPrecisionReport(precision, reduction, null, numSimulations);
+        infoLog += String.format("Rozkład: szkic kwantyli (δ=%.0f, %d centroidów, %,d B) zamiast %,d wartości końcowych\n",
+                compression, sketch.size(), sketch.toBytes().length, numSimulations);
+
+        RiskSummary summary = riskService.summarize(sketch, RiskSummary.standardLevels());
+        HorizonProfile horizons = profiled ? new HorizonProfile(model.bands().totals(), expectedUnitValues) : null;
+        times.add("Miary ryzyka", risk.finish(numSimulations));
+        if (horizons != null) infoLog += profileReport(horizons);
+        infoLog += times.report();
+        return new SimulationResult(null, new double[0], precision, summary, model.bands().finish(PercentileBands.standardLevels()), sketch, horizons, infoLog);
+    }
 
-                    if (patched) {
-                        processedReturns.add(filledData);
-                    } else {
-                        processedReturns.add(assetData);
-                    }
-                } else {
-                    processedReturns.add(assetData);
+    /**
+     * Symuluje ścieżki [from, to) do {@code buffer} (indeksy względem {@code from}) równolegle,
+     * w segmentach po {@link #SKETCH_SEGMENT}; każdy segment zwraca własny szkic.
+     */
+    private QuantileSketch[] simulateIntoSketches(ShockSampler sampler, int from, int to, PathModel model,
+                                                  double[] buffer, double[] realizedVariance, double compression) {
+        int segments = (to - from + SKETCH_SEGMENT - 1) / SKETCH_SEGMENT;
+        QuantileSketch[] parts = new QuantileSketch[segments];
+        ComputePool.forEach(0, segments, () -> new Worker(sampler, model), (w, s) -> {
+            model.control().checkCancelled();
+            QuantileSketch local = new QuantileSketch(compression);
+            int start = from + s * SKETCH_SEGMENT;
+            int end = Math.min(to, start + SKETCH_SEGMENT);
+            int[] ids = w.ids;
+            Workspace ws = w.ws;
+            for (int i = start; i < end; i += PathKernel.WIDTH) {
+                int count = Math.min(PathKernel.WIDTH, end - i);
+                for (int p = 0; p < count; p++) ids[p] = i + p;
+                simulateTile(ids, count, w.cursor, ws, model, null, null, w.histogram, null);
+                for (int p = 0; p < count; p++) {
+                    double v = ws.price[p];
+                    buffer[i - from + p] = v;
+                    if (realizedVariance != null) realizedVariance[i - from + p] = ws.sumSquares[p];
+                    local.add(v);
                 }
             }
-        } else {
-            processedReturns = rawReturns;
+            parts[s] = local;
+            model.control().advance(end - start);
+        }, w -> w.close(model));
+        return parts;
+    }
+
+    /**
+     * Parametry wspólne dla wszystkich ścieżek jednego przebiegu, zbieracz pasm percentyli,
+     * zapis dziennych wartości do profilu horyzontów (null, gdy niepotrzebny) i sterowanie zadaniem.
+     */
+    private record PathModel(double capital, int horizon, double drift, GarchParams garch, PercentileBands.Collector bands,
+                             HorizonProfile.Recorder recorder, JobControl control) {}
+
+    private record AdaptiveOutcome(int paths, String stopReason, double varHalfWidth, double cvarHalfWidth) {}
+
+    /** Symuluje ścieżki [from, to) równolegle (w {@link ComputePool}), w blokach po {@link #BLOCK_SIZE}. */
+    private void simulateRange(ShockSampler sampler, int from, int to, PathModel model,
+                               PathStore paths, double[] finalValues, double[] realizedVariance) {
+        int numBlocks = (to - from + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        ComputePool.forEach(0, numBlocks, () -> new Worker(sampler, model), (w, b) -> {
+            model.control().checkCancelled();
+            int start = from + b * BLOCK_SIZE;
+            int end = Math.min(to, start + BLOCK_SIZE);
+            int[] ids = w.ids;
+            Workspace ws = w.ws;
+            for (int i = start; i < end; i += PathKernel.WIDTH) {
+                int count = Math.min(PathKernel.WIDTH, end - i);
+                for (int p = 0; p < count; p++) ids[p] = i + p;
+                simulateTile(ids, count, w.cursor, ws, model, paths, ids, w.histogram, model.recorder());
+                System.arraycopy(ws.price, 0, finalValues, i, count);
+                if (realizedVariance != null) System.arraycopy(ws.sumSquares, 0, realizedVariance, i, count);
+            }
+            model.control().advance(end - start);
+        }, w -> w.close(model));
+    }
+
+    /**
+     * Jak {@link #simulateRange} dla wszystkich ścieżek, ale porcjami, po każdej publikując wynik pośredni.
+     * Pierwsza porcja jest mała ({@link #FIRST_SNAPSHOT_PATHS}), kolejne dobierane są z dotychczasowego
+     * tempa tak, by trwały ok. {@link #SNAPSHOT_INTERVAL_NANOS}. Ścieżki zależą tylko od indeksu,
+     * więc wynik końcowy jest identyczny jak przy jednym przebiegu.
+     */
+    private void simulateProgressively(ShockSampler sampler, int total, PathModel model,
+                                       PathStore paths, double[] finalValues, double[] realizedVariance) {
+        long start = System.nanoTime();
+        int done = 0;
+        int chunk = FIRST_SNAPSHOT_PATHS;
+        while (done < total) {
+            int to = (int) Math.min(total, (long) done + chunk);
+            simulateRange(sampler, done, to, model, paths, finalValues, realizedVariance);
+            done = to;
+            if (done < total) publishSnapshot(model, finalValues, done, total);
+            double nanosPerPath = (double) (System.nanoTime() - start) / done;
+            chunk = (int) Math.max(FIRST_SNAPSHOT_PATHS, Math.min(Integer.MAX_VALUE, SNAPSHOT_INTERVAL_NANOS / nanosPerPath));
         }
+    }
 
-        PortfolioHistoryResult historyResult = calculatePortfolioHistory(processedReturns, weights);
-        List<Double> portfolioReturns = historyResult.returns;
+    /** Wynik pośredni z pierwszych {@code done} wartości końcowych i bieżących histogramów pasm. */
+    private void publishSnapshot(PathModel model, double[] finalValues, int done, int total) {
+        RiskSummary s = riskService.summarize(Arrays.copyOf(finalValues, done), REPORT_CONFIDENCE);
+        model.control().publish(new SimulationSnapshot(done, total, s.mean(), s.var()[0], s.cvar()[0],
+                model.bands().finish(PercentileBands.standardLevels())));
+    }
 
-        if (!useInterpolation && historyResult.cutInfo > 0) {
-            warnings.append("Analiza ucięta do ").append(historyResult.cutInfo).append(" dni (najmłodszy instrument).\n");
-        } else if (useInterpolation) {
-            int finalLen = portfolioReturns.size();
-            int maxRawLen = rawReturns.stream().mapToInt(List::size).max().orElse(0);
-            if (finalLen < maxRawLen) {
-                warnings.append("Mimo interpolacji, analiza skrócona do ").append(finalLen).append(" dni.\n");
+    /**
+     * Symuluje kolejne rundy partii, aż półszerokość 95% przedziału ufności VaR i CVaR
+     * spadnie poniżej tolerancji, skończy się budżet czasu albo limit ścieżek.
+     * Rundy rosną geometrycznie, ale nie ponad to, co zmieści się w pozostałym czasie.
+     */
+    private AdaptiveOutcome runUntilConverged(ShockSampler sampler, SimulationOptions.Convergence convergence, int maxPaths,
+                                              PathModel model, double[] finalValues, double[] realizedVariance,
+                                              double[][] controls, double[] expected) {
+        int batchSize = sampler.batchSize();
+        double target = convergence.tolerance() * model.capital();
+        long start = System.nanoTime();
+        long deadline = start + convergence.timeBudget().toNanos();
+
+        List<double[]> batchEstimates = new ArrayList<>();
+        int done = 0;
+        int roundBatches = MIN_ADAPTIVE_BATCHES;
+        while (true) {
+            int to = (int) Math.min(maxPaths, done + (long) roundBatches * batchSize);
+            simulateRange(sampler, done, to, model, null, finalValues, realizedVariance);
+            for (int b = batchEstimates.size(); (b + 1) * batchSize <= to; b++) {
+                batchEstimates.add(riskService.estimateRange(finalValues, controls, expected,
+                        b * batchSize, (b + 1) * batchSize, REPORT_CONFIDENCE));
             }
-        }
+            done = to;
 
-        double avgDailyReturn = portfolioReturns.stream().mapToDouble(d -> d).average().orElse(0.0);
-        GarchParams garch = optimizer.optimize(portfolioReturns);
+            PrecisionReport p = riskService.combine(new double[3], batchEstimates, REPORT_CONFIDENCE);
+            double varHalf = Z_95 * p.varStdError();
+            double cvarHalf = Z_95 * p.cvarStdError();
+            long now = System.nanoTime();
 
-        String infoLog = buildModelReport(garch, tickers) + "\n=== JAKOŚĆ DANYCH ===\n" + warnings.toString();
+            if (batchEstimates.size() >= MIN_ADAPTIVE_BATCHES && varHalf <= target && cvarHalf <= target) {
+                return new AdaptiveOutcome(done, "osiągnięto zadaną precyzję", varHalf, cvarHalf);
+            }
+            if (done >= maxPaths) {
+                return new AdaptiveOutcome(done, "osiągnięto limit ścieżek", varHalf, cvarHalf);
+            }
+            if (now >= deadline) {
+                return new AdaptiveOutcome(done, "wyczerpano budżet czasu", varHalf, cvarHalf);
+            }
 
-        List<List<Double>> paths = Collections.synchronizedList(new ArrayList<>());
-        final GarchParams finalGarch = garch;
+            if (model.control().wantsSnapshots()) publishSnapshot(model, finalValues, done, maxPaths);
 
-        IntStream.range(0, NUM_SIMULATIONS).parallel().forEach(i -> {
-            Random random = new Random();
-            List<Double> path = new ArrayList<>(horizon + 1);
+            double nanosPerBatch = (double) (now - start) / Math.max(1, done / batchSize);
+            long fitting = (long) ((deadline - now) / nanosPerBatch);
+            roundBatches = (int) Math.max(1, Math.min(roundBatches * 2L, fitting));
+        }
+    }
 
-            double price = capital;
-            double variance = finalGarch.initialVol();
-            path.add(price);
+    /**
+     * Bufory jednego wątku dla {@link PathKernel#WIDTH} ścieżek naraz: szoki ścieżki przed
+     * przestawieniem ({@code sample}), szoki ułożone dniami {@code z[d·W + p]} oraz stan ścieżek.
+     */
+    private static final class Workspace {
+        final double[] sample;
+        final double[] z;
+        final double[] price = new double[PathKernel.WIDTH];
+        final double[] variance = new double[PathKernel.WIDTH];
+        final double[] sumSquares = new double[PathKernel.WIDTH];
+
+        Workspace(int horizon) {
+            sample = new double[horizon];
+            z = new double[horizon * PathKernel.WIDTH];
+        }
+    }
 
-            for (int day = 0; day < horizon; day++) {
-                double stdDev = Math.sqrt(variance);
-                double shock = stdDev * random.nextGaussian();
+    /**
+     * Stan jednego zadania {@link ComputePool}, używany dla kolejnych bloków: bufory kafla,
+     * kursor szoków i histogram pasm percentyli (zwracany zbieraczowi w {@link #close}).
+     */
+    private static final class Worker {
+        final Workspace ws;
+        final ShockSampler.Cursor cursor;
+        final PercentileBands.Collector.Histogram histogram;
+        final int[] ids = new int[PathKernel.WIDTH];
+
+        Worker(ShockSampler sampler, PathModel model) {
+            ws = new Workspace(model.horizon());
+            cursor = sampler.cursor();
+            histogram = model.bands().acquire();
+        }
 
-                price *= (1 + avgDailyReturn + shock);
-                path.add(price);
+        void close(PathModel model) {
+            model.bands().release(histogram);
+        }
+    }
+
+    /**
+     * Generuje ścieżki GARCH(1,1) {@code paths[0..count)}. Ścieżka zależy wyłącznie od swoich
+     * szoków, więc można ją później odtworzyć bit w bit. Wartości końcowe trafiają do
+     * {@code ws.price[p]}, sumy kwadratów szoków (zmienna kontrolna) do {@code ws.sumSquares[p]};
+     * gdy podano {@code store}, ścieżka p zapisywana jest w wierszu {@code rows[p]}. Wartości
+     * z kolejnych dni trafiają do {@code histogram} pasm percentyli i do {@code recorder} profilu
+     * horyzontów pod indeksem ścieżki {@code paths[p]} - każde o ile nie jest null.
+     *
+     * Wolne pozycje kafli (p &ge; count) mają zerowe szoki; jądro liczy je razem z resztą,
+     * ale ich wyniki są pomijane.
+     */
+    private void simulateTile(int[] paths, int count, ShockSampler.Cursor cursor, Workspace ws, PathModel model,
+                              PathStore store, int[] rows, PercentileBands.Collector.Histogram histogram,
+                              HorizonProfile.Recorder recorder) {
+        final int width = PathKernel.WIDTH;
+        int horizon = model.horizon();
+        double[] z = ws.z;
+        for (int p = 0; p < count; p++) {
+            cursor.fill(paths[p], ws.sample);
+            for (int d = 0; d < horizon; d++) z[d * width + p] = ws.sample[d];
+        }
+        if (count < width) {
+            for (int d = 0; d < horizon; d++) Arrays.fill(z, d * width + count, (d + 1) * width, 0.0);
+        }
 
-                variance = finalGarch.omega() + (finalGarch.alpha() * Math.pow(shock, 2)) + (finalGarch.beta() * variance);
+        GarchParams g = model.garch();
+        double onePlusDrift = 1 + model.drift();
+        Arrays.fill(ws.price, model.capital());
+        Arrays.fill(ws.variance, g.initialVol());
+        Arrays.fill(ws.sumSquares, 0.0);
+        if (store != null) {
+            for (int p = 0; p < count; p++) store.set(rows[p], 0, model.capital());
+        }
+
+        double[] price = ws.price;
+        for (int d = 0; d < horizon; d++) {
+            kernel.step(z, d * width, price, ws.variance, ws.sumSquares, onePlusDrift, g.omega(), g.alpha(), g.beta());
+            if (store != null) {
+                for (int p = 0; p < count; p++) store.set(rows[p], d + 1, price[p]);
+            }
+            if (histogram != null) {
+                for (int p = 0; p < count; p++) histogram.add(d + 1, price[p]);
+            }
+            if (recorder != null) {
+                for (int p = 0; p < count; p++) recorder.record(d + 1, paths[p], price[p]);
             }
-            paths.add(path);
-        });
+        }
+    }
 
-        List<Double> finalValues = paths.stream()
-                .map(p -> p.get(p.size() - 1))
-                .toList();
+    /** Analityczna wartość oczekiwana Σ h_t w modelu GARCH(1,1): E[h_{t+1}] = ω + (α+β)·E[h_t]. */
+    private static double expectedRealizedVariance(GarchParams g, int horizon) {
+        double sum = 0.0;
+        for (double h : expectedDailyVariance(g, horizon)) sum += h;
+        return sum;
+    }
 
-        return new SimulationResult(paths, finalValues, infoLog);
+    /** E[wartość/kapitał] w dniach 0..horyzont: (1+μ)^d, bo szoki mają średnią zero (zmienna kontrolna profilu). */
+    private static double[] expectedUnitValues(double drift, int horizon) {
+        double[] out = new double[horizon + 1];
+        for (int d = 0; d <= horizon; d++) out[d] = Math.pow(1 + drift, d);
+        return out;
     }
 
-    private boolean tryPatchData(List<Double> targetList, List<Double> sourceProxy, List<Double> assetData, int missingPoints) {
-        if (sourceProxy != null && sourceProxy.size() >= (missingPoints + assetData.size())) {
-            for(int i=0; i < missingPoints; i++) {
-                targetList.add(sourceProxy.get(i));
-            }
-            targetList.addAll(assetData);
-            return true;
+    /** Oczekiwane wariancje warunkowe E[h_t] kolejnych dni horyzontu. */
+    private static double[] expectedDailyVariance(GarchParams g, int horizon) {
+        double[] out = new double[horizon];
+        double expected = g.initialVol();
+        for (int day = 0; day < horizon; day++) {
+            out[day] = expected;
+            expected = g.omega() + (g.alpha() + g.beta()) * expected;
         }
-        return false;
+        return out;
     }
 
-    private String buildModelReport(GarchParams g, List<String> tickers) {
+    private static String profileReport(HorizonProfile horizons) {
+        return String.format("Profil horyzontów: dni 1-%d, %,d ścieżek (%s)\n", horizons.maxHorizon(), horizons.paths(),
+                horizons.exact() ? "wartości każdej ścieżki" : "dzienne histogramy");
+    }
+
+    private String buildPrecisionReport(PrecisionReport p, VarianceReduction reduction, AdaptiveOutcome adaptive, int maxPaths) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("\n=== PRECYZJA SYMULACJI ===\n");
+        sb.append("Redukcja wariancji: ").append(reduction).append("\n");
+        if (adaptive != null) {
+            sb.append(String.format("Użyto ścieżek:      %,d (limit %,d)\n", adaptive.paths(), maxPaths));
+            sb.append("Zatrzymanie:        ").append(adaptive.stopReason()).append("\n");
+            sb.append(String.format("95%% CI VaR:         ±%.2f PLN\n", adaptive.varHalfWidth()));
+            sb.append(String.format("95%% CI CVaR:        ±%.2f PLN\n", adaptive.cvarHalfWidth()));
+        }
+        sb.append(String.format("Błąd std. średniej: %.2f PLN\n", p.meanStdError()));
+        sb.append(String.format("Błąd std. VaR:      %.2f PLN\n", p.varStdError()));
+        sb.append(String.format("Błąd std. CVaR:     %.2f PLN\n", p.cvarStdError()));
+        sb.append("(metoda średnich z ").append(p.batches()).append(" partii)\n");
+        return sb.toString();
+    }
+
+    private String buildModelReport(GarchFit fit, List<String> tickers, GarchLikelihood.Surface surface, int observations) {
+        GarchParams g = fit.params();
         StringBuilder sb = new StringBuilder();
         sb.append("=== PARAMETRY MODELU GARCH ===\n");
         sb.append("Dla portfela: ").append(tickers).append("\n");
-        sb.append(String.format("• Alpha:    %.6f\n", g.alpha()));
+        sb.append(String.format("• Alpha:    %.6f (±%.6f)\n", g.alpha(), fit.alphaStdError()));
         if (g.alpha() > 0.09) sb.append("  -> Uwaga! Rynek bardzo nerwowy.\n");
         else if (g.alpha() < 0.04) sb.append("  -> Rynek bardzo stabilny.\n");
-        sb.append(String.format("• Beta:     %.6f\n", g.beta()));
+        sb.append(String.format("• Beta:     %.6f (±%.6f)\n", g.beta(), fit.betaStdError()));
         if (g.beta() > 0.90) sb.append("  -> Uwaga! Silne trendy zmienności.\n");
         sb.append(String.format("• Omega:    %.6f\n", g.omega()));
+        sb.append(String.format("Estymacja MLE: %d iteracji, %d ewaluacji, log-L = %.2f%s\n",
+                fit.iterations(), fit.evaluations(), fit.logLikelihood(), fit.converged() ? "" : " (brak zbieżności!)"));
+        sb.append(buildProfileReport(fit, surface, observations));
         return sb.toString();
     }
 
-    private record PortfolioHistoryResult(List<Double> returns, int cutInfo) {}
-
-    private PortfolioHistoryResult calculatePortfolioHistory(List<List<Double>> assetsReturns, List<Double> weights) {
-        int minLength = assetsReturns.stream().mapToInt(List::size).min().orElse(0);
-
-        List<Double> portfolio = new ArrayList<>(minLength);
-
-        for (int i = 0; i < minLength; i++) {
-            double dailySum = 0.0;
-            for (int j = 0; j < weights.size(); j++) {
-                List<Double> assetSeries = assetsReturns.get(j);
-                int offset = assetSeries.size() - minLength;
-                dailySum += assetSeries.get(offset + i) * weights.get(j);
-            }
-            portfolio.add(dailySum);
+    /**
+     * Przedziały 95% z profilu wiarygodności na siatce α × β (test ilorazu wiarygodności) - nie zakładają,
+     * jak błędy z hesjanu, kwadratowego kształtu funkcji wiarygodności - oraz ostrzeżenie, gdy na siatce
+     * jest punkt wyraźnie lepszy od znalezionego optimum.
+     */
+    private static String buildProfileReport(GarchFit fit, GarchLikelihood.Surface surface, int observations) {
+        StringBuilder sb = new StringBuilder();
+        GarchLikelihood.Interval a = surface.alphaInterval(GarchLikelihood.Surface.CHI_SQUARE_95);
+        GarchLikelihood.Interval b = surface.betaInterval(GarchLikelihood.Surface.CHI_SQUARE_95);
+        sb.append(String.format("Profil wiarygodności (95%%, siatka %d×%d):\n", surface.alphas().length, surface.betas().length));
+        sb.append(String.format("  Alpha ∈ [%.4f; %.4f]%s\n", a.lower(), a.upper(), a.open() ? " (sięga brzegu siatki)" : ""));
+        sb.append(String.format("  Beta  ∈ [%.4f; %.4f]%s\n", b.lower(), b.upper(), b.open() ? " (sięga brzegu siatki)" : ""));
+        double optimum = GarchOptimizer.objectiveAt(fit, observations);
+        if (surface.min() < optimum - 1e-3) {
+            int[] m = surface.argmin();
+            sb.append(String.format("  -> Uwaga! Na siatce lepszy punkt: alpha %.4f, beta %.4f (log-L wyższe o %.2f).\n",
+                    surface.alphas()[m[0]], surface.betas()[m[1]], 0.5 * (optimum - surface.min())));
         }
-        return new PortfolioHistoryResult(portfolio, minLength);
+        return sb.toString();
     }
-}
\ No newline at end of file
+}
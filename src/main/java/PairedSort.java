@@ -0,0 +1,43 @@
+/**
+ * Sortowanie tablicy kluczy z równoległym przestawianiem drugiej tablicy (wartość - waga),
+ * bez pakowania par w obiekty: quicksort z pivotem środkowym, krótkie odcinki przez wstawianie,
+ * rekursja tylko w mniejszą część, więc stos ma głębokość O(log n).
+ */
+final class PairedSort {
+
+    private static final int INSERTION_THRESHOLD = 16;
+
+    private PairedSort() {
+    }
+
+    /** Sortuje {@code keys[lo..hi]} rosnąco, przestawiając tak samo {@code payload}. */
+    static void sort(double[] keys, double[] payload, int lo, int hi) {
+        while (hi - lo > INSERTION_THRESHOLD) {
+            int mid = (lo + hi) >>> 1;
+            double pivot = keys[mid];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (keys[i] < pivot) i++;
+                while (keys[j] > pivot) j--;
+                if (i <= j) {
+                    swap(keys, payload, i++, j--);
+                }
+            }
+            if (j - lo < hi - i) {
+                sort(keys, payload, lo, j);
+                lo = i;
+            } else {
+                sort(keys, payload, i, hi);
+                hi = j;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            for (int j = i; j > lo && keys[j - 1] > keys[j]; j--) swap(keys, payload, j, j - 1);
+        }
+    }
+
+    private static void swap(double[] keys, double[] payload, int i, int j) {
+        double k = keys[i]; keys[i] = keys[j]; keys[j] = k;
+        double p = payload[i]; payload[i] = payload[j]; payload[j] = p;
+    }
+}
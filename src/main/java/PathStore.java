@@ -0,0 +1,70 @@
+import java.util.Arrays;
+
+/**
+ * Prymitywny magazyn ścieżek symulacji Monte Carlo.
+ * Wszystkie ceny trzymane są w jednej tablicy double[] indeksowanej parą (ścieżka, dzień).
+ * Każda ścieżka zajmuje ciągły wycinek tablicy, więc równoległe wątki zapisują
+ * swoje ścieżki bez żadnej synchronizacji.
+ */
+public final class PathStore {
+
+    private final int numPaths;
+    private final int pathLength;
+    private final double[] values;
+
+    public PathStore(int numPaths, int horizon) {
+        if (numPaths < 0 || horizon < 0) {
+            throw new IllegalArgumentException("Liczba ścieżek i horyzont muszą być nieujemne.");
+        }
+        this.numPaths = numPaths;
+        this.pathLength = horizon + 1;
+        this.values = new double[Math.multiplyExact(numPaths, pathLength)];
+    }
+
+    public int numPaths() {
+        return numPaths;
+    }
+
+    /** Liczba punktów na ścieżce (horyzont + dzień zerowy). */
+    public int pathLength() {
+        return pathLength;
+    }
+
+    public int horizon() {
+        return pathLength - 1;
+    }
+
+    public boolean isEmpty() {
+        return numPaths == 0;
+    }
+
+    public double get(int path, int day) {
+        return values[offset(path) + day];
+    }
+
+    public void set(int path, int day, double value) {
+        values[offset(path) + day] = value;
+    }
+
+    public double finalValue(int path) {
+        return values[offset(path) + pathLength - 1];
+    }
+
+    /** Kopia pojedynczej ścieżki (dla konsumentów, którzy potrzebują własnej tablicy). */
+    public double[] path(int path) {
+        int from = offset(path);
+        return Arrays.copyOfRange(values, from, from + pathLength);
+    }
+
+    public double[] finalValues() {
+        double[] finals = new double[numPaths];
+        for (int i = 0; i < numPaths; i++) {
+            finals[i] = finalValue(i);
+        }
+        return finals;
+    }
+
+    private int offset(int path) {
+        return path * pathLength;
+    }
+}
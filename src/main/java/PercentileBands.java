@@ -0,0 +1,235 @@
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Percentyle wartości portfela dla każdego dnia horyzontu (wykres wachlarzowy).
+ * Wartość dla poziomu {@code level} i dnia {@code day} (dzień 0 = kapitał początkowy).
+ */
+public final class PercentileBands {
+
+    private final double[] levels;
+    private final int pathLength;
+    private final double[] values;
+
+    private PercentileBands(double[] levels, int pathLength, double[] values) {
+        this.levels = levels;
+        this.pathLength = pathLength;
+        this.values = values;
+    }
+
+    /** Poziomy rysowane domyślnie: 5, 25, 50, 75 i 95%. */
+    public static double[] standardLevels() {
+        return new double[]{0.05, 0.25, 0.50, 0.75, 0.95};
+    }
+
+    public double[] levels() {
+        return levels.clone();
+    }
+
+    public int horizon() {
+        return pathLength - 1;
+    }
+
+    public double value(int level, int day) {
+        return values[level * pathLength + day];
+    }
+
+    /** Kopia pasma jednego poziomu (dni 0..horyzont). */
+    public double[] band(int level) {
+        return Arrays.copyOfRange(values, level * pathLength, (level + 1) * pathLength);
+    }
+
+    /**
+     * Pasma z kwantyli {@code quantiles[d - 1][j]} (poziom j) w kolejnych dniach 1..horyzont;
+     * w dniu 0 wszystkie poziomy są równe {@code capital}.
+     */
+    static PercentileBands fromDays(double capital, double[][] quantiles, double[] levels) {
+        int pathLength = quantiles.length + 1;
+        double[] values = new double[levels.length * pathLength];
+        for (int j = 0; j < levels.length; j++) {
+            values[j * pathLength] = capital;
+            for (int d = 1; d < pathLength; d++) values[j * pathLength + d] = quantiles[d - 1][j];
+        }
+        return new PercentileBands(levels.clone(), pathLength, values);
+    }
+
+    /**
+     * Pasma dni 0..{@code horizon} przeskalowane o {@code scale} (np. inny kapitał początkowy);
+     * percentyle są liniowe względem kapitału, więc wystarcza mnożenie.
+     */
+    public PercentileBands view(int horizon, double scale) {
+        if (horizon < 0 || horizon > horizon()) {
+            throw new IllegalArgumentException("Horyzont musi należeć do [0, " + horizon() + "] dni.");
+        }
+        int length = horizon + 1;
+        double[] out = new double[levels.length * length];
+        for (int j = 0; j < levels.length; j++) {
+            for (int d = 0; d < length; d++) out[j * length + d] = scale * values[j * pathLength + d];
+        }
+        return new PercentileBands(levels.clone(), length, out);
+    }
+
+    /**
+     * Zbiera wartości ścieżek w histogramy log(wartość/kapitał), osobne dla każdego dnia.
+     * Każde zadanie obliczeniowe pisze do własnego histogramu ({@link #acquire()}, po pracy
+     * {@link #release}), a liczniki są sumowane na koniec, więc wynik nie zależy od podziału pracy.
+     * Zwolnione histogramy są używane ponownie, więc ich liczba nie przekracza liczby zadań
+     * działających naraz, a po przebiegu nie zostają w wątkach puli.
+     *
+     * Zakres histogramu dnia d to oczekiwany dryf ± {@link #SPREAD} odchyleń standardowych
+     * skumulowanej wariancji; wartości spoza zakresu trafiają do skrajnych przedziałów.
+     */
+    static final class Collector {
+
+        private static final int BINS = 512;
+        private static final double SPREAD = 6.0;
+        private static final double MIN_HALF_WIDTH = 1e-4;
+
+        private final double capital;
+        private final int horizon;
+        private final double[] low;
+        private final double[] invWidth;
+        private final Queue<Histogram> histograms = new ConcurrentLinkedQueue<>();
+        private final Queue<Histogram> idle = new ConcurrentLinkedQueue<>();
+
+        /**
+         * @param logDrift      oczekiwany dzienny przyrost logarytmu wartości
+         * @param dailyVariance oczekiwana wariancja dziennej stopy zwrotu w kolejnych dniach (długość = horyzont)
+         */
+        Collector(double capital, double logDrift, double[] dailyVariance) {
+            this.capital = capital;
+            this.horizon = dailyVariance.length;
+            this.low = new double[horizon + 1];
+            this.invWidth = new double[horizon + 1];
+            double cumulative = 0.0;
+            for (int d = 1; d <= horizon; d++) {
+                cumulative += dailyVariance[d - 1];
+                double halfWidth = Math.max(MIN_HALF_WIDTH, SPREAD * Math.sqrt(cumulative));
+                low[d] = d * logDrift - halfWidth;
+                invWidth[d] = BINS / (2 * halfWidth);
+            }
+        }
+
+        /** Histogram do wyłącznego użytku wywołującego, do czasu {@link #release}. */
+        Histogram acquire() {
+            Histogram h = idle.poll();
+            if (h == null) {
+                h = new Histogram(capital, horizon, low, invWidth);
+                histograms.add(h);
+            }
+            return h;
+        }
+
+        void release(Histogram h) {
+            idle.add(h);
+        }
+
+        PercentileBands finish(double... levels) {
+            return totals().bands(capital, levels);
+        }
+
+        /** Liczności wszystkich histogramów zsumowane w jeden, ze skrajnymi wartościami każdego dnia. */
+        Totals totals() {
+            long[] total = new long[(horizon + 1) * BINS];
+            double[] min = new double[horizon + 1];
+            double[] max = new double[horizon + 1];
+            Arrays.fill(min, Double.POSITIVE_INFINITY);
+            Arrays.fill(max, Double.NEGATIVE_INFINITY);
+            for (Histogram h : histograms) {
+                for (int i = 0; i < total.length; i++) total[i] += h.counts[i];
+                for (int d = 1; d <= horizon; d++) {
+                    min[d] = Math.min(min[d], h.min[d]);
+                    max[d] = Math.max(max[d], h.max[d]);
+                }
+            }
+            return new Totals(horizon, low, invWidth, total, min, max);
+        }
+
+        static final class Histogram {
+            private final double capital;
+            private final double[] low;
+            private final double[] invWidth;
+            private final int[] counts;
+            private final double[] min;
+            private final double[] max;
+
+            private Histogram(double capital, int horizon, double[] low, double[] invWidth) {
+                this.capital = capital;
+                this.low = low;
+                this.invWidth = invWidth;
+                this.counts = new int[(horizon + 1) * BINS];
+                this.min = new double[horizon + 1];
+                this.max = new double[horizon + 1];
+                Arrays.fill(min, Double.POSITIVE_INFINITY);
+                Arrays.fill(max, Double.NEGATIVE_INFINITY);
+            }
+
+            /** Dodaje wartość portfela z dnia {@code day} (1..horyzont). */
+            void add(int day, double value) {
+                double unit = value / capital;
+                int bin = value > 0 ? (int) ((Math.log(unit) - low[day]) * invWidth[day]) : 0;
+                if (bin < 0) bin = 0;
+                else if (bin >= BINS) bin = BINS - 1;
+                counts[day * BINS + bin]++;
+                if (unit < min[day]) min[day] = unit;
+                if (unit > max[day]) max[day] = unit;
+            }
+        }
+    }
+
+    /**
+     * Zsumowane histogramy {@link Collector} na jednostkę kapitału (wartość / kapitał). Przedział b
+     * dnia d obejmuje log(wartość/kapitał) od {@code low[d] + b/invWidth[d]} do
+     * {@code low[d] + (b+1)/invWidth[d]}, a {@code counts[d·BINS + b]} to liczba wartości w nim.
+     * {@code min} i {@code max} to dokładne skrajne wartości dnia. Wewnątrz przedziału wartości
+     * traktowane są jak rozłożone jednostajnie w logarytmie.
+     */
+    record Totals(int horizon, double[] low, double[] invWidth, long[] counts, double[] min, double[] max) {
+
+        static final int BINS = Collector.BINS;
+
+        long count(int day) {
+            long n = 0;
+            for (int b = 0; b < BINS; b++) n += counts[day * BINS + b];
+            return n;
+        }
+
+        /** Wartość po ułamku {@code fraction} szerokości przedziału {@code bin}, w granicach [min, max] dnia. */
+        double valueAt(int day, int bin, double fraction) {
+            double v = Math.exp(low[day] + (bin + fraction) / invWidth[day]);
+            return Math.min(max[day], Math.max(min[day], v));
+        }
+
+        /** Średnia wartości z początkowego ułamka {@code fraction} przedziału {@code bin}. */
+        double meanOf(int day, int bin, double fraction) {
+            double from = low[day] + bin / invWidth[day];
+            double width = fraction / invWidth[day];
+            double mean = width > 0 ? (Math.exp(from + width) - Math.exp(from)) / width : Math.exp(from);
+            return Math.min(max[day], Math.max(min[day], mean));
+        }
+
+        /** Interpolacja liniowa wewnątrz przedziału, w którym skumulowana liczność osiąga {@code target}. */
+        double quantile(int day, double target) {
+            int base = day * BINS;
+            long cumulative = 0;
+            for (int b = 0; b < BINS; b++) {
+                long c = counts[base + b];
+                if (c > 0 && cumulative + c >= target) return valueAt(day, b, (target - cumulative) / c);
+                cumulative += c;
+            }
+            return max[day];
+        }
+
+        PercentileBands bands(double capital, double[] levels) {
+            double[][] quantiles = new double[horizon][levels.length];
+            for (int d = 1; d <= horizon; d++) {
+                long n = count(d);
+                for (int j = 0; j < levels.length; j++) {
+                    quantiles[d - 1][j] = n == 0 ? capital : capital * quantile(d, n * levels[j]);
+                }
+            }
+            return fromDays(capital, quantiles, levels);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Historia stóp zwrotu instrumentów portfela wyrównana po datach, wraz z opisem jakości danych
+ * (uzupełnienia indeksami zastępczymi, skrócenia, święta). Wspólny etap obu silników symulacji.
+ */
+public record PortfolioHistory(ReturnMatrix matrix, String warnings) {
+
+    private static final String PROXY_PL = "WIG20";
+    private static final String PROXY_US = "^SPX";
+
+    public static PortfolioHistory load(DataService dataService, List<String> tickers, int historyYears,
+                                        boolean useInterpolation) throws Exception {
+        return load(dataService, tickers, historyYears, useInterpolation, JobControl.none());
+    }
+
+    /** Jak {@link #load(DataService, List, int, boolean)}, z postępem etapu pobierania i anulowaniem. */
+    public static PortfolioHistory load(DataService dataService, List<String> tickers, int historyYears,
+                                        boolean useInterpolation, JobControl control) throws Exception {
+        control.begin(JobControl.Stage.FETCH, tickers.size());
+        if (useInterpolation) {
+            // Indeksy zastępcze pobierane równolegle z aktywami - gotowe, gdy okażą się potrzebne
+            List<String> proxies = new ArrayList<>(List.of(PROXY_PL));
+            if (tickers.stream().anyMatch(PortfolioHistory::isUsListing)) proxies.add(PROXY_US);
+            dataService.prefetch(proxies);
+        }
+        List<ReturnSeries> rawReturns = dataService.getReturnSeries(tickers, control);
+
+        int lastDay = rawReturns.stream().mapToInt(r -> r.size() == 0 ? Integer.MIN_VALUE : r.dates()[r.size() - 1]).max().orElse(0);
+        int fromDay = (int) LocalDate.ofEpochDay(lastDay).minusYears(historyYears).toEpochDay() + 1;
+        ReturnMatrix matrix = ReturnMatrix.join(rawReturns, fromDay);
+        StringBuilder warnings = new StringBuilder();
+
+        if (useInterpolation) {
+            ReturnSeries wig20 = null;
+            ReturnSeries spx = null;
+
+            for (int i = 0; i < tickers.size(); i++) {
+                String ticker = tickers.get(i);
+                if (matrix.missing(i) == 0) continue;
+
+                int patched;
+                Telemetry.ProxyPatch patch = Telemetry.ProxyPatch.start();
+                if (isUsListing(ticker)) {
+                    if (spx == null) spx = dataService.getReturnSeries(List.of(PROXY_US)).get(0);
+                    patched = matrix.splice(i, spx);
+                    patch.finish(ticker, PROXY_US, patched);
+                    if (patched > 0) warnings.append(String.format("ℹ %s: Uzupełniono %d dni danymi S&P500.\n", ticker, patched));
+                } else {
+                    if (wig20 == null) wig20 = dataService.getReturnSeries(List.of(PROXY_PL)).get(0);
+                    patched = matrix.splice(i, wig20);
+                    patch.finish(ticker, PROXY_PL, patched);
+                    if (patched > 0) warnings.append(String.format("ℹ %s: Uzupełniono %d dni danymi WIG20.\n", ticker, patched));
+                }
+            }
+        }
+
+        int dropped = matrix.trimIncomplete();
+        if (matrix.rows() < 2) {
+            throw new Exception("Brak wspólnej historii notowań dla wybranych instrumentów.");
+        }
+        if (dropped > 0) {
+            if (useInterpolation) {
+                warnings.append("Mimo interpolacji, analiza skrócona do ").append(matrix.rows()).append(" dni.\n");
+            } else {
+                warnings.append("Analiza ucięta do ").append(matrix.rows()).append(" dni (najmłodszy instrument).\n");
+            }
+        }
+
+        for (int i = 0; i < tickers.size(); i++) {
+            int holidays = matrix.holidayFills(i);
+            if (holidays > 0) {
+                warnings.append(String.format("ℹ %s: %d dni bez notowań (święta) przyjęto jako brak zmiany ceny.\n", tickers.get(i), holidays));
+            }
+        }
+
+        return new PortfolioHistory(matrix, warnings.toString());
+    }
+
+    private static boolean isUsListing(String ticker) {
+        return ticker.toUpperCase().endsWith(".US");
+    }
+}
@@ -0,0 +1,23 @@
+/**
+ * Estymaty średniej, VaR i CVaR wraz z błędami standardowymi
+ * (metoda średnich z partii - dla QMC partie to niezależne replikacje).
+ */
+public record PrecisionReport(
+        double confidence,
+        double mean, double meanStdError,
+        double var, double varStdError,
+        double cvar, double cvarStdError,
+        int batches
+) {
+    /**
+     * Ten sam raport dla kapitału {@code factor} razy większego: ścieżki są liniowe względem
+     * kapitału, a wagi zmiennych kontrolnych nie zależą od skali, więc wystarczy przeskalować wartości.
+     */
+    public PrecisionReport scaled(double factor) {
+        return new PrecisionReport(confidence,
+                factor * mean, factor * meanStdError,
+                factor * var, factor * varStdError,
+                factor * cvar, factor * cvarStdError,
+                batches);
+    }
+}
@@ -0,0 +1,63 @@
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Kolumnowy szereg cen zamknięcia: daty (dni od epoki, rosnąco) i ceny w prymitywnych tablicach.
+ */
+public record PriceSeries(int[] dates, double[] closes) {
+
+    public PriceSeries {
+        if (dates.length != closes.length) {
+            throw new IllegalArgumentException("Kolumny dat i cen mają różne długości.");
+        }
+    }
+
+    public static PriceSeries empty() {
+        return new PriceSeries(new int[0], new double[0]);
+    }
+
+    public int size() {
+        return dates.length;
+    }
+
+    public boolean isEmpty() {
+        return dates.length == 0;
+    }
+
+    public LocalDate lastDate() {
+        return isEmpty() ? null : LocalDate.ofEpochDay(dates[dates.length - 1]);
+    }
+
+    /** Proste stopy zwrotu kolejnych sesji, datowane sesją zamykającą okres. */
+    public ReturnSeries returns() {
+        if (closes.length < 2) return ReturnSeries.empty();
+        int n = closes.length - 1;
+        double[] r = new double[n];
+        for (int i = 0; i < n; i++) {
+            r[i] = (closes[i + 1] - closes[i]) / closes[i];
+        }
+        return new ReturnSeries(Arrays.copyOfRange(dates, 1, dates.length), r);
+    }
+
+    /** Szereg z dopisanymi wierszami {@code tail}, których daty są późniejsze niż ostatnia data tego szeregu. */
+    public PriceSeries append(PriceSeries tail) {
+        int last = isEmpty() ? Integer.MIN_VALUE : dates[dates.length - 1];
+        int from = 0;
+        while (from < tail.size() && tail.dates[from] <= last) from++;
+        if (from == tail.size()) return this;
+
+        int added = tail.size() - from;
+        int[] d = Arrays.copyOf(dates, dates.length + added);
+        double[] c = Arrays.copyOf(closes, closes.length + added);
+        System.arraycopy(tail.dates, from, d, dates.length, added);
+        System.arraycopy(tail.closes, from, c, closes.length, added);
+        return new PriceSeries(d, c);
+    }
+
+    /** Wiersze o datach wcześniejszych niż {@code day} (dni od epoki). */
+    public PriceSeries before(int day) {
+        int n = 0;
+        while (n < dates.length && dates[n] < day) n++;
+        return n == dates.length ? this : new PriceSeries(Arrays.copyOf(dates, n), Arrays.copyOf(closes, n));
+    }
+}
@@ -0,0 +1,176 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * Trwały magazyn notowań na dysku - jeden plik binarny na instrument.
+ * Układ pliku: nagłówek (magic, wersja, dzień ostatniej synchronizacji, liczba wierszy),
+ * a po nim wiersze (int data, double cena) po 12 bajtów. Nowe sesje dopisywane są na końcu,
+ * a liczba wierszy w nagłówku aktualizowana jest dopiero po zapisaniu danych.
+ *
+ * Plik czytany jest jednym odczytem kanału zamiast mapowania w pamięć - na Windows
+ * zmapowany plik pozostaje zablokowany do czasu sprzątnięcia bufora przez GC,
+ * co uniemożliwiałoby dopisywanie kolejnych sesji.
+ *
+ * Jeżeli dla instrumentu nie ma pliku binarnego, ale w katalogu leży plik {@code <ticker>.csv}
+ * w formacie Stooq, jest on importowany - dzięki temu katalog z fiksturami CSV działa bez sieci.
+ * Dniem synchronizacji importu jest dzień modyfikacji pliku CSV.
+ */
+public class PriceStore {
+
+    private static final int MAGIC = 0x52465053; // "RFPS"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int ROW_BYTES = 12;
+    private static final int NEVER_SYNCED = Integer.MIN_VALUE;
+
+    /**
+     * @param lastSync dzień ostatniego sprawdzenia źródła zdalnego (dla fikstur CSV - dzień modyfikacji pliku;
+     *                 null, gdy nieznany)
+     */
+    public record Entry(PriceSeries series, LocalDate lastSync) {
+    }
+
+    private final Path directory;
+
+    public PriceStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /** Katalog domyślny: {@code riskfolio.data.dir} albo {@code ~/.riskfolio/prices}. */
+    public static Path defaultDirectory() {
+        String configured = System.getProperty("riskfolio.data.dir");
+        return configured != null
+                ? Path.of(configured)
+                : Path.of(System.getProperty("user.home"), ".riskfolio", "prices");
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    /** Zapisane notowania instrumentu albo null, gdy magazyn ich nie zna. */
+    public Entry read(String ticker) throws IOException {
+        Path file = binaryFile(ticker);
+        if (!Files.exists(file)) {
+            return importCsv(ticker);
+        }
+
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(ch, header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Uszkodzony plik magazynu notowań: " + file);
+            }
+            int lastSync = header.getInt();
+            int count = header.getInt();
+
+            ByteBuffer rows = ByteBuffer.allocate(count * ROW_BYTES);
+            readFully(ch, rows, HEADER_BYTES);
+            rows.flip();
+
+            int[] dates = new int[count];
+            double[] closes = new double[count];
+            for (int i = 0; i < count; i++) {
+                dates[i] = rows.getInt();
+                closes[i] = rows.getDouble();
+            }
+            LocalDate sync = lastSync == NEVER_SYNCED ? null : LocalDate.ofEpochDay(lastSync);
+            return new Entry(new PriceSeries(dates, closes), sync);
+        }
+    }
+
+    /**
+     * Dopisuje sesje {@code rows} (późniejsze niż zapisane) i zapamiętuje dzień synchronizacji.
+     */
+    public void append(String ticker, PriceSeries rows, LocalDate syncDate) throws IOException {
+        Files.createDirectories(directory);
+        Path file = binaryFile(ticker);
+
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            FileLock lock = ch.lock();
+            try {
+                appendLocked(ch, rows, syncDate);
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    private static void appendLocked(FileChannel ch, PriceSeries rows, LocalDate syncDate) throws IOException {
+        int count = 0;
+        if (ch.size() >= HEADER_BYTES) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(ch, header, 0);
+            header.flip();
+            header.position(12);
+            count = header.getInt();
+        }
+
+        ByteBuffer data = ByteBuffer.allocate(rows.size() * ROW_BYTES);
+        for (int i = 0; i < rows.size(); i++) {
+            data.putInt(rows.dates()[i]);
+            data.putDouble(rows.closes()[i]);
+        }
+        data.flip();
+        writeFully(ch, data, HEADER_BYTES + (long) count * ROW_BYTES);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION)
+                .putInt(syncDate == null ? NEVER_SYNCED : (int) syncDate.toEpochDay())
+                .putInt(count + rows.size());
+        header.flip();
+        writeFully(ch, header, 0);
+    }
+
+    private Entry importCsv(String ticker) throws IOException {
+        Path csv = directory.resolve(fileStem(ticker) + ".csv");
+        if (!Files.exists(csv)) return null;
+
+        PriceSeries series;
+        try (InputStream in = Files.newInputStream(csv)) {
+            series = StooqCsvParser.parse(in);
+        }
+        LocalDate modified = LocalDate.ofInstant(Files.getLastModifiedTime(csv).toInstant(), ZoneId.systemDefault());
+        append(ticker, series, modified);
+        return new Entry(series, modified);
+    }
+
+    private Path binaryFile(String ticker) {
+        return directory.resolve(fileStem(ticker) + ".bin");
+    }
+
+    /** Nazwa pliku z tickera: małe litery, znaki spoza [a-z0-9.-] kodowane jako _XX. */
+    static String fileStem(String ticker) {
+        StringBuilder sb = new StringBuilder();
+        for (char c : ticker.trim().toLowerCase().toCharArray()) {
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '.' || c == '-') {
+                sb.append(c);
+            } else {
+                sb.append('_').append(String.format("%02x", (int) c));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = ch.read(buffer, position + buffer.position());
+            if (read < 0) throw new IOException("Nieoczekiwany koniec pliku magazynu notowań.");
+        }
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            ch.write(buffer, position + buffer.position());
+        }
+    }
+}
@@ -0,0 +1,335 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Strumieniowy, scalalny szkic kwantyli (t-digest w wariancie scalającym, T. Dunning).
+ *
+ * Wartości trafiają do bufora, który po zapełnieniu jest sortowany i scalany z centroidami
+ * (średnia, waga). Funkcja skali k₁(q) = δ/(2π)·asin(2q-1) sprawia, że centroidy w ogonach
+ * są małe (na krańcach pojedyncze wartości), więc kwantyle ogonowe - VaR i CVaR - są dokładne,
+ * a liczba centroidów nie przekracza ok. π·δ/2 niezależnie od liczby wartości.
+ *
+ * Parametr kompresji δ steruje dokładnością: błąd rzędu kwantyla (ułamek pozycji) wynosi
+ * w środku rozkładu około 1/δ, a w ogonie q proporcjonalnie mniej (≈ √(q(1-q))/δ).
+ * Szkice o tej samej kompresji można łączyć ({@link #merge}) - każdy wątek lub proces
+ * wypełnia własny - i zapisywać jako bajty ({@link #toBytes}, {@link #fromBytes}).
+ * Obiekt nie jest bezpieczny wątkowo.
+ */
+public final class QuantileSketch {
+
+    public static final double DEFAULT_COMPRESSION = 200;
+    static final double MIN_COMPRESSION = 10;
+    /** Górna granica chroni przed ogromnym przydziałem pamięci z uszkodzonego zapisu ({@link #fromBytes}). */
+    static final double MAX_COMPRESSION = 100_000;
+
+    private static final int MAGIC = 0x52465444; // "RFTD"
+    private static final int VERSION = 1;
+    /** Magic, wersja, kompresja, suma, min, max i liczba centroidów. */
+    private static final int HEADER_BYTES = 4 + 4 + 8 * 4 + 4;
+    private static final int CENTROID_BYTES = 16;
+
+    private final double compression;
+    private final double[] means;
+    private final double[] weights;
+    private int centroids;
+    private double mergedWeight;
+
+    private final double[] bufferMeans;
+    private final double[] bufferWeights;
+    private int buffered;
+    private double bufferedWeight;
+
+    private double sum;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    // bufory scalania, przydzielane raz
+    private final double[] scratchMeans;
+    private final double[] scratchWeights;
+
+    public QuantileSketch() {
+        this(DEFAULT_COMPRESSION);
+    }
+
+    public QuantileSketch(double compression) {
+        if (!(compression >= MIN_COMPRESSION && compression <= MAX_COMPRESSION)) {
+            throw new IllegalArgumentException(String.format(
+                    "Kompresja szkicu musi należeć do [%.0f, %.0f].", MIN_COMPRESSION, MAX_COMPRESSION));
+        }
+        this.compression = compression;
+        int capacity = (int) Math.ceil(compression * Math.PI / 2) + 10;
+        int bufferSize = 5 * capacity;
+        means = new double[capacity];
+        weights = new double[capacity];
+        bufferMeans = new double[bufferSize];
+        bufferWeights = new double[bufferSize];
+        scratchMeans = new double[capacity + bufferSize];
+        scratchWeights = new double[capacity + bufferSize];
+    }
+
+    public double compression() {
+        return compression;
+    }
+
+    public void add(double value) {
+        add(value, 1.0);
+    }
+
+    public void add(double value, double weight) {
+        if (!(weight > 0) || Double.isNaN(value)) return;
+        if (buffered == bufferMeans.length) compress();
+        bufferMeans[buffered] = value;
+        bufferWeights[buffered] = weight;
+        buffered++;
+        bufferedWeight += weight;
+        sum += value * weight;
+        if (value < min) min = value;
+        if (value > max) max = value;
+    }
+
+    /**
+     * Dołącza zawartość innego szkicu (np. z innego wątku lub procesu); {@code other} nie jest zmieniany.
+     *
+     * @throws IllegalArgumentException gdy szkice mają różną kompresję
+     */
+    public void merge(QuantileSketch other) {
+        if (other.compression != compression) {
+            throw new IllegalArgumentException(String.format(
+                    "Scalane szkice muszą mieć tę samą kompresję (%.0f i %.0f).", compression, other.compression));
+        }
+        other.compress();
+        for (int i = 0; i < other.centroids; i++) {
+            if (buffered == bufferMeans.length) compress();
+            bufferMeans[buffered] = other.means[i];
+            bufferWeights[buffered] = other.weights[i];
+            bufferedWeight += other.weights[i];
+            buffered++;
+        }
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Niezależna kopia w bieżącym stanie, łącznie z niescalonym buforem. Zapytania o kwantyle scalają bufor,
+     * a więc zmieniają kolejne scalenia; odczyty pośrednie wykonane na kopii nie wpływają na wynik końcowy.
+     */
+    public QuantileSketch copy() {
+        QuantileSketch s = new QuantileSketch(compression);
+        System.arraycopy(means, 0, s.means, 0, centroids);
+        System.arraycopy(weights, 0, s.weights, 0, centroids);
+        System.arraycopy(bufferMeans, 0, s.bufferMeans, 0, buffered);
+        System.arraycopy(bufferWeights, 0, s.bufferWeights, 0, buffered);
+        s.centroids = centroids;
+        s.mergedWeight = mergedWeight;
+        s.buffered = buffered;
+        s.bufferedWeight = bufferedWeight;
+        s.sum = sum;
+        s.min = min;
+        s.max = max;
+        return s;
+    }
+
+    /** Łączna waga (liczba wartości przy wagach jednostkowych). */
+    public double count() {
+        return mergedWeight + bufferedWeight;
+    }
+
+    public double mean() {
+        double n = count();
+        return n > 0 ? sum / n : 0.0;
+    }
+
+    public double min() {
+        return count() > 0 ? min : 0.0;
+    }
+
+    public double max() {
+        return count() > 0 ? max : 0.0;
+    }
+
+    /** Liczba centroidów po scaleniu bufora (miara zajętej pamięci). */
+    public int size() {
+        compress();
+        return centroids;
+    }
+
+    /**
+     * Przybliżona wartość o pozycji {@code rank} w posortowanym ciągu (od 0),
+     * czyli odpowiednik {@code sorted[rank]}. Interpolacja liniowa między środkami centroidów.
+     */
+    public double valueAtRank(double rank) {
+        compress();
+        if (centroids == 0) return 0.0;
+        double target = rank + 0.5;
+        double n = mergedWeight;
+        if (target <= 0) return min;
+        if (target >= n) return max;
+
+        double cumulative = 0.0;
+        double prevCenter = 0.0;
+        double prevMean = min;
+        for (int i = 0; i < centroids; i++) {
+            double w = weights[i];
+            double center = cumulative + w / 2;
+            if (w == 1 && target >= cumulative && target < cumulative + 1) {
+                return means[i]; // pojedyncza wartość zapamiętana dokładnie
+            }
+            if (target < center) {
+                return interpolate(prevCenter, prevMean, center, means[i], target);
+            }
+            prevCenter = center;
+            prevMean = means[i];
+            cumulative += w;
+        }
+        return interpolate(prevCenter, prevMean, n, max, target);
+    }
+
+    /**
+     * Przybliżona średnia {@code count} najmniejszych wartości. Centroidy w całości poniżej granicy
+     * wchodzą z dokładną sumą; w centroidzie przeciętym granicą wartości przyjmowane są jako liniowe
+     * w pozycji (między wartościami na jego krawędziach), z zachowaniem jego średniej.
+     */
+    public double meanOfLowest(double count) {
+        compress();
+        if (centroids == 0 || count <= 0) return min();
+        double remaining = Math.min(count, mergedWeight);
+        double total = 0.0;
+        double cumulative = 0.0;
+        double prevCenter = 0.0;
+        double prevMean = min;
+        for (int i = 0; i < centroids; i++) {
+            double w = weights[i];
+            double m = means[i];
+            double center = cumulative + w / 2;
+            if (w >= remaining) {
+                if (w == 1 || w == remaining) return (total + remaining * m) / Math.min(count, mergedWeight);
+                double nextCenter = i + 1 < centroids ? cumulative + w + weights[i + 1] / 2 : mergedWeight;
+                double nextMean = i + 1 < centroids ? means[i + 1] : max;
+                double left = interpolate(prevCenter, prevMean, center, m, cumulative);
+                double right = interpolate(center, m, nextCenter, nextMean, cumulative + w);
+                double partMean = m + (right - left) * (remaining / w - 1) / 2;
+                return (total + remaining * partMean) / Math.min(count, mergedWeight);
+            }
+            total += w * m;
+            remaining -= w;
+            cumulative += w;
+            prevCenter = center;
+            prevMean = m;
+        }
+        return total / mergedWeight;
+    }
+
+    /** Zapis binarny: nagłówek, kompresja, suma, min, max i centroidy. */
+    public byte[] toBytes() {
+        compress();
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + CENTROID_BYTES * centroids);
+        buf.putInt(MAGIC).putInt(VERSION);
+        buf.putDouble(compression).putDouble(sum).putDouble(min).putDouble(max);
+        buf.putInt(centroids);
+        for (int i = 0; i < centroids; i++) {
+            buf.putDouble(means[i]).putDouble(weights[i]);
+        }
+        return buf.array();
+    }
+
+    /**
+     * Szkic zapisany przez {@link #toBytes}.
+     *
+     * @throws IllegalArgumentException gdy bajty nie są kompletnym zapisem szkicu
+     */
+    public static QuantileSketch fromBytes(byte[] bytes) {
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        if (buf.remaining() < HEADER_BYTES || buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+            throw new IllegalArgumentException("Nieznany format szkicu kwantyli.");
+        }
+        double compression = buf.getDouble();
+        double sum = buf.getDouble();
+        double min = buf.getDouble();
+        double max = buf.getDouble();
+        int n = buf.getInt();
+        if (n < 0 || buf.remaining() != (long) n * CENTROID_BYTES) {
+            throw new IllegalArgumentException("Uszkodzony szkic kwantyli (" + n + " centroidów, "
+                    + buf.remaining() + " B danych).");
+        }
+        QuantileSketch s = new QuantileSketch(compression);
+        if (n > s.means.length) {
+            throw new IllegalArgumentException("Uszkodzony szkic kwantyli (" + n + " centroidów przy kompresji "
+                    + compression + ").");
+        }
+        for (int i = 0; i < n; i++) {
+            s.means[i] = buf.getDouble();
+            s.weights[i] = buf.getDouble();
+            if (Double.isNaN(s.means[i]) || !(s.weights[i] > 0) || (i > 0 && s.means[i] < s.means[i - 1])) {
+                throw new IllegalArgumentException("Uszkodzony szkic kwantyli (centroid " + i + ").");
+            }
+            s.mergedWeight += s.weights[i];
+        }
+        s.centroids = n;
+        s.sum = sum;
+        s.min = min;
+        s.max = max;
+        return s;
+    }
+
+    /** Scala bufor z centroidami. */
+    private void compress() {
+        if (buffered == 0) return;
+
+        int n = 0;
+        System.arraycopy(means, 0, scratchMeans, 0, centroids);
+        System.arraycopy(weights, 0, scratchWeights, 0, centroids);
+        n += centroids;
+        System.arraycopy(bufferMeans, 0, scratchMeans, n, buffered);
+        System.arraycopy(bufferWeights, 0, scratchWeights, n, buffered);
+        n += buffered;
+        PairedSort.sort(scratchMeans, scratchWeights, 0, n - 1);
+
+        double total = mergedWeight + bufferedWeight;
+        int out = 0;
+        double curMean = scratchMeans[0];
+        double curWeight = scratchWeights[0];
+        double soFar = 0.0;
+        double limit = total * qOfK(kOfQ(0.0) + 1);
+        for (int i = 1; i < n; i++) {
+            double w = scratchWeights[i];
+            if (soFar + curWeight + w <= limit) {
+                curWeight += w;
+                curMean += (scratchMeans[i] - curMean) * w / curWeight;
+            } else {
+                means[out] = curMean;
+                weights[out] = curWeight;
+                out++;
+                soFar += curWeight;
+                limit = total * qOfK(kOfQ(soFar / total) + 1);
+                curMean = scratchMeans[i];
+                curWeight = w;
+            }
+        }
+        means[out] = curMean;
+        weights[out] = curWeight;
+        centroids = out + 1;
+        mergedWeight = total;
+        buffered = 0;
+        bufferedWeight = 0.0;
+    }
+
+    private double kOfQ(double q) {
+        return compression / (2 * Math.PI) * Math.asin(2 * Math.min(1, Math.max(0, q)) - 1);
+    }
+
+    private double qOfK(double k) {
+        double kMax = compression / 4;
+        if (k >= kMax) return 1.0;
+        return (Math.sin(k * 2 * Math.PI / compression) + 1) / 2;
+    }
+
+    private static double interpolate(double x0, double y0, double x1, double y1, double x) {
+        if (x1 <= x0) return y1;
+        return y0 + (y1 - y0) * (x - x0) / (x1 - x0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("QuantileSketch(δ=%.0f, n=%.0f, centroidy=%d)", compression, count(), size());
+    }
+}
@@ -0,0 +1,186 @@
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Stopy zwrotu wielu instrumentów wyrównane według dat sesji: gęsta macierz
+ * (wiersz = data, kolumna = instrument) przechowywana kolumnami w jednej tablicy.
+ *
+ * Kalendarz to suma dat wszystkich instrumentów od zadanego dnia. Brak notowania w dniu,
+ * w którym instrument był już notowany (święto na jego giełdzie), oznacza zerową zmianę ceny -
+ * ruch z tego okresu zawiera stopa z następnej sesji. Dni sprzed debiutu pozostają puste (NaN),
+ * dopóki nie zostaną uzupełnione indeksem zastępczym ({@link #splice}) albo odcięte
+ * ({@link #trimIncomplete}).
+ */
+public final class ReturnMatrix {
+
+    private final int[] dates;
+    private final double[] values;
+    private final int capacity;
+    private final int cols;
+    private final BitSet holidays;
+    private int start;
+
+    private ReturnMatrix(int[] dates, double[] values, int cols, BitSet holidays) {
+        this.dates = dates;
+        this.values = values;
+        this.capacity = dates.length;
+        this.cols = cols;
+        this.holidays = holidays;
+    }
+
+    /**
+     * Złączenie zewnętrzne szeregów po datach (od {@code fromDay} włącznie, dni od epoki).
+     * Szeregi powinny obejmować pełną dostępną historię, by odróżnić święto od braku notowań.
+     */
+    public static ReturnMatrix join(List<ReturnSeries> series, int fromDay) {
+        int total = 0;
+        for (ReturnSeries s : series) total += s.size();
+        int[] all = new int[total];
+        int n = 0;
+        for (ReturnSeries s : series) {
+            for (int d : s.dates()) {
+                if (d >= fromDay) all[n++] = d;
+            }
+        }
+        Arrays.sort(all, 0, n);
+        int unique = 0;
+        for (int i = 0; i < n; i++) {
+            if (unique == 0 || all[i] != all[unique - 1]) all[unique++] = all[i];
+        }
+        int[] calendar = Arrays.copyOf(all, unique);
+
+        int cols = series.size();
+        double[] values = new double[cols * unique];
+        BitSet holidays = new BitSet(values.length);
+        for (int j = 0; j < cols; j++) {
+            fillColumn(series.get(j), calendar, values, j * unique, holidays);
+        }
+        return new ReturnMatrix(calendar, values, cols, holidays);
+    }
+
+    /**
+     * Przepisuje szereg na kalendarz: NaN przed pierwszą obserwacją, 0 w dniach bez notowań po niej
+     * (zaznaczonych w {@code holidays}).
+     */
+    private static void fillColumn(ReturnSeries s, int[] calendar, double[] out, int base, BitSet holidays) {
+        int[] d = s.dates();
+        double[] r = s.returns();
+        int first = d.length == 0 ? Integer.MAX_VALUE : d[0];
+        int k = 0;
+        for (int i = 0; i < calendar.length; i++) {
+            int day = calendar[i];
+            while (k < d.length && d[k] < day) k++;
+            if (k < d.length && d[k] == day) {
+                out[base + i] = r[k];
+            } else if (day > first) {
+                out[base + i] = 0.0;
+                holidays.set(base + i);
+            } else {
+                out[base + i] = Double.NaN;
+            }
+        }
+    }
+
+    /**
+     * Uzupełnia dni sprzed debiutu instrumentu {@code col} stopami indeksu zastępczego z tych samych dat.
+     * Zwraca liczbę uzupełnionych dni.
+     */
+    public int splice(int col, ReturnSeries proxy) {
+        int base = col * capacity;
+        int[] d = proxy.dates();
+        double[] r = proxy.returns();
+        int first = d.length == 0 ? Integer.MAX_VALUE : d[0];
+        int k = 0;
+        int spliced = 0;
+        for (int i = start; i < capacity && Double.isNaN(values[base + i]); i++) {
+            int day = dates[i];
+            while (k < d.length && d[k] < day) k++;
+            if (k < d.length && d[k] == day) {
+                values[base + i] = r[k];
+            } else if (day > first) {
+                values[base + i] = 0.0;
+            } else {
+                continue;
+            }
+            spliced++;
+        }
+        return spliced;
+    }
+
+    /** Liczba dni sprzed debiutu instrumentu (bez danych) w bieżącym zakresie. */
+    public int missing(int col) {
+        int base = col * capacity;
+        int n = 0;
+        for (int i = start; i < capacity; i++) {
+            if (Double.isNaN(values[base + i])) n++;
+        }
+        return n;
+    }
+
+    /** Odcina początkowe wiersze, w których brakuje danych któregokolwiek instrumentu. Zwraca liczbę odciętych. */
+    public int trimIncomplete() {
+        int newStart = start;
+        for (int j = 0; j < cols; j++) {
+            int base = j * capacity;
+            int i = capacity;
+            while (i > start && !Double.isNaN(values[base + i - 1])) i--;
+            newStart = Math.max(newStart, i);
+        }
+        int dropped = newStart - start;
+        start = newStart;
+        return dropped;
+    }
+
+    /**
+     * Dzienne stopy zwrotu portfela: suma kolumn ważona wagami. Pętla wewnętrzna przechodzi
+     * ciągły fragment tablicy, co pozwala kompilatorowi JIT ją zwektoryzować.
+     */
+    public double[] weightedSum(double[] weights) {
+        if (weights.length != cols) {
+            throw new IllegalArgumentException("Liczba wag (" + weights.length + ") różna od liczby instrumentów (" + cols + ").");
+        }
+        double[] out = new double[rows()];
+        for (int j = 0; j < cols; j++) {
+            double w = weights[j];
+            int base = j * capacity + start;
+            for (int i = 0; i < out.length; i++) {
+                out[i] += values[base + i] * w;
+            }
+        }
+        return out;
+    }
+
+    public int rows() {
+        return capacity - start;
+    }
+
+    public int cols() {
+        return cols;
+    }
+
+    /** Data wiersza {@code row} (dni od epoki). */
+    public int date(int row) {
+        return dates[start + row];
+    }
+
+    public int lastDate() {
+        return dates[capacity - 1];
+    }
+
+    public double get(int row, int col) {
+        return values[col * capacity + start + row];
+    }
+
+    /** Kopia kolumny instrumentu {@code col}. */
+    public double[] column(int col) {
+        int base = col * capacity + start;
+        return Arrays.copyOfRange(values, base, base + rows());
+    }
+
+    /** Liczba dni bez notowań instrumentu (święta) w bieżącym zakresie, przyjętych jako zerowa zmiana ceny. */
+    public int holidayFills(int col) {
+        int base = col * capacity;
+        return holidays.get(base + start, base + capacity).cardinality();
+    }
+}
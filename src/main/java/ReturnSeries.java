@@ -0,0 +1,43 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Dzienne stopy zwrotu z datami sesji (dni od epoki, rosnąco), w których zostały zrealizowane.
+ */
+public record ReturnSeries(int[] dates, double[] returns) {
+
+    public ReturnSeries {
+        if (dates.length != returns.length) {
+            throw new IllegalArgumentException("Kolumny dat i stóp zwrotu mają różne długości.");
+        }
+    }
+
+    public static ReturnSeries empty() {
+        return new ReturnSeries(new int[0], new double[0]);
+    }
+
+    public int size() {
+        return dates.length;
+    }
+
+    /** Ostatnie {@code n} obserwacji (lub wszystkie, gdy jest ich mniej). */
+    public ReturnSeries tail(int n) {
+        if (n >= dates.length) return this;
+        int from = dates.length - n;
+        return new ReturnSeries(Arrays.copyOfRange(dates, from, dates.length), Arrays.copyOfRange(returns, from, returns.length));
+    }
+
+    /** Obserwacje o datach wcześniejszych niż {@code day} (dni od epoki). */
+    public ReturnSeries before(int day) {
+        int n = 0;
+        while (n < dates.length && dates[n] < day) n++;
+        return n == dates.length ? this : new ReturnSeries(Arrays.copyOf(dates, n), Arrays.copyOf(returns, n));
+    }
+
+    public List<Double> toList() {
+        List<Double> list = new ArrayList<>(returns.length);
+        for (double r : returns) list.add(r);
+        return list;
+    }
+}
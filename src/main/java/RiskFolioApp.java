@@ -3,24 +3,28 @@ import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.scene.Node;
 import javafx.scene.Scene;
-import javafx.scene.chart.LineChart;
 import javafx.scene.chart.NumberAxis;
 import javafx.scene.chart.XYChart;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.stage.Stage;
+import javafx.animation.AnimationTimer;
 import javafx.animation.PauseTransition;
 import javafx.util.Duration;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 
 public class RiskFolioApp extends Application {
 
     private final MonteCarloEngine engine = new MonteCarloEngine();
-    private final RiskService riskService = new RiskService();
+    private final CorrelatedMonteCarloEngine correlatedEngine = new CorrelatedMonteCarloEngine(engine.getDataService());
 
     private final TextField weightsInput = new TextField("1.0");
     private final TextField hiddenTickerInput = new TextField();
@@ -35,9 +39,52 @@ public class RiskFolioApp extends Application {
     private final Label horizonLabel = new Label("252 dni");
     private final TextField historyInput = new TextField("5");
     private final CheckBox fillCheck = new CheckBox("Interpoluj (uzupełnij) dane");
+    private final CheckBox offlineCheck = new CheckBox("Tryb offline (tylko dane lokalne)");
+    private final ComboBox<VarianceReduction> reductionChoice = new ComboBox<>();
+    private final CheckBox adaptiveCheck = new CheckBox("Zatrzymaj po osiągnięciu precyzji");
+    private final CheckBox correlatedCheck = new CheckBox("Osobny GARCH dla każdego instrumentu");
+
+    private static final int ADAPTIVE_MAX_SIMULATIONS = 1_000_000;
+    private static final double ADAPTIVE_TOLERANCE = 0.0025;
+    private static final java.time.Duration ADAPTIVE_TIME_BUDGET = java.time.Duration.ofSeconds(10);
 
     private final TextArea logArea = new TextArea();
-    private LineChart<Number, Number> chart;
+    private final ProgressBar progressBar = new ProgressBar(0);
+    private final Label progressLabel = new Label();
+    private final SimulationJobs jobs = new SimulationJobs();
+    private SimulationJobs.Job<SimulationResult> activeJob;
+
+    // Wyniki pośrednie z wątków symulacji: zostaje tylko najnowszy, a wykres odświeżany jest
+    // w rytmie klatek, nie częściej niż co SNAPSHOT_FRAME_NANOS.
+    private static final long SNAPSHOT_FRAME_NANOS = 150_000_000L;
+    private final AtomicReference<SimulationSnapshot> pendingSnapshot = new AtomicReference<>();
+    private final AnimationTimer snapshotRenderer = new AnimationTimer() {
+        private long lastFrame;
+
+        @Override
+        public void handle(long now) {
+            if (now - lastFrame < SNAPSHOT_FRAME_NANOS) return;
+            SimulationSnapshot snapshot = pendingSnapshot.getAndSet(null);
+            if (snapshot != null) {
+                showSnapshot(snapshot);
+                lastFrame = now;
+            }
+        }
+    };
+    private FanChart chart;
+
+    // Ostatni wynik (do najdłuższego horyzontu suwaka): inny kapitał i każdy krótszy horyzont (z profilu
+    // horyzontów) przeliczane są z niego bez nowej symulacji. Liczy się tylko najnowsze przeliczenie (estimateRequest).
+    private SimulationResult lastResult;
+    private double lastCapital;
+    private int lastHorizon;
+    private int estimateRequest;
+    // Scenariusze modelu wieloaktywowego z ostatniej symulacji: zmiana samych wag przelicza wynik
+    // na tych samych ścieżkach, bez pobierania danych, kalibracji i symulacji. Przeliczenia wag mają
+    // własny licznik (reweightRequest); póki jedno trwa, suwak i kapitał czekają na jego wynik.
+    private CorrelatedMonteCarloEngine.Scenarios scenarios;
+    private int reweightRequest;
+    private boolean reweightPending;
 
 
     @Override
@@ -50,6 +97,7 @@ public class RiskFolioApp extends Application {
 
         root.setLeft(sidebar);
         root.setCenter(chart);
+        snapshotRenderer.start();
         Scene scene = new Scene(root, 1280, 768);
         stage.setTitle("RiskFolio - Prognozowanie wyników inwestycji wraz z kwantyfikacją ryzyka");
         stage.setScene(scene);
@@ -166,7 +214,8 @@ public class RiskFolioApp extends Application {
 
         HBox horizonHeaderBox = createLabelWithHelp("Czas inwestycji:",
                 "Liczba dni, na jaką symulujemy inwestycję. 252 dni to standardowy rok giełdowy. " +
-                        "Pamiętaj, im dłuższy czas, tym większa niepewność wyników."
+                        "Pamiętaj, im dłuższy czas, tym większa niepewność wyników. " +
+                        "Symulacja obejmuje najdłuższy horyzont suwaka, więc po niej każdy horyzont i inny kapitał przeliczane są od razu."
         );
 
         horizonLabel.setStyle("-fx-text-fill: #2c3e50; -fx-padding: 0 0 0 5;");
@@ -184,7 +233,10 @@ public class RiskFolioApp extends Application {
         horizonSlider.valueProperty().addListener((obs, oldVal, newVal) -> {
             int days = newVal.intValue();
             horizonLabel.setText(days + " dni");
+            refreshEstimate();
         });
+        capitalInput.textProperty().addListener((obs, oldVal, newVal) -> refreshEstimate());
+        weightsInput.textProperty().addListener((obs, oldVal, newVal) -> reweight());
 
         HBox historyLabel = createLabelWithHelp("Historia (lata):",
                 "Ile lat wstecz analizujemy dane? " +
@@ -198,11 +250,47 @@ public class RiskFolioApp extends Application {
                                               "Dla pozostałych instrumentów oraz w przypadku odznaczenia: analiza jest skracana do najdłuższej dostępnej historii w portfelu."
         );
 
+        reductionChoice.getItems().setAll(VarianceReduction.values());
+        reductionChoice.setValue(VarianceReduction.NONE);
+        reductionChoice.setMaxWidth(Double.MAX_VALUE);
+        offlineCheck.selectedProperty().addListener((obs, oldVal, newVal) -> engine.getDataService().setOffline(newVal));
+        HBox offlineLabel = createLabelWithHelp("Źródło danych:",
+                "Notowania są zapisywane na dysku i przy kolejnych uruchomieniach pobierane są tylko brakujące sesje. " +
+                        "W trybie offline aplikacja w ogóle nie łączy się ze Stooq i korzysta wyłącznie z danych zapisanych lokalnie."
+        );
+
+        HBox reductionLabel = createLabelWithHelp("Redukcja wariancji:",
+                "Technika zmniejszająca losowy błąd wyników przy tej samej liczbie scenariuszy. " +
+                        "Zmienne antytetyczne łączą scenariusze w lustrzane pary, zmienne kontrolne korygują wynik o znane wartości oczekiwane modelu GARCH, " +
+                        "a quasi-Monte Carlo zastępuje losowanie równomiernym ciągiem Sobola. Błąd standardowy każdej metody pojawia się w raporcie."
+        );
+
+        HBox adaptiveLabel = createLabelWithHelp("Liczba scenariuszy:",
+                "Domyślnie generowanych jest 10 000 scenariuszy. W trybie adaptacyjnym symulacja biegnie partiami " +
+                        "i kończy się, gdy 95% przedział ufności VaR i CVaR jest węższy niż ±0,25% kapitału (maksymalnie 1 000 000 scenariuszy lub 10 sekund). " +
+                        "Proste portfele kończą się wtedy szybciej, a portfele o grubych ogonach dostają więcej scenariuszy."
+        );
+
+        adaptiveCheck.disableProperty().bind(correlatedCheck.selectedProperty());
+        HBox correlatedLabel = createLabelWithHelp("Model wieloaktywowy:",
+                "Zamiast jednego modelu dla całego portfela każdy instrument dostaje własny GARCH, a scenariusze są ze sobą " +
+                        "skorelowane tak jak w historii. Widać wtedy efekt dywersyfikacji, a raport pokazuje, ile każdy instrument " +
+                        "wnosi do CVaR. Zmiana samych wag nie wymaga ponownej kalibracji. Tryb adaptacyjny nie jest tu dostępny."
+        );
+
         Button runButton = new Button("URUCHOM SYMULACJĘ");
         runButton.setMaxWidth(Double.MAX_VALUE);
         runButton.setStyle("-fx-background-color: #2980b9; -fx-text-fill: white; -fx-font-weight: bold; -fx-cursor: hand;");
         runButton.setOnAction(e -> runSimulation());
 
+        Button cancelButton = new Button("Anuluj");
+        cancelButton.setOnAction(e -> jobs.cancelCurrent());
+        progressBar.setMaxWidth(Double.MAX_VALUE);
+        HBox.setHgrow(progressBar, Priority.ALWAYS);
+        HBox progressLine = new HBox(8, progressBar, cancelButton);
+        progressLine.setAlignment(javafx.geometry.Pos.CENTER_LEFT);
+        progressLabel.setStyle("-fx-text-fill: #7f8c8d; -fx-font-size: 11px;");
+
         logArea.setEditable(false);
         logArea.setPrefHeight(350);
         logArea.setWrapText(true);
@@ -227,8 +315,13 @@ public class RiskFolioApp extends Application {
                 horizonTopLine, horizonSlider,
                 historyLabel, historyInput,
                 fillCheckLabel, fillCheck,
+                offlineLabel, offlineCheck,
+                reductionLabel, reductionChoice,
+                adaptiveLabel, adaptiveCheck,
+                correlatedLabel, correlatedCheck,
                 new Separator(),
                 runButton,
+                progressLine, progressLabel,
                 reportLabel, logArea
         );
         return sidebar;
@@ -236,9 +329,8 @@ public class RiskFolioApp extends Application {
 
 
     private void setupAutocomplete() {
-        List<Instrument> allInstruments = InstrumentDatabase.getInstruments();
-
-        PauseTransition pause = new PauseTransition(Duration.millis(350));
+        // wyszukiwanie w indeksie trwa mikrosekundy; pauza tylko ogranicza miganie listy podczas pisania
+        PauseTransition pause = new PauseTransition(Duration.millis(120));
         pause.setOnFinished(event -> {
             String query = searchField.getText();
             suggestionsMenu.getItems().clear();
@@ -248,13 +340,7 @@ public class RiskFolioApp extends Application {
                 return;
             }
 
-            List<Instrument> matches = allInstruments.parallelStream()
-                    .filter(i -> {
-                        String q = query.toLowerCase();
-                        return i.name.toLowerCase().contains(q) || i.ticker.toLowerCase().contains(q);
-                    })
-                    .limit(15)
-                    .toList();
+            List<Instrument> matches = InstrumentDatabase.search(query, 15);
 
             if (!matches.isEmpty()) {
                 matches.forEach(inst -> {
@@ -288,10 +374,7 @@ public class RiskFolioApp extends Application {
             suggestionsMenu.hide();
             if (rawInput.isEmpty()) return;
 
-            Instrument knownInstrument = allInstruments.stream()
-                    .filter(i -> i.ticker.equalsIgnoreCase(rawInput) || i.name.equalsIgnoreCase(rawInput))
-                    .findFirst()
-                    .orElse(null);
+            Instrument knownInstrument = InstrumentDatabase.find(rawInput);
 
             if (knownInstrument != null) {
                 addInstrument(knownInstrument);
@@ -357,7 +440,7 @@ public class RiskFolioApp extends Application {
         xAxis.setLabel("Dzień symulacji");
         NumberAxis yAxis = new NumberAxis();
         yAxis.setLabel("Wartość portfela (PLN)");
-        chart = new LineChart<>(xAxis, yAxis);
+        chart = new FanChart(xAxis, yAxis);
         chart.setTitle("Prognoza dynamiki portfela z Monte Carlo");
         chart.setCreateSymbols(false);
         chart.setAnimated(false);
@@ -366,52 +449,202 @@ public class RiskFolioApp extends Application {
 
     private void runSimulation() {
 
-        logArea.setText("1. Pobieranie danych ze Stooq...\n2. Kalibracja modelu...\n3. Generowanie 10,000 scenariuszy...");
+        boolean doFilling = fillCheck.isSelected();
+        VarianceReduction reduction = reductionChoice.getValue();
+        boolean correlated = correlatedCheck.isSelected();
+        boolean adaptive = adaptiveCheck.isSelected() && !correlated;
+
+        logArea.setText("1. Pobieranie danych ze Stooq...\n2. Kalibracja modelu...\n3. Generowanie "
+                + (adaptive ? "scenariuszy do osiągnięcia precyzji..." : "10,000 scenariuszy..."));
         chart.getData().clear();
+        chart.clearBands();
+        lastResult = null;
+        scenarios = null;
+        reweightPending = false;
+
+        // Pola formularza czytane są w wątku UI, zanim zadanie trafi do kolejki.
+        double capital;
+        int horizon;
+        int historyYears;
+        List<String> tickers;
+        List<Double> weights;
+        try {
+            capital = Double.parseDouble(capitalInput.getText());
+            // Symulujemy do końca suwaka; każdy horyzont i inny kapitał odczytywane są potem
+            // z wyniku i profilu horyzontów.
+            horizon = (int) horizonSlider.getMax();
+            historyYears = Integer.parseInt(historyInput.getText());
+            if (hiddenTickerInput.getText().isEmpty()) throw new IllegalArgumentException("Portfel jest pusty!");
+            tickers = Arrays.asList(hiddenTickerInput.getText().split(",\\s*"));
+            weights = Arrays.stream(weightsInput.getText().split(",\\s*"))
+                    .map(Double::parseDouble)
+                    .collect(Collectors.toList());
+            if (Math.abs(weights.stream().mapToDouble(d -> d).sum() - 1.0) > 0.01) {
+                throw new IllegalArgumentException("Suma wag musi wynosić 1.0");
+            }
+        } catch (Exception ex) {
+            logArea.setText("BŁĄD: " + ex.getMessage());
+            return;
+        }
 
-        boolean doFilling = fillCheck.isSelected();
+        SimulationOptions defaults = SimulationOptions.defaults()
+                .withStorage(SimulationOptions.PathStorage.FINAL_VALUES)
+                .withReduction(reduction)
+                .withHorizonProfile();
+        SimulationOptions options = adaptive
+                ? defaults.withNumSimulations(ADAPTIVE_MAX_SIMULATIONS).withConvergence(ADAPTIVE_TOLERANCE, ADAPTIVE_TIME_BUDGET)
+                : defaults;
+
+        AtomicReference<CorrelatedMonteCarloEngine.Scenarios> built = new AtomicReference<>();
+        SimulationJobs.Job<SimulationResult> job = jobs.submit(control -> {
+                    if (!correlated) {
+                        return engine.runSimulation(capital, horizon, tickers, weights, historyYears, doFilling, options, control);
+                    }
+                    CorrelatedModel model = correlatedEngine.calibrate(tickers, historyYears, doFilling, control);
+                    CorrelatedMonteCarloEngine.Scenarios s = correlatedEngine.scenarios(model, horizon, options, control);
+                    built.set(s);
+                    return s.evaluate(capital, weights).portfolio();
+                },
+                (stage, fraction) -> Platform.runLater(() -> showProgress(stage, fraction)),
+                pendingSnapshot::set);
+
+        activeJob = job;
+        pendingSnapshot.set(null);
+        job.result().whenComplete((result, error) -> Platform.runLater(() -> {
+            if (job != activeJob) return; // zastąpione nowszym zleceniem
+            pendingSnapshot.set(null);
+            if (job.isCancelled()) {
+                progressLabel.setText("Anulowano.");
+                logArea.setText("Symulacja anulowana.");
+                return;
+            }
+            if (error != null) {
+                progressLabel.setText("");
+                logArea.setText("BŁĄD: " + error.getMessage());
+                error.printStackTrace();
+                return;
+            }
+            progressBar.setProgress(1.0);
+            progressLabel.setText("Gotowe.");
+            lastResult = result;
+            lastCapital = capital;
+            lastHorizon = horizon;
+            scenarios = built.get();
+            refreshEstimate(); // suwak i kapitał mogły się zmienić w trakcie symulacji
+        }));
 
-        new Thread(() -> {
-
-            try {
-                double capital = Double.parseDouble(capitalInput.getText());
-                int horizon = (int) horizonSlider.getValue();
-                int historyYears = Integer.parseInt(historyInput.getText());
-                if (hiddenTickerInput.getText().isEmpty()) throw new IllegalArgumentException("Portfel jest pusty!");
-                List<String> tickers = Arrays.asList(hiddenTickerInput.getText().split(",\\s*"));
-                List<Double> weights = Arrays.stream(weightsInput.getText().split(",\\s*"))
-                        .map(Double::parseDouble)
-                        .collect(Collectors.toList());
-                if (Math.abs(weights.stream().mapToDouble(d -> d).sum() - 1.0) > 0.01) {
-                    throw new IllegalArgumentException("Suma wag musi wynosić 1.0");
-                }
+    }
 
-                SimulationResult result = engine.runSimulation(capital, horizon, tickers, weights, historyYears, doFilling);
-                Platform.runLater(() -> updateUI(result));
 
-            } catch (Exception ex) {
-                Platform.runLater(() -> logArea.setText("BŁĄD: " + ex.getMessage()));
-                ex.printStackTrace();
-            }
+    /** Postęp etapu zadania: pasek pokazuje ułamek bieżącego etapu, etykieta jego nazwę. */
+    private void showProgress(JobControl.Stage stage, double fraction) {
+        progressBar.setProgress(fraction);
+        progressLabel.setText(String.format("%s... %.0f%%", stage, 100 * fraction));
+    }
 
-        }).start();
 
+    /**
+     * Pokazuje wynik ostatniej symulacji dla bieżącego kapitału i horyzontu bez ponownej symulacji.
+     * Na horyzoncie symulacji to raport samego przebiegu przeskalowany do kapitału; krótszy
+     * horyzont liczony jest w tle z profilu horyzontów.
+     */
+    private void refreshEstimate() {
+        SimulationResult result = lastResult;
+        if (result == null || reweightPending) return; // po nowych wagach refreshEstimate wywoła reweight
+        double capital;
+        try {
+            capital = Double.parseDouble(capitalInput.getText());
+        } catch (NumberFormatException e) {
+            return;
+        }
+        if (!(capital > 0)) return;
+        int horizon = (int) horizonSlider.getValue();
+        double runCapital = lastCapital;
+        int request = ++estimateRequest;
+        if (horizon == lastHorizon) {
+            updateUI(result, null, capital, runCapital);
+            return;
+        }
+        HorizonProfile profile = result.horizons();
+        CompletableFuture.supplyAsync(() -> profile.estimate(capital, horizon))
+                .whenComplete((estimate, error) -> Platform.runLater(() -> {
+                    if (request != estimateRequest || result != lastResult) return; // nieaktualne
+                    if (error != null) {
+                        logArea.setText("BŁĄD: " + error.getMessage());
+                        return;
+                    }
+                    updateUI(result, estimate, capital, runCapital);
+                }));
     }
 
 
-    private void updateUI(SimulationResult result) {
+    /**
+     * Nowe wagi na scenariuszach ostatniej symulacji modelu wieloaktywowego (w tle). Wagi, które
+     * nie pasują do instrumentów scenariuszy albo nie sumują się do 1, są pomijane - wtedy
+     * obowiązuje zwykłe „Symuluj”.
+     */
+    private void reweight() {
+        CorrelatedMonteCarloEngine.Scenarios s = scenarios;
+        if (lastResult == null) return;
+        if (s == null) {
+            progressLabel.setText("Nowe wagi wymagają ponownej symulacji (przeliczanie wag od razu działa w modelu wieloaktywowym).");
+            return;
+        }
+        List<Double> weights;
+        try {
+            List<String> tickers = Arrays.asList(hiddenTickerInput.getText().split(",\\s*"));
+            weights = Arrays.stream(weightsInput.getText().split(",\\s*"))
+                    .map(Double::parseDouble)
+                    .collect(Collectors.toList());
+            if (!tickers.equals(s.model().tickers()) || weights.size() != tickers.size()) return;
+        } catch (NumberFormatException e) {
+            return;
+        }
+        if (Math.abs(weights.stream().mapToDouble(d -> d).sum() - 1.0) > 0.01) return;
+        double runCapital = lastCapital;
+        int request = ++reweightRequest;
+        reweightPending = true;
+        CompletableFuture.supplyAsync(() -> s.evaluate(runCapital, weights).portfolio())
+                .whenComplete((result, error) -> Platform.runLater(() -> {
+                    if (request != reweightRequest || s != scenarios) return; // nieaktualne
+                    reweightPending = false;
+                    if (error != null) {
+                        logArea.setText("BŁĄD: " + error.getMessage());
+                        return;
+                    }
+                    lastResult = result;
+                    refreshEstimate();
+                }));
+    }
+
+
+    /**
+     * Raport i wykres wyniku dla kapitału {@code capital} ({@code runCapital} to kapitał, z którym
+     * liczono symulację); gdy podano {@code estimate}, liczby i wachlarz dotyczą jego horyzontu.
+     */
+    private void updateUI(SimulationResult result, HorizonProfile.Estimate estimate, double capital, double runCapital) {
+        Telemetry.UiRender render = Telemetry.UiRender.start("result");
 
         logArea.clear();
-        List<Double> finals = result.finalValues();
 
-        double meanVal = result.getMeanFinalValue();
-        double minVal = finals.stream().mapToDouble(v -> v).min().orElse(0.0);
-        double maxVal = finals.stream().mapToDouble(v -> v).max().orElse(0.0);
+        double scale = capital / runCapital;
+        PrecisionReport precision = estimate != null ? estimate.precision() : result.precision().scaled(scale);
+        RiskSummary summary = estimate != null ? estimate.summary() : result.summary().scaled(scale);
+        double meanVal = precision.mean();
+        double minVal = summary.min();
+        double maxVal = summary.max();
 
-        double var95 = riskService.calculateVaR(finals, 0.95);
-        double cvar95 = riskService.calculateCVaR(finals, 0.95);
+        double var95 = precision.var();
+        double cvar95 = precision.cvar();
 
         logArea.appendText("=== WYNIK PORTFELA INWESTYCYJNEGO ===\n\n");
+        if (estimate != null) {
+            logArea.appendText(String.format("Horyzont %d dni, kapitał %.2f PLN (z profilu %,d ścieżek, bez ponownej symulacji%s)\n\n",
+                    estimate.horizon(), estimate.capital(), result.horizons().paths(),
+                    estimate.exact() ? "" : "; kwantyle z dziennych histogramów"));
+        } else if (scale != 1) {
+            logArea.appendText(String.format("Kapitał %.2f PLN (wynik symulacji przeskalowany, bez ponownej symulacji)\n\n", capital));
+        }
         logArea.appendText(String.format("Średni wynik:     %.2f PLN\n", meanVal));
         logArea.appendText(String.format("Maksymalny wynik: %.2f PLN\n", maxVal));
         logArea.appendText(String.format("Minimalny wynik:  %.2f PLN\n\n", minVal));
@@ -420,93 +653,152 @@ public class RiskFolioApp extends Application {
         logArea.appendText(String.format("VaR 95%%:          %.2f PLN\n", var95));
         logArea.appendText(String.format("CVaR 95%%:         %.2f PLN\n\n", cvar95));
 
+        logArea.appendText("Poziom ufności        VaR            CVaR\n");
+        for (int i = 0; i < summary.confidences().length; i++) {
+            logArea.appendText(String.format("%6.1f%%   %12.2f PLN %12.2f PLN\n",
+                    100 * summary.confidences()[i], summary.var()[i], summary.cvar()[i]));
+        }
+        logArea.appendText("\n");
+
+        if (estimate != null || scale != 1) {
+            logArea.appendText(String.format("Raport symulacji dotyczy horyzontu %d dni i kapitału %.2f PLN.\n",
+                    lastHorizon, runCapital));
+        }
         logArea.appendText(result.infoLog());
 
-        List<List<Double>> paths = result.samplePaths();
-        if(!paths.isEmpty()) {
-            try {
-                double startCapital = Double.parseDouble(capitalInput.getText());
-                int lastDayIndex = paths.getFirst().size() - 1;
-
-                XYChart.Series<Number, Number> capitalSeries = new XYChart.Series<>();
-                capitalSeries.setName("Kapitał pocz.");
-
-                XYChart.Data<Number, Number> startPoint = new XYChart.Data<>(0, startCapital);
-                XYChart.Data<Number, Number> endPoint = new XYChart.Data<>(lastDayIndex, startCapital);
-                capitalSeries.getData().addAll(startPoint, endPoint);
-
-                chart.getData().add(capitalSeries);
-
-                Platform.runLater(() -> {
-                    Node lineNode = capitalSeries.getNode();
-                    if (lineNode != null) {
-                        lineNode.setStyle(
-                                "-fx-stroke: #333333;" +
-                                        "-fx-stroke-width: 1.0px;" +
-                                        "-fx-stroke-dash-array: 8 6;"
-                        );
-                    }
+        PercentileBands bands = result.bands();
+        if (estimate != null) {
+            bands = bands.view(estimate.horizon(), scale);
+        } else if (scale != 1) {
+            bands = bands.view(bands.horizon(), scale);
+        }
+        drawChart(bands);
+        render.finish();
+    }
 
-                    for (XYChart.Data<Number, Number> data : capitalSeries.getData()) {
-                        if (data.getNode() != null) data.getNode().setVisible(false);
-                    }
 
-                    for (Node node : chart.lookupAll(".chart-legend-item")) {
-                        if (node instanceof Label label) {
-                            if (label.getText().equals("Kapitał pocz.")) {
-                                Node symbol = label.getGraphic();
-                                if (symbol != null) {
-                                    symbol.setStyle("-fx-background-color: #333333, white;");
-                                }
+    /** Rysuje od nowa linię kapitału i wachlarz percentyli (wyniku końcowego albo pośredniego). */
+    private void drawChart(PercentileBands bands) {
+        chart.getData().clear();
+        chart.clearBands();
+        if (bands == null) return;
+        try {
+            double startCapital = Double.parseDouble(capitalInput.getText());
+            int lastDayIndex = bands.horizon();
+
+            XYChart.Series<Number, Number> capitalSeries = new XYChart.Series<>();
+            capitalSeries.setName("Kapitał pocz.");
+
+            XYChart.Data<Number, Number> startPoint = new XYChart.Data<>(0, startCapital);
+            XYChart.Data<Number, Number> endPoint = new XYChart.Data<>(lastDayIndex, startCapital);
+            capitalSeries.getData().addAll(startPoint, endPoint);
+
+            chart.getData().add(capitalSeries);
+
+            Platform.runLater(() -> {
+                Node lineNode = capitalSeries.getNode();
+                if (lineNode != null) {
+                    lineNode.setStyle(
+                            "-fx-stroke: #333333;" +
+                                    "-fx-stroke-width: 1.0px;" +
+                                    "-fx-stroke-dash-array: 8 6;"
+                    );
+                }
+
+                for (XYChart.Data<Number, Number> data : capitalSeries.getData()) {
+                    if (data.getNode() != null) data.getNode().setVisible(false);
+                }
+
+                for (Node node : chart.lookupAll(".chart-legend-item")) {
+                    if (node instanceof Label label) {
+                        if (label.getText().equals("Kapitał pocz.")) {
+                            Node symbol = label.getGraphic();
+                            if (symbol != null) {
+                                symbol.setStyle("-fx-background-color: #333333, white;");
                             }
                         }
                     }
-                });
-            } catch (Exception e) {
-            }
-            addSeries("Najlepszy", paths.get(findExtremeIndex(finals, true)));
-            addSeries("Średni", paths.get(findClosestIndex(finals, meanVal)));
-            addSeries("VaR 95%", paths.get(findClosestIndex(finals, var95)));
-            addSeries("CVaR 95%", paths.get(findClosestIndex(finals, cvar95)));
+                }
+            });
+        } catch (Exception e) {
         }
+        addFan(bands);
     }
 
 
-    private void addSeries(String name, List<Double> data) {
+    /**
+     * Wynik pośredni: wstępne estymaty w raporcie i bieżący wachlarz na wykresie.
+     * Wywoływane z {@link #snapshotRenderer} najwyżej raz na {@link #SNAPSHOT_FRAME_NANOS}.
+     */
+    private void showSnapshot(SimulationSnapshot snapshot) {
+        Telemetry.UiRender render = Telemetry.UiRender.start("snapshot");
+        logArea.setText(String.format("=== WYNIK WSTĘPNY (%,d z %,d scenariuszy, horyzont %d dni) ===\n\n",
+                snapshot.paths(), snapshot.totalPaths(), snapshot.bands().horizon()));
+        logArea.appendText(String.format("Średni wynik:     %.2f PLN\n", snapshot.mean()));
+        logArea.appendText(String.format("VaR 95%%:          %.2f PLN\n", snapshot.var()));
+        logArea.appendText(String.format("CVaR 95%%:         %.2f PLN\n", snapshot.cvar()));
+        drawChart(snapshot.bands());
+        render.finish();
+    }
+
+
+    /** Wykres wachlarzowy: linie percentyli i wypełnione pasma między symetrycznymi poziomami (np. 5-95%, 25-75%). */
+    private void addFan(PercentileBands bands) {
+        double[] levels = bands.levels();
+        List<XYChart.Series<Number, Number>> lines = new ArrayList<>();
+        for (int j = 0; j < levels.length; j++) {
+            String name = levels[j] == 0.5 ? "Mediana" : String.format("%.0f%%", 100 * levels[j]);
+            XYChart.Series<Number, Number> series = addSeries(name, bands.band(j));
+            boolean median = levels[j] == 0.5;
+            styleSeries(series, median ? "#1f4e79" : "#5dade2", median ? 2.5 : 1.0);
+            lines.add(series);
+        }
+        for (int j = 0; j < levels.length / 2; j++) {
+            double opacity = 0.15 * (j + 1);
+            chart.addBand(lines.get(j), lines.get(levels.length - 1 - j), "rgba(52, 152, 219, " + opacity + ")");
+        }
+    }
+
+
+    private XYChart.Series<Number, Number> addSeries(String name, double[] values) {
         XYChart.Series<Number, Number> series = new XYChart.Series<>();
         series.setName(name);
-        int step = Math.max(1, data.size() / 200);
-        for (int i = 0; i < data.size(); i += step) {
-            series.getData().add(new XYChart.Data<>(i, data.get(i)));
+        int length = values.length;
+        int step = Math.max(1, length / 200);
+        for (int i = 0; i < length; i += step) {
+            series.getData().add(new XYChart.Data<>(i, values[i]));
         }
         chart.getData().add(series);
+        return series;
     }
 
 
-    private int findClosestIndex(List<Double> values, double target) {
-        int idx = 0;
-        double minDiff = Double.MAX_VALUE;
-        for (int i = 0; i < values.size(); i++) {
-            double diff = Math.abs(values.get(i) - target);
-            if (diff < minDiff) {
-                minDiff = diff;
-                idx = i;
+    /** Kolor linii serii i jej symbolu w legendzie (węzły powstają dopiero po dodaniu serii do wykresu). */
+    private void styleSeries(XYChart.Series<Number, Number> series, String color, double width) {
+        Platform.runLater(() -> {
+            Node line = series.getNode();
+            if (line != null) {
+                line.setStyle("-fx-stroke: " + color + "; -fx-stroke-width: " + width + "px;");
             }
-        }
-        return idx;
+            for (Node node : chart.lookupAll(".chart-legend-item")) {
+                if (node instanceof Label label && label.getText().equals(series.getName()) && label.getGraphic() != null) {
+                    label.getGraphic().setStyle("-fx-background-color: " + color + ", white;");
+                }
+            }
+        });
     }
 
 
-    private int findExtremeIndex(List<Double> values, boolean findMax) {
-        int idx = 0;
-        double val = values.getFirst();
-        for (int i = 1; i < values.size(); i++) {
-            if (findMax ? values.get(i) > val : values.get(i) < val) {
-                val = values.get(i);
-                idx = i;
-            }
+    /** Przy zamykaniu zapisuje migawkę metryk, jeśli podano {@code -Driskfolio.metrics=<plik.json>}. */
+    @Override
+    public void stop() {
+        String metricsFile = System.getProperty("riskfolio.metrics");
+        if (metricsFile == null) return;
+        try {
+            Metrics.global().writeJson(Path.of(metricsFile));
+        } catch (IOException e) {
+            System.err.println("Nie udało się zapisać metryk: " + e.getMessage());
         }
-        return idx;
     }
 
 
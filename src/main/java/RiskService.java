@@ -1,21 +1,271 @@
+import org.apache.commons.math3.linear.DecompositionSolver;
+import org.apache.commons.math3.linear.LUDecomposition;
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.RealVector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class RiskService {
 
-    public double calculateVaR(List<Double> results, double confidence) {
-        return results.stream()
-                .sorted()
-                .skip((long) ((1 - confidence) * results.size()))
-                .findFirst()
-                .orElse(0.0);
+    public double calculateVaR(double[] results, double confidence) {
+        int index = (int) ((1 - confidence) * results.length);
+        if (index >= results.length) return 0.0;
+
+        double[] copy = results.clone();
+        select(copy, 0, copy.length - 1, index);
+        return copy[index];
+    }
+
+    public double calculateCVaR(double[] results, double confidence) {
+        return summarize(results, confidence).cvar()[0];
+    }
+
+    /** VaR ze szkicu kwantyli - odpowiednik {@link #calculateVaR(double[], double)} bez przechowywania wartości. */
+    public double calculateVaR(QuantileSketch sketch, double confidence) {
+        long n = Math.round(sketch.count());
+        long index = (long) ((1 - confidence) * n);
+        if (index >= n) return 0.0;
+        return sketch.valueAtRank(index);
+    }
+
+    /** CVaR ze szkicu kwantyli: średnia ⌊(1-c)·n⌋+1 najmniejszych wartości. */
+    public double calculateCVaR(QuantileSketch sketch, double confidence) {
+        long n = Math.round(sketch.count());
+        long index = (long) ((1 - confidence) * n);
+        if (index >= n) return 0.0;
+        return sketch.meanOfLowest(index + 1);
+    }
+
+    /** Podsumowanie rozkładu zapisanego w szkicu (średnia, min i max są dokładne). */
+    public RiskSummary summarize(QuantileSketch sketch, double... confidences) {
+        double[] var = new double[confidences.length];
+        double[] cvar = new double[confidences.length];
+        for (int j = 0; j < confidences.length; j++) {
+            var[j] = calculateVaR(sketch, confidences[j]);
+            cvar[j] = calculateCVaR(sketch, confidences[j]);
+        }
+        return new RiskSummary((int) Math.round(sketch.count()), sketch.mean(), sketch.min(), sketch.max(),
+                confidences.clone(), var, cvar);
+    }
+
+    /**
+     * Średnia, minimum, maksimum oraz VaR i CVaR dla wszystkich poziomów ufności w czasie O(n):
+     * poziomy przetwarzane są od najgłębszego ogona, a każda selekcja (introselect) działa
+     * tylko na części tablicy na prawo od poprzedniej. CVaR to średnia wartości nie większych
+     * od VaR (z remisami), tak jak w {@link #calculateCVaR}.
+     */
+    public RiskSummary summarize(double[] values, double... confidences) {
+        int n = values.length;
+        int m = confidences.length;
+        double[] var = new double[m];
+        double[] cvar = new double[m];
+        if (n == 0) return new RiskSummary(0, 0.0, 0.0, 0.0, confidences.clone(), var, cvar);
+
+        double[] a = values.clone();
+        double sum = 0.0, min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+        for (double v : a) {
+            sum += v;
+            if (v < min) min = v;
+            if (v > max) max = v;
+        }
+
+        // indeksy kwantyli rosnąco (od najwyższego poziomu ufności)
+        int[] ks = new int[m];
+        int[] order = new int[m];
+        for (int j = 0; j < m; j++) {
+            ks[j] = (int) Math.min(n, Math.max(0, (long) ((1 - confidences[j]) * n)));
+            order[j] = j;
+            for (int q = j; q > 0 && ks[order[q - 1]] > ks[order[q]]; q--) {
+                int t = order[q]; order[q] = order[q - 1]; order[q - 1] = t;
+            }
+        }
+
+        double[] prefix = new double[m];
+        double running = 0.0;
+        int lo = 0;
+        for (int q = 0; q < m; q++) {
+            int j = order[q];
+            int k = ks[j];
+            if (k >= n) continue;
+            if (k >= lo) {
+                select(a, lo, n - 1, k);
+                for (int i = lo; i <= k; i++) running += a[i];
+                lo = k + 1;
+            }
+            prefix[j] = running;
+            var[j] = a[k];
+        }
+
+        // Po selekcjach a[0..k] ≤ VaR ≤ a[k+1..]; wartości równe VaR mogą leżeć tylko
+        // między kolejnymi indeksami kwantyli, więc przeglądamy wyłącznie te odcinki.
+        for (int q = 0; q < m; q++) {
+            int j = order[q];
+            int k = ks[j];
+            if (k >= n) continue;
+            double v = var[j];
+            double tailSum = prefix[j];
+            int count = k + 1;
+            int from = k + 1;
+            for (int r = q + 1; from < n; r++) {
+                int next = r < m ? ks[order[r]] : n;
+                if (next < from) continue;
+                for (int i = from; i < next; i++) {
+                    if (a[i] == v) {
+                        tailSum += v;
+                        count++;
+                    }
+                }
+                if (next >= n || a[next] != v) break;
+                tailSum += v;
+                count++;
+                from = next + 1;
+            }
+            cvar[j] = tailSum / count;
+        }
+        return new RiskSummary(n, sum / n, min, max, confidences.clone(), var, cvar);
+    }
+
+    /**
+     * Estymaty średniej, VaR i CVaR z błędami standardowymi liczonymi metodą średnich
+     * z ciągłych partii o rozmiarze {@code batchSize}. Gdy podano zmienne kontrolne
+     * ({@code controls[c][i]} o znanych wartościach oczekiwanych {@code controlMeans[c]}),
+     * estymatory liczone są na ważonym rozkładzie empirycznym.
+     */
+    public PrecisionReport estimatePrecision(double[] values, double[][] controls, double[] controlMeans,
+                                             int batchSize, double confidence) {
+        double[] overall = estimateRange(values, controls, controlMeans, 0, values.length, confidence);
+
+        int batches = values.length / batchSize;
+        List<double[]> perBatch = new ArrayList<>(batches);
+        for (int b = 0; b < batches; b++) {
+            perBatch.add(estimateRange(values, controls, controlMeans, b * batchSize, (b + 1) * batchSize, confidence));
+        }
+        return combine(overall, perBatch, confidence);
+    }
+
+    /** Łączy estymatę całościową z estymatami partii w raport z błędami standardowymi. */
+    public PrecisionReport combine(double[] overall, List<double[]> batchEstimates, double confidence) {
+        return new PrecisionReport(confidence,
+                overall[0], standardError(batchEstimates, 0),
+                overall[1], standardError(batchEstimates, 1),
+                overall[2], standardError(batchEstimates, 2),
+                batchEstimates.size());
+    }
+
+    /** {średnia, VaR, CVaR} dla wycinka [from, to), opcjonalnie ważone zmiennymi kontrolnymi. */
+    public double[] estimateRange(double[] values, double[][] controls, double[] controlMeans,
+                                  int from, int to, double confidence) {
+        double[] slice = Arrays.copyOfRange(values, from, to);
+        if (controls == null) {
+            RiskSummary summary = summarize(slice, confidence);
+            return new double[]{summary.mean(), summary.var()[0], summary.cvar()[0]};
+        }
+
+        double[] weights = controlVariateWeights(controls, controlMeans, from, to);
+        double mean = 0.0;
+        for (int i = 0; i < slice.length; i++) mean += weights[i] * slice[i];
+
+        PairedSort.sort(slice, weights, 0, slice.length - 1);
+        double tail = 1 - confidence;
+        double cumulative = 0.0, tailSum = 0.0;
+        int k = 0;
+        while (k < slice.length) {
+            cumulative += weights[k];
+            tailSum += weights[k] * slice[k];
+            if (cumulative > tail) break;
+            k++;
+        }
+        if (k == slice.length) return new double[]{mean, 0.0, 0.0};
+        return new double[]{mean, slice[k], tailSum / cumulative};
+    }
+
+    /**
+     * Liniowe wagi zmiennych kontrolnych: w_i = (1 - (Y_i - Ȳ)·β) / n, β = S⁻¹(Ȳ - μ).
+     * Wagi sumują się do 1, a ważone średnie kontroli są równe ich wartościom oczekiwanym.
+     */
+    private double[] controlVariateWeights(double[][] controls, double[] controlMeans, int from, int to) {
+        int n = to - from;
+        int c = controls.length;
+        double[] uniform = new double[n];
+        Arrays.fill(uniform, 1.0 / n);
+
+        double[] avg = new double[c];
+        for (int a = 0; a < c; a++) {
+            for (int i = from; i < to; i++) avg[a] += controls[a][i];
+            avg[a] /= n;
+        }
+        double[][] cov = new double[c][c];
+        for (int a = 0; a < c; a++) {
+            for (int b = a; b < c; b++) {
+                double s = 0.0;
+                for (int i = from; i < to; i++) s += (controls[a][i] - avg[a]) * (controls[b][i] - avg[b]);
+                cov[a][b] = cov[b][a] = s / n;
+            }
+        }
+
+        DecompositionSolver solver = new LUDecomposition(MatrixUtils.createRealMatrix(cov)).getSolver();
+        if (!solver.isNonSingular()) return uniform;
+
+        double[] gap = new double[c];
+        for (int a = 0; a < c; a++) gap[a] = avg[a] - controlMeans[a];
+        RealVector beta = solver.solve(MatrixUtils.createRealVector(gap));
+
+        double[] weights = new double[n];
+        for (int i = 0; i < n; i++) {
+            double adjust = 0.0;
+            for (int a = 0; a < c; a++) adjust += (controls[a][from + i] - avg[a]) * beta.getEntry(a);
+            weights[i] = (1.0 - adjust) / n;
+        }
+        return weights;
+    }
+
+    private static double standardError(List<double[]> batchEstimates, int column) {
+        int b = batchEstimates.size();
+        if (b < 2) return Double.NaN;
+        double mean = 0.0;
+        for (double[] e : batchEstimates) mean += e[column];
+        mean /= b;
+        double ss = 0.0;
+        for (double[] e : batchEstimates) ss += (e[column] - mean) * (e[column] - mean);
+        return Math.sqrt(ss / (b - 1) / b);
+    }
+
+    /**
+     * Introselect: przestawia {@code a[lo..hi]} tak, by {@code a[k]} było k-tą statystyką pozycyjną,
+     * mniejsze wartości leżały przed nim, a większe za nim. Podział trójdrożny (obsługa remisów),
+     * a po przekroczeniu limitu głębokości - sortowanie, co gwarantuje O(n log n) w najgorszym razie.
+     */
+    static void select(double[] a, int lo, int hi, int k) {
+        int depth = 2 * (32 - Integer.numberOfLeadingZeros(hi - lo + 1));
+        while (hi > lo) {
+            if (hi - lo < 16 || depth-- == 0) {
+                Arrays.sort(a, lo, hi + 1);
+                return;
+            }
+            double pivot = median(a[lo], a[(lo + hi) >>> 1], a[hi]);
+            int lt = lo, i = lo, gt = hi;
+            while (i <= gt) {
+                double x = a[i];
+                if (x < pivot) {
+                    a[i++] = a[lt];
+                    a[lt++] = x;
+                } else if (x > pivot) {
+                    a[i] = a[gt];
+                    a[gt--] = x;
+                } else {
+                    i++;
+                }
+            }
+            // [lo, lt) < pivot, [lt, gt] == pivot, (gt, hi] > pivot
+            if (k < lt) hi = lt - 1;
+            else if (k > gt) lo = gt + 1;
+            else return;
+        }
     }
 
-    public double calculateCVaR(List<Double> results, double confidence) {
-        double varThreshold = calculateVaR(results, confidence);
-        return results.stream()
-                .filter(v -> v <= varThreshold)
-                .mapToDouble(Double::doubleValue)
-                .average()
-                .orElse(varThreshold);
+    private static double median(double a, double b, double c) {
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,44 @@
+/**
+ * Podsumowanie rozkładu wartości końcowych: średnia, skrajne wartości oraz VaR i CVaR
+ * dla kilku poziomów ufności naraz (w kolejności {@code confidences}).
+ */
+public record RiskSummary(
+        int count,
+        double mean,
+        double min,
+        double max,
+        double[] confidences,
+        double[] var,
+        double[] cvar
+) {
+    /** Poziomy ufności raportowane domyślnie: 90, 95, 97,5, 99 i 99,5%. */
+    public static double[] standardLevels() {
+        return new double[]{0.90, 0.95, 0.975, 0.99, 0.995};
+    }
+
+    /** Podsumowanie dla kapitału {@code factor} razy większego ({@code factor > 0}). */
+    public RiskSummary scaled(double factor) {
+        double[] scaledVar = var.clone();
+        double[] scaledCvar = cvar.clone();
+        for (int i = 0; i < scaledVar.length; i++) {
+            scaledVar[i] *= factor;
+            scaledCvar[i] *= factor;
+        }
+        return new RiskSummary(count, factor * mean, factor * min, factor * max, confidences.clone(), scaledVar, scaledCvar);
+    }
+
+    public double var(double confidence) {
+        return var[indexOf(confidence)];
+    }
+
+    public double cvar(double confidence) {
+        return cvar[indexOf(confidence)];
+    }
+
+    private int indexOf(double confidence) {
+        for (int i = 0; i < confidences.length; i++) {
+            if (confidences[i] == confidence) return i;
+        }
+        throw new IllegalArgumentException("Brak poziomu ufności " + confidence + " w podsumowaniu.");
+    }
+}
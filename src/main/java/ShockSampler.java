@@ -0,0 +1,154 @@
+import java.util.random.RandomGenerator;
+
+/**
+ * Dostarcza standardowe szoki normalne z[0..horyzont) dla kolejnych ścieżek
+ * zgodnie z wybraną techniką redukcji wariancji. Szoki ścieżki zależą tylko od jej
+ * indeksu, więc ścieżkę można odtworzyć w dowolnym wątku i w dowolnej kolejności.
+ *
+ * Ścieżki dzielone są na ciągłe partie o rozmiarze {@link #batchSize()}; z nich liczony
+ * jest błąd standardowy. Dla QMC każda partia jest osobną replikacją ciągu Sobola
+ * z własnym losowym przesunięciem (rotacja Cranleya-Pattersona).
+ */
+final class ShockSampler {
+
+    private static final long QMC_SHIFT_STREAM = 2L;
+    private static final double MIN_UNIFORM = 0x1.0p-53;
+
+    private final VarianceReduction mode;
+    private final RandomSource random;
+    private final RandomSource shiftSource;
+    private final int horizon;
+    private final int batchSize;
+
+    private final int sobolDimension;
+    private final BrownianBridge bridge;
+
+    ShockSampler(VarianceReduction mode, RandomSource random, int horizon, int batchSize) {
+        if (mode == VarianceReduction.ANTITHETIC && batchSize % 2 != 0) {
+            throw new IllegalArgumentException("Partia dla zmiennych antytetycznych musi mieć parzysty rozmiar.");
+        }
+        this.mode = mode;
+        this.random = random;
+        this.shiftSource = random.fork(QMC_SHIFT_STREAM);
+        this.horizon = horizon;
+        this.batchSize = batchSize;
+
+        boolean quasiRandom = mode == VarianceReduction.QUASI_RANDOM && horizon > 0;
+        this.sobolDimension = quasiRandom ? Math.min(horizon, SobolSequence.MAX_DIMENSION) : 0;
+        this.bridge = quasiRandom ? new BrownianBridge(horizon) : null;
+    }
+
+    /** Rozmiar partii dzielący {@code numPaths} ścieżek na około {@code batches} części. */
+    static int batchSizeFor(int numPaths, int batches, VarianceReduction mode) {
+        int size = Math.max(1, (numPaths + batches - 1) / batches);
+        if (mode == VarianceReduction.ANTITHETIC && size % 2 != 0) size++; // pary nie mogą być rozdzielone
+        return size;
+    }
+
+    int batchSize() {
+        return batchSize;
+    }
+
+    /** Nowy kursor dla jednego wątku/bloku ścieżek. */
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    final class Cursor {
+        private final SobolSequence.Cursor sobol;
+        private final double[] point;
+        private final double[] normals;
+        private final double[] shift;
+        private int shiftReplica = -1;
+
+        private Cursor() {
+            if (mode == VarianceReduction.QUASI_RANDOM && sobolDimension > 0) {
+                sobol = new SobolSequence.Cursor(sobolDimension);
+                point = new double[sobolDimension];
+                normals = new double[horizon];
+                shift = new double[sobolDimension];
+            } else {
+                sobol = null;
+                point = null;
+                normals = null;
+                shift = null;
+            }
+        }
+
+        void fill(int path, double[] z) {
+            switch (mode) {
+                case NONE, CONTROL_VARIATE -> {
+                    RandomGenerator g = random.stream(path);
+                    for (int t = 0; t < horizon; t++) z[t] = g.nextGaussian();
+                }
+                case ANTITHETIC -> {
+                    RandomGenerator g = random.stream(path >> 1);
+                    boolean mirrored = (path & 1) != 0;
+                    for (int t = 0; t < horizon; t++) {
+                        double n = g.nextGaussian();
+                        z[t] = mirrored ? -n : n;
+                    }
+                }
+                case QUASI_RANDOM -> fillQuasiRandom(path, z);
+            }
+        }
+
+        private void fillQuasiRandom(int path, double[] z) {
+            if (horizon == 0) return;
+            int replica = path / batchSize;
+            sobol.point(path - replica * batchSize, point);
+
+            if (replica != shiftReplica) {
+                RandomGenerator g = shiftSource.stream(replica);
+                for (int j = 0; j < sobolDimension; j++) shift[j] = g.nextDouble();
+                shiftReplica = replica;
+            }
+            for (int j = 0; j < sobolDimension; j++) {
+                double u = point[j] + shift[j];
+                if (u >= 1.0) u -= 1.0;
+                normals[j] = inverseNormal(u);
+            }
+            // Wymiary powyżej zakresu ciągu (najmniej ważne punkty mostu) uzupełniamy pseudolosowo.
+            if (sobolDimension < horizon) {
+                RandomGenerator g = random.stream(path);
+                for (int j = sobolDimension; j < horizon; j++) normals[j] = g.nextGaussian();
+            }
+            bridge.transform(normals, z);
+        }
+    }
+
+    /** Odwrotna dystrybuanta N(0,1) - algorytm AS241 (Wichura), dokładność ~1e-16. */
+    static double inverseNormal(double u) {
+        double p = Math.min(Math.max(u, MIN_UNIFORM), 1.0 - MIN_UNIFORM);
+        double q = p - 0.5;
+        if (Math.abs(q) <= 0.425) {
+            double r = 0.180625 - q * q;
+            return q * (((((((2509.0809287301226727 * r + 33430.575583588128105) * r + 67265.770927008700853) * r
+                    + 45921.953931549871457) * r + 13731.693765509461125) * r + 1971.5909503065514427) * r
+                    + 133.14166789178437745) * r + 3.387132872796366608)
+                    / (((((((5226.495278852545925 * r + 28729.085735721942674) * r + 39307.89580009271061) * r
+                    + 21213.794301586595867) * r + 5394.1960214247511077) * r + 687.1870074920579083) * r
+                    + 42.313330701600911252) * r + 1.0);
+        }
+        double r = Math.sqrt(-Math.log(q < 0 ? p : 1.0 - p));
+        double x;
+        if (r <= 5.0) {
+            r -= 1.6;
+            x = (((((((7.7454501427834140764e-4 * r + 0.0227238449892691845833) * r + 0.24178072517745061177) * r
+                    + 1.27045825245236838258) * r + 3.64784832476320460504) * r + 5.7694972214606914055) * r
+                    + 4.6303378461565452959) * r + 1.42343711074968357734)
+                    / (((((((1.05075007164441684324e-9 * r + 5.475938084995344946e-4) * r + 0.0151986665636164571966) * r
+                    + 0.14810397642748007459) * r + 0.68976733498510000455) * r + 1.6763848301838038494) * r
+                    + 2.05319162663775882187) * r + 1.0);
+        } else {
+            r -= 5.0;
+            x = (((((((2.01033439929228813265e-7 * r + 2.71155556874348757815e-5) * r + 0.0012426609473880784386) * r
+                    + 0.026532189526576123093) * r + 0.29656057182850489123) * r + 1.7848265399172913358) * r
+                    + 5.4637849111641143699) * r + 6.6579046435011037772)
+                    / (((((((2.04426310338993978564e-15 * r + 1.4215117583164458887e-7) * r + 1.8463183175100546818e-5) * r
+                    + 7.868691311456132591e-4) * r + 0.0148753612908506148525) * r + 0.13692988092273580531) * r
+                    + 0.59983220655588793769) * r + 1.0);
+        }
+        return q < 0 ? -x : x;
+    }
+}
@@ -0,0 +1,89 @@
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Wykonawca zadań symulacji dla interfejsu użytkownika: jeden wątek zadań i co najwyżej jedno
+ * zadanie oczekujące. Każde nowe zlecenie unieważnia poprzednie - oczekujące jest pomijane,
+ * a trwające przerywa się kooperacyjnie ({@link JobControl#checkCancelled()}) po bieżącym bloku ścieżek.
+ * Same obliczenia równoległe biegną w {@link ComputePool}.
+ */
+public final class SimulationJobs implements AutoCloseable {
+
+    @FunctionalInterface
+    public interface Task<T> {
+        T run(JobControl control) throws Exception;
+    }
+
+    /** Uchwyt zleconego zadania; wynik kończy się wyjątkiem {@code CancellationException} po anulowaniu. */
+    public static final class Job<T> {
+        private final JobControl control;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        private Job(JobControl control) {
+            this.control = control;
+        }
+
+        public CompletableFuture<T> result() {
+            return result;
+        }
+
+        public void cancel() {
+            control.cancel();
+            result.cancel(false);
+        }
+
+        public boolean isCancelled() {
+            return control.isCancelled();
+        }
+    }
+
+    private static final int QUEUE_CAPACITY = 1;
+
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+            r -> {
+                Thread t = new Thread(r, "simulation-job");
+                t.setDaemon(true);
+                return t;
+            },
+            // miejsce w kolejce zajmuje najwyżej zadanie już unieważnione przez nowsze
+            new ThreadPoolExecutor.DiscardOldestPolicy());
+
+    private Job<?> current;
+
+    /** Zleca zadanie, anulując poprzednie (jeśli jeszcze trwa lub czeka). */
+    public synchronized <T> Job<T> submit(Task<T> task, JobControl.Listener listener) {
+        return submit(task, listener, null);
+    }
+
+    /** Jak {@link #submit(Task, JobControl.Listener)}, z odbiorcą wyników pośrednich symulacji. */
+    public synchronized <T> Job<T> submit(Task<T> task, JobControl.Listener listener,
+                                          Consumer<SimulationSnapshot> snapshots) {
+        if (current != null) current.cancel();
+        Job<T> job = new Job<>(new JobControl(listener, snapshots));
+        current = job;
+        executor.execute(() -> {
+            if (job.isCancelled()) return;
+            try {
+                job.result.complete(task.run(job.control));
+            } catch (Throwable e) {
+                job.result.completeExceptionally(e);
+            }
+        });
+        return job;
+    }
+
+    /** Anuluje bieżące zadanie, o ile istnieje. */
+    public synchronized void cancelCurrent() {
+        if (current != null) current.cancel();
+    }
+
+    @Override
+    public void close() {
+        cancelCurrent();
+        executor.shutdownNow();
+    }
+}
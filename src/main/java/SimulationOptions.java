@@ -0,0 +1,101 @@
+import java.time.Duration;
+
+/**
+ * Ustawienia pojedynczego uruchomienia symulacji Monte Carlo.
+ *
+ * @param numSimulations liczba generowanych scenariuszy
+ * @param storage        sposób przechowywania ścieżek (wszystkie albo tylko wartości końcowe)
+ * @param random         źródło strumieni losowych; to samo ziarno daje identyczne wyniki
+ * @param reduction      technika redukcji wariancji w pętli ścieżek
+ * @param convergence    kryterium adaptacyjnego zatrzymania; null oznacza stałą liczbę scenariuszy,
+ *                       w przeciwnym razie {@code numSimulations} jest górnym limitem
+ * @param sketchCompression kompresja δ szkicu kwantyli w trybie {@link PathStorage#SKETCH}
+ *                       (błąd pozycji kwantyla rzędu 1/δ, pamięć rzędu δ)
+ * @param horizonProfile czy zapisywać rozkład wartości z każdego dnia do {@link HorizonProfile}
+ *                       (wyniki dla krótszych horyzontów i innego kapitału bez ponownej symulacji)
+ */
+public record SimulationOptions(int numSimulations, PathStorage storage, RandomSource random,
+                                VarianceReduction reduction, Convergence convergence, double sketchCompression,
+                                boolean horizonProfile) {
+
+    /**
+     * FULL_PATHS trzyma wszystkie ścieżki w pamięci (pamięć rośnie z horyzont × liczba scenariuszy).
+     * FINAL_VALUES trzyma tylko wartości końcowe; {@link SimulationResult#samplePaths()} jest wtedy null,
+     * a wykres korzysta z pasm percentyli zbieranych w trakcie symulacji.
+     * SKETCH nie trzyma nawet wartości końcowych: wątki wypełniają lokalne szkice kwantyli
+     * ({@link QuantileSketch}), scalane na koniec, więc pamięć nie zależy od liczby scenariuszy.
+     */
+    public enum PathStorage { FULL_PATHS, FINAL_VALUES, SKETCH }
+
+    /**
+     * Symulacja biegnie partiami i kończy się, gdy półszerokość 95% przedziału ufności
+     * VaR i CVaR spadnie poniżej {@code tolerance} × kapitał albo gdy minie {@code timeBudget}.
+     */
+    public record Convergence(double tolerance, Duration timeBudget) {
+        public Convergence {
+            if (tolerance <= 0 || timeBudget == null || timeBudget.isNegative() || timeBudget.isZero()) {
+                throw new IllegalArgumentException("Tolerancja i budżet czasu muszą być dodatnie.");
+            }
+        }
+    }
+
+    public SimulationOptions {
+        if (numSimulations <= 0) {
+            throw new IllegalArgumentException("Liczba symulacji musi być dodatnia.");
+        }
+        if (random == null || reduction == null) {
+            throw new IllegalArgumentException("Źródło liczb losowych i tryb redukcji wariancji są wymagane.");
+        }
+        if (convergence != null && storage == PathStorage.FULL_PATHS) {
+            throw new IllegalArgumentException("Tryb adaptacyjny przechowuje tylko wartości końcowe.");
+        }
+        if (convergence != null && storage == PathStorage.SKETCH) {
+            throw new IllegalArgumentException("Tryb adaptacyjny wymaga wartości końcowych, a nie szkicu kwantyli.");
+        }
+        if (!(sketchCompression >= QuantileSketch.MIN_COMPRESSION && sketchCompression <= QuantileSketch.MAX_COMPRESSION)) {
+            throw new IllegalArgumentException(String.format("Kompresja szkicu musi należeć do [%.0f, %.0f].",
+                    QuantileSketch.MIN_COMPRESSION, QuantileSketch.MAX_COMPRESSION));
+        }
+    }
+
+    public static SimulationOptions defaults() {
+        return new SimulationOptions(10_000, PathStorage.FULL_PATHS, RandomSource.unseeded(), VarianceReduction.NONE, null,
+                QuantileSketch.DEFAULT_COMPRESSION, false);
+    }
+
+    public SimulationOptions withNumSimulations(int numSimulations) {
+        return new SimulationOptions(numSimulations, storage, random, reduction, convergence, sketchCompression, horizonProfile);
+    }
+
+    public SimulationOptions withStorage(PathStorage storage) {
+        return new SimulationOptions(numSimulations, storage, random, reduction, convergence, sketchCompression, horizonProfile);
+    }
+
+    public SimulationOptions withRandom(RandomSource random) {
+        return new SimulationOptions(numSimulations, storage, random, reduction, convergence, sketchCompression, horizonProfile);
+    }
+
+    public SimulationOptions withReduction(VarianceReduction reduction) {
+        return new SimulationOptions(numSimulations, storage, random, reduction, convergence, sketchCompression, horizonProfile);
+    }
+
+    /** Włącza tryb adaptacyjny (wymusza przechowywanie samych wartości końcowych). */
+    public SimulationOptions withConvergence(double tolerance, Duration timeBudget) {
+        return new SimulationOptions(numSimulations, PathStorage.FINAL_VALUES, random, reduction,
+                new Convergence(tolerance, timeBudget), sketchCompression, horizonProfile);
+    }
+
+    /** Przełącza na tryb szkicu kwantyli o kompresji {@code compression}. */
+    public SimulationOptions withSketch(double compression) {
+        return new SimulationOptions(numSimulations, PathStorage.SKETCH, random, reduction, convergence, compression, horizonProfile);
+    }
+
+    /** Zapisuje rozkład wartości z każdego dnia do {@link SimulationResult#horizons()}. */
+    public SimulationOptions withHorizonProfile() {
+        return new SimulationOptions(numSimulations, storage, random, reduction, convergence, sketchCompression, true);
+    }
+
+    public SimulationOptions withSeed(long seed) {
+        return withRandom(RandomSource.seeded(seed));
+    }
+}
@@ -1,17 +1,28 @@
-import java.util.List;
-
 /**
  * Niemodyfikowalny kontener (DTO) przechowujący wyniki symulacji.
+ * Ścieżki i wartości końcowe trzymane są w prymitywnych tablicach (bez boxingu).
+ * {@code samplePaths} to wszystkie ścieżki w trybie {@link SimulationOptions.PathStorage#FULL_PATHS}
+ * (w pozostałych trybach null), a {@code summary} zawiera VaR/CVaR dla standardowych poziomów
+ * ufności (liczone poza wątkiem UI).
+ * {@code bands} to percentyle wartości portfela dla każdego dnia, zbierane w trakcie symulacji
+ * ze wszystkich ścieżek (wykres wachlarzowy).
+ * W trybie {@link SimulationOptions.PathStorage#SKETCH} {@code finalValues} jest puste, a rozkład
+ * opisuje scalalny szkic {@code distribution} (w pozostałych trybach null).
+ * {@code horizons} to rozkłady wartości z każdego dnia horyzontu (null, gdy nie zażądano ich
+ * przez {@link SimulationOptions#withHorizonProfile}).
  */
 public record SimulationResult(
-        List<List<Double>> samplePaths,
-        List<Double> finalValues,
+        PathStore samplePaths,
+        double[] finalValues,
+        PrecisionReport precision,
+        RiskSummary summary,
+        PercentileBands bands,
+        QuantileSketch distribution,
+        HorizonProfile horizons,
         String infoLog
 ) {
+    /** Średnia wartość końcowa z podsumowania - dokładna także w trybie szkicu, gdy {@code finalValues} jest puste. */
     public double getMeanFinalValue() {
-        return finalValues.stream()
-                .mapToDouble(Double::doubleValue)
-                .average()
-                .orElse(0.0);
+        return summary.mean();
     }
-}
\ No newline at end of file
+}
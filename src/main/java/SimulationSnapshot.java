@@ -0,0 +1,16 @@
+/**
+ * Wynik pośredni symulacji po {@code paths} z {@code totalPaths} ścieżek: bieżące estymaty
+ * średniej, VaR i CVaR (95%) oraz pasma percentyli. Wartości zmieniają się, aż do wyniku końcowego.
+ */
+public record SimulationSnapshot(
+        int paths,
+        int totalPaths,
+        double mean,
+        double var,
+        double cvar,
+        PercentileBands bands
+) {
+    public double fraction() {
+        return totalPaths == 0 ? 0.0 : (double) paths / totalPaths;
+    }
+}
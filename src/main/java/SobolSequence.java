@@ -0,0 +1,118 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Ciąg Sobola (kod Graya) z liczbami kierunkowymi Joe-Kuo dołączonymi do commons-math3.
+ * W przeciwieństwie do {@code SobolSequenceGenerator} tablica kierunków wczytywana jest
+ * raz na cały proces, a kursory są tanie - każdy blok ścieżek dostaje własny.
+ */
+final class SobolSequence {
+
+    static final int MAX_DIMENSION = 1000;
+
+    private static final int BITS = 52;
+    private static final double SCALE = Math.pow(2, BITS);
+    private static final String RESOURCE = "/assets/org/apache/commons/math3/random/new-joe-kuo-6.1000";
+
+    private static volatile long[][] directions;
+
+    private SobolSequence() {
+    }
+
+    /** Kursor po ciągu; nie jest bezpieczny wątkowo. */
+    static final class Cursor {
+        private final int dimension;
+        private final long[][] direction;
+        private final long[] x;
+        private int next = -1;
+
+        Cursor(int dimension) {
+            if (dimension < 1 || dimension > MAX_DIMENSION) {
+                throw new IllegalArgumentException("Wymiar ciągu Sobola poza zakresem: " + dimension);
+            }
+            this.dimension = dimension;
+            this.direction = directions();
+            this.x = new long[dimension];
+        }
+
+        /** Zapisuje punkt o numerze {@code index} do {@code out}; kolejne numery liczone są przyrostowo. */
+        void point(int index, double[] out) {
+            if (index != next) {
+                skipTo(index);
+            } else if (index > 0) {
+                int c = Integer.numberOfTrailingZeros(~(index - 1)) + 1;
+                for (int j = 0; j < dimension; j++) {
+                    x[j] ^= direction[j][c];
+                }
+            }
+            for (int j = 0; j < dimension; j++) {
+                out[j] = x[j] / SCALE;
+            }
+            next = index + 1;
+        }
+
+        private void skipTo(int index) {
+            long gray = index ^ (index >> 1);
+            for (int j = 0; j < dimension; j++) {
+                long value = 0;
+                for (int k = 1; k <= BITS && (gray >> (k - 1)) != 0; k++) {
+                    if (((gray >> (k - 1)) & 1) != 0) value ^= direction[j][k];
+                }
+                x[j] = value;
+            }
+        }
+    }
+
+    private static long[][] directions() {
+        long[][] local = directions;
+        if (local == null) {
+            synchronized (SobolSequence.class) {
+                local = directions;
+                if (local == null) {
+                    local = loadDirections();
+                    directions = local;
+                }
+            }
+        }
+        return local;
+    }
+
+    private static long[][] loadDirections() {
+        long[][] direction = new long[MAX_DIMENSION][BITS + 1];
+        for (int i = 1; i <= BITS; i++) {
+            direction[0][i] = 1L << (BITS - i);
+        }
+
+        try (InputStream in = SobolSequence.class.getResourceAsStream(RESOURCE)) {
+            if (in == null) throw new IllegalStateException("Brak pliku liczb kierunkowych Sobola: " + RESOURCE);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII));
+            reader.readLine(); // nagłówek
+
+            String line;
+            int d = 1;
+            while ((line = reader.readLine()) != null && d < MAX_DIMENSION) {
+                String[] parts = line.trim().split("\\s+");
+                int s = Integer.parseInt(parts[1]);
+                int a = Integer.parseInt(parts[2]);
+                long[] v = direction[d++];
+
+                for (int i = 1; i <= s; i++) {
+                    v[i] = Long.parseLong(parts[2 + i]) << (BITS - i);
+                }
+                for (int i = s + 1; i <= BITS; i++) {
+                    v[i] = v[i - s] ^ (v[i - s] >> s);
+                    for (int k = 1; k <= s - 1; k++) {
+                        v[i] ^= ((a >> (s - 1 - k)) & 1) * v[i - k];
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Nie udało się wczytać liczb kierunkowych Sobola", e);
+        }
+        return direction;
+    }
+}
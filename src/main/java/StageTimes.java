@@ -0,0 +1,41 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/** Czasy etapów jednego przebiegu symulacji, dopisywane na końcu raportu ({@code infoLog}). */
+final class StageTimes {
+
+    private record Stage(String label, double millis, String detail) {
+    }
+
+    private final List<Stage> stages = new ArrayList<>();
+
+    void add(String label, double millis) {
+        add(label, millis, null);
+    }
+
+    void add(String label, double millis, String detail) {
+        stages.add(new Stage(label, millis, detail));
+    }
+
+    /** Etap z przepustowością w szczegółach, np. „1 234 567 ścieżek/s”. */
+    void addThroughput(String label, double millis, long units, String unit) {
+        add(label, millis, millis > 0 ? String.format("%,.0f %s/s", units / (millis / 1e3), unit) : null);
+    }
+
+    static double millisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1e6;
+    }
+
+    String report() {
+        StringBuilder sb = new StringBuilder("\n=== CZASY ETAPÓW ===\n");
+        double total = 0;
+        for (Stage s : stages) {
+            sb.append(String.format("%-14s %8.1f ms", s.label() + ":", s.millis()));
+            if (s.detail() != null) sb.append(" (").append(s.detail()).append(")");
+            sb.append("\n");
+            total += s.millis();
+        }
+        sb.append(String.format("%-14s %8.1f ms\n", "Razem:", total));
+        return sb.toString();
+    }
+}
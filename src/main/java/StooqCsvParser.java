@@ -0,0 +1,206 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Parser plików CSV z serwisu Stooq (Data,Otwarcie,Najwyzszy,Najnizszy,Zamkniecie,Wolumen).
+ * Czyta bajty strumienia wprost do prymitywnych kolumn dat i cen zamknięcia, licząc stopy
+ * zwrotu w tym samym przebiegu; wiersze bez poprawnej daty lub ceny (np. nagłówek) są pomijane.
+ *
+ * Instancja przechowuje bufory między wywołaniami {@link #read(InputStream)}, więc wielokrotne
+ * parsowanie jednym obiektem nie generuje śmieci poza kopiami zwracanymi przez
+ * {@link #toSeries()} i {@link #toReturns()}. Obiekt nie jest bezpieczny wątkowo.
+ */
+public final class StooqCsvParser {
+
+    private static final int CLOSE_COLUMN = 4;
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private byte[] buf = new byte[1 << 16];
+    private int[] dates = new int[1024];
+    private double[] closes = new double[1024];
+    private double[] returns = new double[1024];
+    private int size;
+
+    /** Wczytuje cały strumień, zastępując wynik poprzedniego wywołania. */
+    public StooqCsvParser read(InputStream in) throws IOException {
+        size = 0;
+        int start = 0;
+        int end = 0;
+        int scanned = 0; // w bajtach [start, scanned) nie ma końca wiersza - po doczytaniu szukamy dalej
+        boolean eof = false;
+
+        while (true) {
+            int nl = scanned;
+            while (nl < end && buf[nl] != '\n') nl++;
+
+            if (nl < end) {
+                parseLine(start, nl);
+                start = nl + 1;
+                scanned = start;
+            } else if (eof) {
+                if (start < end) parseLine(start, end);
+                return this;
+            } else {
+                // przesuwamy niedokończony wiersz na początek bufora i doczytujemy dalej
+                scanned = end;
+                if (start > 0) {
+                    System.arraycopy(buf, start, buf, 0, end - start);
+                    end -= start;
+                    scanned -= start;
+                    start = 0;
+                }
+                if (end == buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+                int r = in.read(buf, end, buf.length - end);
+                if (r < 0) eof = true;
+                else end += r;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Kopia wczytanych dat i cen zamknięcia. */
+    public PriceSeries toSeries() {
+        return new PriceSeries(Arrays.copyOf(dates, size), Arrays.copyOf(closes, size));
+    }
+
+    /** Kopia stóp zwrotu policzonych podczas wczytywania (o jeden wiersz krótsza niż ceny). */
+    public ReturnSeries toReturns() {
+        if (size < 2) return ReturnSeries.empty();
+        return new ReturnSeries(Arrays.copyOfRange(dates, 1, size), Arrays.copyOfRange(returns, 1, size));
+    }
+
+    public static PriceSeries parse(InputStream in) throws IOException {
+        return new StooqCsvParser().read(in).toSeries();
+    }
+
+    private void parseLine(int from, int to) {
+        if (to > from && buf[to - 1] == '\r') to--;
+
+        int date = parseDate(from, to);
+        if (date == Integer.MIN_VALUE) return;
+
+        int field = 0;
+        int closeFrom = -1;
+        int closeTo = to;
+        for (int i = from; i < to; i++) {
+            if (buf[i] != ',') continue;
+            field++;
+            if (field == CLOSE_COLUMN) {
+                closeFrom = i + 1;
+            } else if (field == CLOSE_COLUMN + 1) {
+                closeTo = i;
+                break;
+            }
+        }
+        if (closeFrom < 0) return;
+
+        double close = parseDouble(closeFrom, closeTo);
+        if (Double.isNaN(close)) return;
+
+        if (size == dates.length) {
+            dates = Arrays.copyOf(dates, size * 2);
+            closes = Arrays.copyOf(closes, size * 2);
+            returns = Arrays.copyOf(returns, size * 2);
+        }
+        dates[size] = date;
+        closes[size] = close;
+        returns[size] = size == 0 ? Double.NaN : (close - closes[size - 1]) / closes[size - 1];
+        size++;
+    }
+
+    /** Data w formacie RRRR-MM-DD jako dni od epoki albo {@code Integer.MIN_VALUE}. */
+    private int parseDate(int from, int to) {
+        if (to - from < 10 || buf[from + 4] != '-' || buf[from + 7] != '-') return Integer.MIN_VALUE;
+        if (to - from > 10 && buf[from + 10] != ',') return Integer.MIN_VALUE;
+        int year = digits(from, 4);
+        int month = digits(from + 5, 2);
+        int day = digits(from + 8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+            return Integer.MIN_VALUE;
+        }
+        return epochDay(year, month, day);
+    }
+
+    private int digits(int from, int count) {
+        int v = 0;
+        for (int i = from; i < from + count; i++) {
+            int d = buf[i] - '0';
+            if (d < 0 || d > 9) return -1;
+            v = v * 10 + d;
+        }
+        return v;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2) {
+            boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+            return leap ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    /** Dni od 1970-01-01 w kalendarzu gregoriańskim (jak {@code LocalDate.toEpochDay()}). */
+    private static int epochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yoe = y - era * 400;
+        int mp = (month + 9) % 12;
+        int doy = (153 * mp + 2) / 5 + day - 1;
+        int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    /**
+     * Liczba dziesiętna bez wykładnika: mantysa i skala są dokładne w {@code double}, więc
+     * jedno dzielenie daje wynik poprawnie zaokrąglony, identyczny z {@link Double#parseDouble}.
+     * Pozostałe zapisy (wykładnik, bardzo długie mantysy) trafiają do parsera z JDK.
+     */
+    private double parseDouble(int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (buf[i] == '-' || buf[i] == '+')) {
+            negative = buf[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int scale = 0;
+        int digitCount = 0;
+        boolean dot = false;
+        for (; i < to; i++) {
+            byte b = buf[i];
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digitCount++;
+                if (dot) scale++;
+                if (mantissa >= MAX_EXACT_MANTISSA) return parseSlow(from, to);
+            } else if (b == '.' && !dot) {
+                dot = true;
+            } else {
+                return parseSlow(from, to);
+            }
+        }
+        if (digitCount == 0) return Double.NaN;
+        if (scale >= POW10.length) return parseSlow(from, to);
+
+        double v = scale == 0 ? mantissa : mantissa / POW10[scale];
+        return negative ? -v : v;
+    }
+
+    private double parseSlow(int from, int to) {
+        try {
+            return Double.parseDouble(new String(buf, from, to - from, StandardCharsets.US_ASCII).trim());
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Zdarzenia JFR etapów symulacji. Każde zdarzenie rozpoczyna się w {@code start()}, a jego
+ * {@code finish(...)} zatwierdza zdarzenie (gdy nagrywanie JFR jest włączone, np.
+ * {@code -XX:StartFlightRecording}) i zawsze zapisuje czas oraz liczniki w {@link Metrics#global()}.
+ *
+ * Nazwy metryk: {@code data.fetch.*}, {@code data.proxy.*}, {@code calibration.*},
+ * {@code simulation.*}, {@code risk.*}, {@code ui.render.*}; czasy w milisekundach.
+ */
+final class Telemetry {
+
+    private Telemetry() {
+    }
+
+    private static double millisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1e6;
+    }
+
+    @Name("riskfolio.DataFetch")
+    @Label("Pobranie notowań")
+    @Category({"RiskFolio", "Dane"})
+    @Description("Notowania jednego instrumentu; źródło: memory, disk, network, disk-fallback, offline, error")
+    static final class DataFetch extends Event {
+        @Label("Ticker")
+        String ticker;
+        @Label("Źródło")
+        String source;
+        @Label("Sesje")
+        int sessions;
+
+        private transient long startNanos;
+
+        static DataFetch start(String ticker) {
+            DataFetch e = new DataFetch();
+            e.ticker = ticker;
+            e.startNanos = System.nanoTime();
+            e.begin();
+            return e;
+        }
+
+        void finish(String source, int sessions) {
+            end();
+            this.source = source;
+            this.sessions = sessions;
+            commit();
+            Metrics.global().increment("data.fetch." + source);
+            Metrics.global().record("data.fetch.ms", millisSince(startNanos));
+        }
+    }
+
+    @Name("riskfolio.ProxyPatch")
+    @Label("Uzupełnienie indeksem zastępczym")
+    @Category({"RiskFolio", "Dane"})
+    static final class ProxyPatch extends Event {
+        @Label("Ticker")
+        String ticker;
+        @Label("Indeks")
+        String proxy;
+        @Label("Uzupełnione dni")
+        int patchedDays;
+
+        private transient long startNanos;
+
+        static ProxyPatch start() {
+            ProxyPatch e = new ProxyPatch();
+            e.startNanos = System.nanoTime();
+            e.begin();
+            return e;
+        }
+
+        void finish(String ticker, String proxy, int patchedDays) {
+            end();
+            this.ticker = ticker;
+            this.proxy = proxy;
+            this.patchedDays = patchedDays;
+            commit();
+            Metrics.global().add("data.proxy.patchedDays", patchedDays);
+            Metrics.global().record("data.proxy.ms", millisSince(startNanos));
+        }
+    }
+
+    @Name("riskfolio.Calibration")
+    @Label("Kalibracja GARCH")
+    @Category({"RiskFolio", "Model"})
+    @Description("Estymacja GARCH(1,1) portfela lub instrumentu; źródło: cache, warm, cold")
+    static final class Calibration extends Event {
+        @Label("Model")
+        String model;
+        @Label("Źródło")
+        String source;
+        @Label("Iteracje")
+        int iterations;
+        @Label("Przebiegi po historii")
+        int evaluations;
+        @Label("Zbieżność")
+        boolean converged;
+
+        private transient long startNanos;
+
+        static Calibration start(String model) {
+            Calibration e = new Calibration();
+            e.model = model;
+            e.startNanos = System.nanoTime();
+            e.begin();
+            return e;
+        }
+
+        /** Zwraca czas kalibracji w ms. */
+        double finish(String source, GarchFit fit) {
+            end();
+            this.source = source;
+            this.iterations = fit.iterations();
+            this.evaluations = fit.evaluations();
+            this.converged = fit.converged();
+            commit();
+            double millis = millisSince(startNanos);
+            Metrics.global().increment("calibration." + source);
+            Metrics.global().record("calibration.ms", millis);
+            if (!source.equals("cache")) {
+                Metrics.global().record("calibration.iterations", iterations);
+            }
+            return millis;
+        }
+    }
+
+    @Name("riskfolio.PathGeneration")
+    @Label("Generowanie ścieżek")
+    @Category({"RiskFolio", "Symulacja"})
+    static final class PathGeneration extends Event {
+        @Label("Ścieżki")
+        int paths;
+        @Label("Horyzont")
+        int horizon;
+        @Label("Ścieżki na sekundę")
+        double pathsPerSecond;
+
+        private transient long startNanos;
+
+        static PathGeneration start() {
+            PathGeneration e = new PathGeneration();
+            e.startNanos = System.nanoTime();
+            e.begin();
+            return e;
+        }
+
+        /** Zwraca czas generowania w ms. */
+        double finish(int paths, int horizon) {
+            end();
+            double millis = millisSince(startNanos);
+            this.paths = paths;
+            this.horizon = horizon;
+            this.pathsPerSecond = millis > 0 ? paths / (millis / 1e3) : 0;
+            commit();
+            Metrics.global().add("simulation.paths", paths);
+            Metrics.global().record("simulation.ms", millis);
+            Metrics.global().record("simulation.pathsPerSecond", pathsPerSecond);
+            return millis;
+        }
+    }
+
+    @Name("riskfolio.RiskMetrics")
+    @Label("Miary ryzyka")
+    @Category({"RiskFolio", "Symulacja"})
+    @Description("Estymaty z błędami, VaR/CVaR na kilku poziomach, pasma percentyli")
+    static final class RiskMetrics extends Event {
+        @Label("Wartości")
+        int values;
+
+        private transient long startNanos;
+
+        static RiskMetrics start() {
+            RiskMetrics e = new RiskMetrics();
+            e.startNanos = System.nanoTime();
+            e.begin();
+            return e;
+        }
+
+        /** Zwraca czas obliczeń w ms. */
+        double finish(int values) {
+            end();
+            this.values = values;
+            commit();
+            double millis = millisSince(startNanos);
+            Metrics.global().record("risk.ms", millis);
+            return millis;
+        }
+    }
+
+    @Name("riskfolio.UiRender")
+    @Label("Odświeżenie widoku")
+    @Category({"RiskFolio", "Interfejs"})
+    static final class UiRender extends Event {
+        @Label("Widok")
+        String view;
+
+        private transient long startNanos;
+
+        static UiRender start(String view) {
+            UiRender e = new UiRender();
+            e.view = view;
+            e.startNanos = System.nanoTime();
+            e.begin();
+            return e;
+        }
+
+        void finish() {
+            end();
+            commit();
+            Metrics.global().record("ui.render." + view + ".ms", millisSince(startNanos));
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/**
+ * Techniki redukcji wariancji dla pętli ścieżek GARCH w {@link MonteCarloEngine}.
+ */
+public enum VarianceReduction {
+
+    /** Zwykłe niezależne ścieżki pseudolosowe. */
+    NONE("Brak"),
+
+    /** Pary ścieżek z szokami z i -z (zmienne antytetyczne). */
+    ANTITHETIC("Zmienne antytetyczne"),
+
+    /**
+     * Zmienne kontrolne o znanej analitycznie wartości oczekiwanej w modelu GARCH:
+     * wartość końcowa (E = K·(1+μ)^T) oraz suma kwadratów szoków (E = Σ E[h_t]).
+     * Estymatory liczone są na ważonym rozkładzie empirycznym.
+     */
+    CONTROL_VARIATE("Zmienne kontrolne"),
+
+    /** Losowo przesunięty ciąg Sobola z konstrukcją mostu Browna (quasi-Monte Carlo). */
+    QUASI_RANDOM("Quasi-Monte Carlo (Sobol)");
+
+    private final String label;
+
+    VarianceReduction(String label) {
+        this.label = label;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,34 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link PathKernel} na Vector API ({@code jdk.incubator.vector}): {@code SPECIES_PREFERRED},
+ * czyli 4 ścieżki na instrukcję przy AVX2 i 8 przy AVX-512. Ładowane wyłącznie przez
+ * {@link PathKernel#vector()}, gdy moduł jest dostępny.
+ */
+final class VectorPathKernel extends PathKernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    int lanes() {
+        return SPECIES.length();
+    }
+
+    @Override
+    String description() {
+        return "wektorowe (" + SPECIES.vectorBitSize() + " bit, " + SPECIES.length() + " × double)";
+    }
+
+    @Override
+    void step(double[] z, int offset, double[] price, double[] variance, double[] sumSquares,
+              double onePlusDrift, double omega, double alpha, double beta) {
+        for (int p = 0; p < WIDTH; p += SPECIES.length()) {
+            DoubleVector h = DoubleVector.fromArray(SPECIES, variance, p);
+            DoubleVector shock = h.sqrt().mul(DoubleVector.fromArray(SPECIES, z, offset + p));
+            DoubleVector.fromArray(SPECIES, price, p).mul(shock.add(onePlusDrift)).intoArray(price, p);
+            DoubleVector squared = shock.mul(shock);
+            DoubleVector.fromArray(SPECIES, sumSquares, p).add(squared).intoArray(sumSquares, p);
+            shock.mul(alpha).mul(shock).add(omega).add(h.mul(beta)).intoArray(variance, p);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+import org.apache.commons.math3.linear.CholeskyDecomposition;
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CholeskyTest {
+
+    /** Rozmiary wokół granic bloków (32), w tym macierze mniejsze od bloku i kilka bloków z resztą. */
+    @Test
+    void matchesCommonsMathAcrossBlockBoundaries() {
+        Random random = new Random(17);
+        for (int n : new int[]{1, 2, 5, 31, 32, 33, 64, 65, 100}) {
+            double[] a = randomCovariance(n, random);
+            double[] l = Cholesky.decompose(a, n);
+            RealMatrix expected = new CholeskyDecomposition(MatrixUtils.createRealMatrix(square(a, n))).getL();
+
+            double scale = maxAbs(a);
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    if (j > i) {
+                        assertEquals(0.0, l[i * n + j], "n=" + n + ": element nad przekątną (" + i + "," + j + ")");
+                    } else {
+                        assertEquals(expected.getEntry(i, j), l[i * n + j], 1e-10 * Math.sqrt(scale), "n=" + n + " (" + i + "," + j + ")");
+                    }
+                }
+            }
+            // L·Lᵀ odtwarza macierz wejściową
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j <= i; j++) {
+                    double sum = 0.0;
+                    for (int k = 0; k <= j; k++) sum += l[i * n + k] * l[j * n + k];
+                    assertEquals(a[i * n + j], sum, 1e-10 * scale);
+                }
+            }
+        }
+    }
+
+    @Test
+    void correlationMatrixOfTwoAssets() {
+        double rho = 0.6;
+        double[] l = Cholesky.decompose(new double[]{1, rho, rho, 1}, 2);
+        assertEquals(1.0, l[0]);
+        assertEquals(0.0, l[1]);
+        assertEquals(rho, l[2], 1e-15);
+        assertEquals(Math.sqrt(1 - rho * rho), l[3], 1e-15);
+    }
+
+    @Test
+    void doesNotModifyInput() {
+        double[] a = randomCovariance(40, new Random(3));
+        double[] copy = a.clone();
+        Cholesky.decompose(a, 40);
+        for (int i = 0; i < a.length; i++) assertEquals(copy[i], a[i]);
+    }
+
+    @Test
+    void rejectsMatrixThatIsNotPositiveDefinite() {
+        assertThrows(IllegalArgumentException.class, () -> Cholesky.decompose(new double[]{1, 2, 2, 1}, 2));
+        // ujemna wartość własna w drugim bloku: wiersz 40 powtarza wiersz 39, ale z połową wariancji
+        int n = 48;
+        double[] a = randomCovariance(n, new Random(5));
+        for (int k = 0; k < n; k++) {
+            a[40 * n + k] = a[39 * n + k];
+            a[k * n + 40] = a[k * n + 39];
+        }
+        a[40 * n + 40] = 0.5 * a[39 * n + 39];
+        assertThrows(IllegalArgumentException.class, () -> Cholesky.decompose(a, n));
+    }
+
+    /** Macierz kowariancji B·Bᵀ/m z m > n obserwacji (dodatnio określona), wierszami. */
+    private static double[] randomCovariance(int n, Random random) {
+        int m = n + 20;
+        double[][] b = new double[n][m];
+        for (int i = 0; i < n; i++) {
+            for (int t = 0; t < m; t++) b[i][t] = random.nextGaussian() * (0.5 + i % 3);
+        }
+        double[] a = new double[n * n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                double sum = 0.0;
+                for (int t = 0; t < m; t++) sum += b[i][t] * b[j][t];
+                a[i * n + j] = sum / m;
+            }
+        }
+        return a;
+    }
+
+    private static double[][] square(double[] a, int n) {
+        double[][] out = new double[n][n];
+        for (int i = 0; i < n; i++) System.arraycopy(a, i * n, out[i], 0, n);
+        return out;
+    }
+
+    private static double maxAbs(double[] a) {
+        double max = 0.0;
+        for (double v : a) max = Math.max(max, Math.abs(v));
+        return max;
+    }
+}
@@ -0,0 +1,111 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Pobieranie przez lokalną zaślepkę HTTP: łączenie żądań, limit połączeń do hosta i ponawianie. */
+class DataServiceTest {
+
+    private static final String CSV = TestFixtures.csv(0);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void concurrentRequestsForOneTickerShareOneDownload() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try (StooqStub stub = new StooqStub((ticker, query, attempt) -> {
+            release.await(10, TimeUnit.SECONDS);
+            return StooqStub.Response.ok(CSV);
+        })) {
+            DataService service = service(stub);
+            List<CompletableFuture<PriceSeries>> futures = new ArrayList<>();
+            for (String ticker : new String[]{"AAA", "aaa", " Aaa ", "AAA", "AAA", "aaa", "AAA", "AAA"}) {
+                futures.add(service.getPricesAsync(ticker));
+            }
+            release.countDown();
+            PriceSeries first = futures.getFirst().get(10, TimeUnit.SECONDS);
+            for (CompletableFuture<PriceSeries> f : futures) assertSame(first, f.get(10, TimeUnit.SECONDS));
+            assertEquals(1, stub.requestsFor("aaa"));
+            assertEquals(StooqCsvParser.parse(new ByteArrayInputStream(CSV.getBytes(StandardCharsets.US_ASCII))).size(), first.size());
+        }
+    }
+
+    @Test
+    void connectionsToOneHostAreLimited() throws Exception {
+        try (StooqStub stub = new StooqStub((ticker, query, attempt) -> {
+            Thread.sleep(150);
+            return StooqStub.Response.ok(CSV);
+        })) {
+            DataService service = service(stub);
+            List<String> tickers = new ArrayList<>();
+            for (int i = 0; i < 12; i++) tickers.add("T" + i);
+            List<ReturnSeries> returns = service.getReturnSeries(tickers, 5);
+            assertEquals(12, returns.size());
+            assertEquals(12, stub.requests().size());
+            assertTrue(stub.maxActive() <= 4, "naraz " + stub.maxActive() + " połączeń");
+            assertTrue(stub.maxActive() >= 2, "pobrania nie szły równolegle");
+        }
+    }
+
+    @Test
+    void transientErrorsAreRetriedWithBackoff() throws Exception {
+        try (StooqStub stub = new StooqStub((ticker, query, attempt) -> switch (attempt) {
+            case 1 -> new StooqStub.Response(503, "");
+            case 2 -> new StooqStub.Response(429, "");
+            default -> StooqStub.Response.ok(CSV);
+        })) {
+            long start = System.nanoTime();
+            PriceSeries series = service(stub).getPrices("AAA");
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue(series.size() > 1000);
+            assertEquals(3, stub.requestsFor("aaa"));
+            assertTrue(millis >= 250 + 500, "odstępy między próbami: " + millis + " ms");
+        }
+    }
+
+    @Test
+    void persistentServerErrorFailsAfterThreeAttempts() throws Exception {
+        try (StooqStub stub = new StooqStub((ticker, query, attempt) -> new StooqStub.Response(500, ""))) {
+            Exception e = assertThrows(Exception.class, () -> service(stub).getPrices("AAA"));
+            assertTrue(e.getMessage().contains("500"), e.getMessage());
+            assertEquals(3, stub.requestsFor("aaa"));
+        }
+    }
+
+    @Test
+    void clientErrorIsNotRetried() throws Exception {
+        try (StooqStub stub = new StooqStub((ticker, query, attempt) -> new StooqStub.Response(404, ""))) {
+            Exception e = assertThrows(Exception.class, () -> service(stub).getPrices("NOPE"));
+            assertTrue(e.getMessage().contains("404"), e.getMessage());
+            assertEquals(1, stub.requestsFor("nope"));
+        }
+    }
+
+    @Test
+    void failedDownloadIsNotCoalescedWithTheNextRequest() throws Exception {
+        try (StooqStub stub = new StooqStub((ticker, query, attempt) ->
+                attempt == 1 ? new StooqStub.Response(404, "") : StooqStub.Response.ok(CSV))) {
+            DataService service = service(stub);
+            assertThrows(Exception.class, () -> service.getPrices("AAA"));
+            assertTrue(service.getPrices("AAA").size() > 1000);
+            assertEquals(2, stub.requestsFor("aaa"));
+        }
+    }
+
+    private DataService service(StooqStub stub) {
+        return new DataService(new PriceStore(directory), false, stub.baseUrl());
+    }
+}
@@ -0,0 +1,175 @@
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Profil horyzontów porównany z osobnymi symulacjami krótszych horyzontów z tym samym ziarnem:
+ * krótsza ścieżka to początek dłuższej, więc w każdym dniu wyniki muszą się zgadzać - dokładnie
+ * (z dokładnością zapisu float), gdy profil trzyma wartości ścieżek, a w granicach szerokości
+ * przedziału, gdy pochodzi z histogramów dziennych.
+ */
+class HorizonProfileTest {
+
+    private static final double CAPITAL = 100_000;
+    private static final int HORIZON = 126;
+    private static final int[] DAYS = {1, 17, 63, 100, HORIZON};
+    private static final List<Double> WEIGHTS = List.of(0.4, 0.6);
+
+    private static MonteCarloEngine engine;
+
+    @BeforeAll
+    static void createEngine() throws Exception {
+        engine = new MonteCarloEngine(TestFixtures.offlineDataService());
+    }
+
+    /** Przy quasi-Monte Carlo most Browna obejmuje cały horyzont, więc krótszy przebieg nie jest początkiem dłuższego. */
+    @ParameterizedTest
+    @EnumSource(value = VarianceReduction.class, names = {"NONE", "ANTITHETIC"})
+    void everyDayMatchesSeparateRuns(VarianceReduction reduction) throws Exception {
+        HorizonProfile profile = run(HORIZON, options(reduction).withHorizonProfile()).horizons();
+        assertTrue(profile.exact());
+        for (int horizon : DAYS) {
+            HorizonProfile.Estimate estimate = profile.estimate(CAPITAL, horizon);
+            SimulationResult direct = run(horizon, options(reduction));
+            assertTrue(estimate.exact());
+            assertSameSummary(direct.summary(), estimate.summary(), 1e-6);
+            assertEquals(direct.precision().var(), estimate.precision().var(), 1e-6 * CAPITAL);
+            assertEquals(direct.precision().varStdError(), estimate.precision().varStdError(), 1e-3 * direct.precision().varStdError());
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(VarianceReduction.class)
+    void fullHorizonMatchesTheRunItself(VarianceReduction reduction) throws Exception {
+        SimulationResult result = run(HORIZON, options(reduction).withHorizonProfile());
+        HorizonProfile profile = result.horizons();
+        assertEquals(HORIZON, profile.maxHorizon());
+        assertEquals(result.finalValues().length, profile.paths());
+        assertSameSummary(result.summary(), profile.estimate(CAPITAL, HORIZON).summary(), 1e-6);
+    }
+
+    /**
+     * Zmienna kontrolna profilu to wartość portfela w danym dniu: ważona średnia równa jest więc
+     * wartości oczekiwanej, a VaR i CVaR zgadzają się z estymatami bez wag w granicach błędu.
+     */
+    @Test
+    void controlVariateProfileWeighsByTheDayValue() throws Exception {
+        HorizonProfile plain = run(HORIZON, options(VarianceReduction.NONE).withHorizonProfile()).horizons();
+        HorizonProfile weighted = run(HORIZON, options(VarianceReduction.CONTROL_VARIATE).withHorizonProfile()).horizons();
+        for (int horizon : DAYS) {
+            PrecisionReport p = plain.estimate(CAPITAL, horizon).precision();
+            HorizonProfile.Estimate e = weighted.estimate(CAPITAL, horizon);
+            assertEquals(p.mean(), e.precision().mean(), 4 * p.meanStdError(), "średnia, h=" + horizon);
+            assertEquals(0.0, e.precision().meanStdError(), 1e-6 * CAPITAL, "średnia z wagami jest wartością oczekiwaną");
+            assertEquals(p.var(), e.precision().var(), 4 * p.varStdError(), "VaR, h=" + horizon);
+            assertEquals(p.cvar(), e.precision().cvar(), 4 * p.cvarStdError(), "CVaR, h=" + horizon);
+        }
+    }
+
+    /** Profil, który nie mieści się w pamięci (limit ścieżek trybu adaptacyjnego), pochodzi z histogramów pasm. */
+    @ParameterizedTest
+    @EnumSource(value = VarianceReduction.class, names = {"NONE", "CONTROL_VARIATE"})
+    void histogramProfileAgreesWithPathValues(VarianceReduction reduction) throws Exception {
+        int limit = HorizonProfile.Recorder.MAX_VALUES / HORIZON + 1;
+        SimulationOptions adaptive = options(reduction)
+                .withNumSimulations(limit)
+                .withConvergence(0.01, Duration.ofMinutes(5))
+                .withHorizonProfile();
+        HorizonProfile binned = run(HORIZON, adaptive).horizons();
+        assertFalse(binned.exact());
+        assertTrue(binned.paths() < limit, "tryb adaptacyjny miał zatrzymać się wcześniej");
+
+        HorizonProfile exact = run(HORIZON, options(reduction)
+                .withNumSimulations(binned.paths()).withHorizonProfile()).horizons();
+        assertTrue(exact.exact());
+        for (int horizon : DAYS) {
+            HorizonProfile.Estimate e = exact.estimate(CAPITAL, horizon);
+            HorizonProfile.Estimate b = binned.estimate(CAPITAL, horizon);
+            assertFalse(b.exact());
+            assertEquals(e.summary().count(), b.summary().count());
+            assertEquals(e.summary().min(), b.summary().min(), 1e-6 * CAPITAL);
+            assertEquals(e.summary().max(), b.summary().max(), 1e-6 * CAPITAL);
+            assertSameSummary(e.summary(), b.summary(), 1e-3);
+            assertEquals(e.precision().mean(), b.precision().mean(), 1e-4 * CAPITAL, "średnia, h=" + horizon);
+            assertEquals(e.precision().var(), b.precision().var(), 1e-3 * CAPITAL, "VaR, h=" + horizon);
+            assertEquals(e.precision().cvar(), b.precision().cvar(), 1e-3 * CAPITAL, "CVaR, h=" + horizon);
+            assertTrue(Double.isNaN(b.precision().varStdError()));
+        }
+    }
+
+    @Test
+    void estimateIsLinearInCapitalAndRepeatable() throws Exception {
+        HorizonProfile profile = run(HORIZON, options(VarianceReduction.NONE).withHorizonProfile()).horizons();
+        HorizonProfile.Estimate base = profile.estimate(CAPITAL, 100);
+        HorizonProfile.Estimate scaled = profile.estimate(2.5 * CAPITAL, 100);
+        assertEquals(2.5 * base.summary().mean(), scaled.summary().mean(), 1e-9 * CAPITAL);
+        for (int j = 0; j < base.summary().var().length; j++) {
+            assertEquals(2.5 * base.summary().var()[j], scaled.summary().var()[j], 1e-9 * CAPITAL);
+            assertEquals(2.5 * base.summary().cvar()[j], scaled.summary().cvar()[j], 1e-9 * CAPITAL);
+        }
+        assertSameSummary(base.summary(), profile.estimate(CAPITAL, 100).summary(), 0.0);
+    }
+
+    @Test
+    void rejectsHorizonOutsideProfile() throws Exception {
+        HorizonProfile profile = run(HORIZON, options(VarianceReduction.NONE).withHorizonProfile()).horizons();
+        assertThrows(IllegalArgumentException.class, () -> profile.estimate(CAPITAL, 0));
+        assertThrows(IllegalArgumentException.class, () -> profile.estimate(CAPITAL, HORIZON + 1));
+    }
+
+    /**
+     * Scenariusze, których dzienny wzrost nie mieści się w pamięci, odtwarzają pasma i profil ponowną
+     * symulacją - z tymi samymi licznościami histogramów co zwykła symulacja o tych wagach.
+     */
+    @Test
+    void scenariosReplayMatchesDirectSimulation() throws Exception {
+        CorrelatedMonteCarloEngine correlated = new CorrelatedMonteCarloEngine(TestFixtures.offlineDataService());
+        CorrelatedModel model = correlated.calibrate(TestFixtures.TICKERS, 5, false);
+        int paths = HorizonProfile.Recorder.MAX_VALUES / (HORIZON * TestFixtures.TICKERS.size()) + 1;
+        SimulationOptions options = options(VarianceReduction.NONE).withNumSimulations(paths).withHorizonProfile();
+
+        SimulationResult replayed = correlated.scenarios(model, HORIZON, options).evaluate(CAPITAL, WEIGHTS).portfolio();
+        SimulationResult direct = correlated.simulate(model, CAPITAL, HORIZON, WEIGHTS, options).portfolio();
+        assertFalse(replayed.horizons().exact());
+        for (int horizon : DAYS) {
+            assertSameSummary(direct.horizons().estimate(CAPITAL, horizon).summary(),
+                    replayed.horizons().estimate(CAPITAL, horizon).summary(), 0.0);
+        }
+        for (int d = 0; d <= HORIZON; d++) {
+            assertEquals(direct.bands().value(0, d), replayed.bands().value(0, d), 0.0);
+        }
+    }
+
+    private static SimulationOptions options(VarianceReduction reduction) {
+        return SimulationOptions.defaults()
+                .withNumSimulations(10_007)
+                .withSeed(11)
+                .withStorage(SimulationOptions.PathStorage.FINAL_VALUES)
+                .withReduction(reduction);
+    }
+
+    private static SimulationResult run(int horizon, SimulationOptions options) throws Exception {
+        return engine.runSimulation(CAPITAL, horizon, TestFixtures.TICKERS, WEIGHTS, 5, false, options);
+    }
+
+    private static void assertSameSummary(RiskSummary expected, RiskSummary actual, double relativeTolerance) {
+        double tolerance = relativeTolerance * CAPITAL;
+        assertEquals(expected.count(), actual.count());
+        assertEquals(expected.mean(), actual.mean(), tolerance);
+        assertEquals(expected.min(), actual.min(), tolerance);
+        assertEquals(expected.max(), actual.max(), tolerance);
+        for (int j = 0; j < expected.var().length; j++) {
+            assertEquals(expected.var()[j], actual.var()[j], tolerance, "VaR " + expected.confidences()[j]);
+            assertEquals(expected.cvar()[j], actual.cvar()[j], tolerance, "CVaR " + expected.confidences()[j]);
+        }
+    }
+}
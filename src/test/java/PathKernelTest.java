@@ -0,0 +1,106 @@
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Jądro wektorowe i skalarne muszą dawać wyniki identyczne bit w bit. */
+class PathKernelTest {
+
+    private static PathKernel vector;
+
+    @BeforeAll
+    static void requireVectorKernel() {
+        // surefire uruchamia testy z --add-modules jdk.incubator.vector (pom.xml)
+        vector = PathKernel.vector().orElse(null);
+        assertTrue(vector != null, "Vector API niedostępne - sprawdź argLine surefire");
+    }
+
+    @Test
+    void stepIsBitIdenticalToScalar() {
+        Random random = new Random(5);
+        int w = PathKernel.WIDTH;
+        int days = 500;
+        double[] z = new double[days * w];
+        for (int i = 0; i < z.length; i++) {
+            z[i] = switch (i % 7) {
+                case 0 -> 0.0;
+                case 1 -> -0.0;
+                case 2 -> 8 * random.nextGaussian(); // skrajne szoki
+                default -> random.nextGaussian();
+            };
+        }
+        double[][] scalarState = initialState(random, w);
+        double[][] vectorState = copy(scalarState);
+        for (int d = 0; d < days; d++) {
+            PathKernel.scalar().step(z, d * w, scalarState[0], scalarState[1], scalarState[2], 1.0003, 2e-6, 0.09, 0.9);
+            vector.step(z, d * w, vectorState[0], vectorState[1], vectorState[2], 1.0003, 2e-6, 0.09, 0.9);
+            for (int s = 0; s < 3; s++) {
+                assertArrayEquals(bits(scalarState[s]), bits(vectorState[s]), "dzień " + d + ", tablica " + s);
+            }
+        }
+    }
+
+    @Test
+    void stepHandlesDegenerateParameters() {
+        int w = PathKernel.WIDTH;
+        double[] z = new double[w];
+        for (int p = 0; p < w; p++) z[p] = p - w / 2.0;
+        double[][] params = {{1.0, 0.0, 0.0, 0.0}, {0.0, 1e-300, 1.0, 0.0}, {1e10, 1e-8, 0.5, 0.49}, {1 - 1e-16, 4e-320, 0.05, 0.95}};
+        for (double[] g : params) {
+            double[][] scalarState = initialState(new Random(9), w);
+            double[][] vectorState = copy(scalarState);
+            for (int d = 0; d < 20; d++) {
+                PathKernel.scalar().step(z, 0, scalarState[0], scalarState[1], scalarState[2], g[0], g[1], g[2], g[3]);
+                vector.step(z, 0, vectorState[0], vectorState[1], vectorState[2], g[0], g[1], g[2], g[3]);
+            }
+            for (int s = 0; s < 3; s++) assertArrayEquals(bits(scalarState[s]), bits(vectorState[s]));
+        }
+    }
+
+    /** Cała symulacja z każdym jądrem: te same wartości końcowe i raport precyzji. */
+    @ParameterizedTest
+    @EnumSource(VarianceReduction.class)
+    void simulationIsIdenticalWithScalarFallback(VarianceReduction reduction) throws Exception {
+        DataService data = TestFixtures.offlineDataService();
+        SimulationOptions options = SimulationOptions.defaults()
+                .withNumSimulations(2_003)
+                .withSeed(21)
+                .withStorage(SimulationOptions.PathStorage.FINAL_VALUES)
+                .withReduction(reduction);
+        SimulationResult scalar = new MonteCarloEngine(data, PathKernel.scalar())
+                .runSimulation(100_000, 130, TestFixtures.TICKERS, List.of(0.3, 0.7), 5, false, options);
+        SimulationResult simd = new MonteCarloEngine(data, vector)
+                .runSimulation(100_000, 130, TestFixtures.TICKERS, List.of(0.3, 0.7), 5, false, options);
+        assertArrayEquals(bits(scalar.finalValues()), bits(simd.finalValues()));
+        assertArrayEquals(bits(new double[]{scalar.precision().var(), scalar.precision().cvar(), scalar.precision().varStdError()}),
+                bits(new double[]{simd.precision().var(), simd.precision().cvar(), simd.precision().varStdError()}));
+    }
+
+    private static double[][] initialState(Random random, int w) {
+        double[][] state = new double[3][w];
+        for (int p = 0; p < w; p++) {
+            state[0][p] = 100_000 * (0.5 + random.nextDouble());
+            state[1][p] = 1e-4 * random.nextDouble();
+            state[2][p] = 0.0;
+        }
+        return state;
+    }
+
+    private static double[][] copy(double[][] a) {
+        double[][] out = new double[a.length][];
+        for (int i = 0; i < a.length; i++) out[i] = a[i].clone();
+        return out;
+    }
+
+    private static long[] bits(double[] values) {
+        long[] out = new long[values.length];
+        for (int i = 0; i < values.length; i++) out[i] = Double.doubleToRawLongBits(values[i]);
+        return out;
+    }
+}
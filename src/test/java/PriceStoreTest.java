@@ -0,0 +1,154 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/** Magazyn notowań na dysku oraz jego użycie przez {@link DataService}: dopisywanie brakujących sesji i tryb offline. */
+class PriceStoreTest {
+
+    private static final String HEADER = "Data,Otwarcie,Najwyzszy,Najnizszy,Zamkniecie,Wolumen\n";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void appendsRowsAndRemembersSyncDay() throws IOException {
+        PriceStore store = new PriceStore(directory);
+        assertNull(store.read("ABC"));
+
+        store.append("ABC", series(100, 10.0, 11.0, 12.0), LocalDate.ofEpochDay(200));
+        store.append("ABC", series(103, 13.0, 14.0), LocalDate.ofEpochDay(201));
+        PriceStore.Entry entry = store.read("abc");
+        assertArrayEquals(new int[]{100, 101, 102, 103, 104}, entry.series().dates());
+        assertArrayEquals(new double[]{10, 11, 12, 13, 14}, entry.series().closes());
+        assertEquals(LocalDate.ofEpochDay(201), entry.lastSync());
+
+        store.append("ABC", PriceSeries.empty(), LocalDate.ofEpochDay(202));
+        assertEquals(5, store.read("ABC").series().size());
+        assertEquals(LocalDate.ofEpochDay(202), store.read("ABC").lastSync());
+    }
+
+    @Test
+    void rejectsForeignFile() throws IOException {
+        Files.write(directory.resolve(PriceStore.fileStem("ABC") + ".bin"), new byte[32]);
+        assertThrows(IOException.class, () -> new PriceStore(directory).read("ABC"));
+    }
+
+    @Test
+    void fileNamesEncodeSpecialCharacters() {
+        assertEquals("wig20", PriceStore.fileStem(" WIG20 "));
+        assertEquals("_5espx", PriceStore.fileStem("^SPX"));
+        assertEquals("eurpln.f", PriceStore.fileStem("EURPLN.F"));
+    }
+
+    @Test
+    void importsCsvFixtureWithItsModificationDay() throws IOException {
+        Path csv = directory.resolve("abc.csv");
+        Files.writeString(csv, HEADER + "2020-01-02,1,1,1,10,0\n2020-01-03,1,1,1,11,0\n");
+        LocalDate modified = LocalDate.of(2021, 6, 15);
+        Files.setLastModifiedTime(csv, FileTime.from(modified.atTime(12, 0).atZone(ZoneId.systemDefault()).toInstant()));
+
+        PriceStore.Entry imported = new PriceStore(directory).read("ABC");
+        assertEquals(modified, imported.lastSync());
+        assertArrayEquals(new double[]{10, 11}, imported.series().closes());
+        assertTrue(Files.exists(directory.resolve("abc.bin")));
+
+        PriceStore.Entry reread = new PriceStore(directory).read("ABC");
+        assertEquals(modified, reread.lastSync());
+        assertArrayEquals(imported.series().dates(), reread.series().dates());
+    }
+
+    @Test
+    void downloadsOnlySessionsAfterTheStoredOnesAndSkipsToday() throws Exception {
+        LocalDate today = LocalDate.now();
+        LocalDate last = today.minusDays(10);
+        PriceStore store = new PriceStore(directory);
+        store.append("ABC", series((int) last.minusDays(1).toEpochDay(), 50.0, 51.0), today.minusDays(3));
+
+        try (StooqStub stub = new StooqStub((ticker, query, attempt) -> {
+            String body = HEADER
+                    + row(last, 51.0) // już zapisana sesja - pomijana
+                    + row(last.plusDays(1), 52.0)
+                    + row(last.plusDays(2), 53.0)
+                    + row(today, 99.0); // sesja jeszcze niezamknięta
+            return StooqStub.Response.ok(body);
+        })) {
+            DataService service = new DataService(store, false, stub.baseUrl());
+            PriceSeries prices = service.getPrices("ABC");
+            assertArrayEquals(new double[]{50, 51, 52, 53}, prices.closes());
+            assertEquals(Map.of("s", "abc", "i", "d",
+                            "d1", last.plusDays(1).format(DateTimeFormatter.BASIC_ISO_DATE),
+                            "d2", today.format(DateTimeFormatter.BASIC_ISO_DATE)),
+                    query(stub.requests().getFirst()));
+
+            PriceStore.Entry stored = store.read("ABC");
+            assertArrayEquals(prices.closes(), stored.series().closes());
+            assertEquals(today, stored.lastSync());
+
+            // zsynchronizowane dziś: kolejne usługi czytają dysk bez sieci
+            new DataService(store, false, stub.baseUrl()).getPrices("ABC");
+            assertEquals(1, stub.requests().size());
+        }
+    }
+
+    @Test
+    void offlineServesStoredDataWithoutNetwork() throws Exception {
+        PriceStore store = new PriceStore(directory);
+        store.append("ABC", series(100, 10.0, 11.0, 12.0), LocalDate.ofEpochDay(100));
+        try (StooqStub stub = new StooqStub((ticker, query, attempt) -> {
+            fail("tryb offline nie może łączyć się z siecią");
+            return null;
+        })) {
+            DataService service = new DataService(store, true, stub.baseUrl());
+            assertArrayEquals(new double[]{10, 11, 12}, service.getPrices("ABC").closes());
+            Exception missing = assertThrows(Exception.class, () -> service.getPrices("XYZ"));
+            assertTrue(missing.getMessage().startsWith("Tryb offline"), missing.getMessage());
+            assertEquals(0, stub.requests().size());
+        }
+    }
+
+    @Test
+    void fallsBackToStoredDataWhenDownloadFails() throws Exception {
+        PriceStore store = new PriceStore(directory);
+        store.append("ABC", series(100, 10.0, 11.0), LocalDate.ofEpochDay(100));
+        try (StooqStub stub = new StooqStub((ticker, query, attempt) -> new StooqStub.Response(404, ""))) {
+            DataService service = new DataService(store, false, stub.baseUrl());
+            assertArrayEquals(new double[]{10, 11}, service.getPrices("ABC").closes());
+            assertEquals(LocalDate.ofEpochDay(100), store.read("ABC").lastSync());
+        }
+    }
+
+    private static PriceSeries series(int firstDay, double... closes) {
+        int[] dates = new int[closes.length];
+        for (int i = 0; i < closes.length; i++) dates[i] = firstDay + i;
+        return new PriceSeries(dates, closes);
+    }
+
+    private static String row(LocalDate day, double close) {
+        return day + ",1,1,1," + close + ",0\n";
+    }
+
+    private static Map<String, String> query(String raw) {
+        Map<String, String> out = new HashMap<>();
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            out.put(pair.substring(0, eq), pair.substring(eq + 1));
+        }
+        return out;
+    }
+}
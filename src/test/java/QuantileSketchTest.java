@@ -0,0 +1,173 @@
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.DoubleUnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuantileSketchTest {
+
+    private static final int N = 200_000;
+    private static final double[] QUANTILES = {0.0005, 0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 0.999};
+
+    /** Błąd rzędu (ułamek pozycji) mieści się w 2·√(q(1-q))/δ - dwukrotności przybliżenia z opisu klasy. */
+    @Test
+    void rankErrorWithinDocumentedBound() {
+        Random random = new Random(1);
+        DoubleUnaryOperator[] shapes = {
+                g -> g,
+                g -> 100_000 * Math.exp(0.2 * g),
+                g -> g / Math.sqrt(chiSquare3(random) / 3), // t-Studenta (3), grube ogony
+        };
+        for (DoubleUnaryOperator shape : shapes) {
+            for (double compression : new double[]{100, QuantileSketch.DEFAULT_COMPRESSION}) {
+                double[] values = new double[N];
+                for (int i = 0; i < N; i++) values[i] = shape.applyAsDouble(random.nextGaussian());
+                double[] sorted = values.clone();
+                Arrays.sort(sorted);
+
+                QuantileSketch whole = new QuantileSketch(compression);
+                QuantileSketch[] parts = new QuantileSketch[8];
+                for (int p = 0; p < parts.length; p++) parts[p] = new QuantileSketch(compression);
+                for (int i = 0; i < N; i++) {
+                    whole.add(values[i]);
+                    parts[i % parts.length].add(values[i]);
+                }
+                QuantileSketch merged = new QuantileSketch(compression);
+                for (QuantileSketch part : parts) merged.merge(part);
+
+                for (QuantileSketch sketch : new QuantileSketch[]{whole, merged}) {
+                    assertTrue(sketch.size() <= Math.PI * compression / 2, "liczba centroidów " + sketch.size());
+                    for (double q : QUANTILES) {
+                        double error = rankError(sorted, sketch.valueAtRank(q * N), q * N) / N;
+                        double bound = 2 * Math.sqrt(q * (1 - q)) / compression + 1.0 / N;
+                        assertTrue(error <= bound, String.format("q=%s δ=%s: błąd rzędu %.2e > %.2e", q, compression, error, bound));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void cvarOfPortfolioValuesWithinHalfPercent() {
+        Random random = new Random(2);
+        double[] values = new double[N];
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < N; i++) {
+            values[i] = 100_000 * Math.exp(0.05 + 0.2 * random.nextGaussian());
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+        for (double tail : new double[]{0.01, 0.05}) {
+            int count = (int) (tail * N) + 1;
+            double exact = Arrays.stream(values, 0, count).average().orElseThrow();
+            assertEquals(exact, sketch.meanOfLowest(count), 0.005 * exact, "CVaR ogona " + tail);
+        }
+    }
+
+    @Test
+    void countMeanAndExtremesAreExact() {
+        Random random = new Random(3);
+        QuantileSketch sketch = new QuantileSketch();
+        double sum = 0.0, min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < 50_000; i++) {
+            double v = random.nextGaussian();
+            sketch.add(v);
+            sum += v;
+            min = Math.min(min, v);
+            max = Math.max(max, v);
+        }
+        assertEquals(50_000, sketch.count());
+        assertEquals(sum / 50_000, sketch.mean(), 1e-12);
+        assertEquals(min, sketch.min());
+        assertEquals(max, sketch.max());
+        assertTrue(sketch.valueAtRank(0) >= min && sketch.valueAtRank(50_000 - 1) <= max);
+    }
+
+    @Test
+    void smallInputsAreExact() {
+        QuantileSketch sketch = new QuantileSketch();
+        double[] values = {5, 1, 4, 2, 3};
+        for (double v : values) sketch.add(v);
+        for (int rank = 0; rank < values.length; rank++) {
+            assertEquals(rank + 1.0, sketch.valueAtRank(rank));
+        }
+        assertEquals(1.5, sketch.meanOfLowest(2));
+        assertEquals(0.0, new QuantileSketch().valueAtRank(3));
+    }
+
+    @Test
+    void bytesRoundTripPreservesQuantiles() {
+        Random random = new Random(4);
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < 30_000; i++) sketch.add(random.nextGaussian());
+        QuantileSketch copy = QuantileSketch.fromBytes(sketch.toBytes());
+        assertEquals(sketch.count(), copy.count());
+        assertEquals(sketch.mean(), copy.mean());
+        for (double q : QUANTILES) {
+            assertEquals(sketch.valueAtRank(q * 30_000), copy.valueAtRank(q * 30_000));
+        }
+    }
+
+    @Test
+    void fromBytesRejectsDamagedInput() {
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < 1_000; i++) sketch.add(i);
+        byte[] bytes = sketch.toBytes();
+        int countOffset = 4 + 4 + 8 * 4;
+
+        assertThrows(IllegalArgumentException.class, () -> QuantileSketch.fromBytes(new byte[0]));
+        assertThrows(IllegalArgumentException.class, () -> QuantileSketch.fromBytes(Arrays.copyOf(bytes, countOffset)));
+        assertThrows(IllegalArgumentException.class, () -> QuantileSketch.fromBytes(Arrays.copyOf(bytes, bytes.length - 1)));
+        assertThrows(IllegalArgumentException.class, () -> QuantileSketch.fromBytes(Arrays.copyOf(bytes, bytes.length + 16)));
+        for (int n : new int[]{-1, Integer.MIN_VALUE, Integer.MAX_VALUE, 1_000_000}) {
+            byte[] damaged = bytes.clone();
+            ByteBuffer.wrap(damaged).putInt(countOffset, n);
+            assertThrows(IllegalArgumentException.class, () -> QuantileSketch.fromBytes(damaged), "n=" + n);
+        }
+        for (double compression : new double[]{Double.NaN, 0, 1e300, Double.POSITIVE_INFINITY}) {
+            byte[] damaged = bytes.clone();
+            ByteBuffer.wrap(damaged).putDouble(8, compression);
+            assertThrows(IllegalArgumentException.class, () -> QuantileSketch.fromBytes(damaged), "δ=" + compression);
+        }
+        byte[] zeroWeight = bytes.clone();
+        ByteBuffer.wrap(zeroWeight).putDouble(countOffset + 4 + 8, 0.0);
+        assertThrows(IllegalArgumentException.class, () -> QuantileSketch.fromBytes(zeroWeight));
+    }
+
+    @Test
+    void mergeRequiresSameCompression() {
+        QuantileSketch a = new QuantileSketch(100);
+        QuantileSketch b = new QuantileSketch(200);
+        b.add(1.0);
+        assertThrows(IllegalArgumentException.class, () -> a.merge(b));
+        assertEquals(0, a.count());
+        a.merge(new QuantileSketch(100));
+    }
+
+    /** Odległość rzędu {@code target} od przedziału pozycji, które wartość {@code value} zajmuje w {@code sorted}. */
+    private static double rankError(double[] sorted, double value, double target) {
+        int lo = lowerBound(sorted, value, false);
+        int hi = lowerBound(sorted, value, true);
+        return Math.max(0, Math.max(lo - target, target - hi));
+    }
+
+    private static int lowerBound(double[] a, double x, boolean inclusive) {
+        int lo = 0, hi = a.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < x || (inclusive && a[mid] == x)) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private static double chiSquare3(Random random) {
+        double a = random.nextGaussian(), b = random.nextGaussian(), c = random.nextGaussian();
+        return a * a + b * b + c * c;
+    }
+}
@@ -0,0 +1,144 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RiskServiceTest {
+
+    private final RiskService riskService = new RiskService();
+
+    @Test
+    void summarizeMatchesSortedReferenceForAllLevels() {
+        Random random = new Random(7);
+        for (int n : new int[]{1, 2, 3, 19, 20, 21, 200, 1000, 10_007}) {
+            double[] values = new double[n];
+            for (int i = 0; i < n; i++) values[i] = 100_000 * Math.exp(0.2 * random.nextGaussian());
+            assertMatchesReference(values, RiskSummary.standardLevels());
+        }
+    }
+
+    @Test
+    void summarizeCountsTiesAtVaRInCVaR() {
+        Random random = new Random(11);
+        double[] values = new double[5_000];
+        // mało różnych wartości: remisy na VaR przechodzą przez granice kilku poziomów naraz
+        for (int i = 0; i < values.length; i++) values[i] = random.nextInt(12);
+        assertMatchesReference(values, RiskSummary.standardLevels());
+
+        double[] constant = new double[1_000];
+        Arrays.fill(constant, 42.0);
+        assertMatchesReference(constant, RiskSummary.standardLevels());
+    }
+
+    @Test
+    void summarizeAcceptsUnsortedAndExtremeLevels() {
+        Random random = new Random(3);
+        double[] values = new double[777];
+        for (int i = 0; i < values.length; i++) values[i] = random.nextGaussian();
+        assertMatchesReference(values, 0.99, 0.5, 0.999, 0.9, 0.0, 1.0);
+    }
+
+    @Test
+    void summarizeDoesNotModifyInput() {
+        double[] values = {5, 3, 9, 1, 7, 2, 8};
+        double[] copy = values.clone();
+        riskService.summarize(values, RiskSummary.standardLevels());
+        assertTrue(Arrays.equals(copy, values));
+    }
+
+    @Test
+    void summarizeAgreesWithSingleLevelMethods() {
+        Random random = new Random(5);
+        double[] values = new double[4_321];
+        for (int i = 0; i < values.length; i++) values[i] = random.nextGaussian();
+        RiskSummary summary = riskService.summarize(values, RiskSummary.standardLevels());
+        for (double c : RiskSummary.standardLevels()) {
+            assertEquals(riskService.calculateVaR(values, c), summary.var(c));
+            assertEquals(riskService.calculateCVaR(values, c), summary.cvar(c), 1e-12);
+        }
+    }
+
+    @Test
+    void selectPlacesKthSmallestAndPartitions() {
+        Random random = new Random(13);
+        int n = 2_000;
+        double[][] inputs = {
+                random.doubles(n).toArray(),
+                sorted(random.doubles(n).toArray()),
+                reversed(sorted(random.doubles(n).toArray())),
+                organPipe(n),
+                random.ints(n, 0, 5).asDoubleStream().toArray(),
+        };
+        for (double[] input : inputs) {
+            double[] expected = sorted(input.clone());
+            for (int k : new int[]{0, 1, n / 20, n / 2, n - 2, n - 1}) {
+                double[] a = input.clone();
+                RiskService.select(a, 0, n - 1, k);
+                assertEquals(expected[k], a[k]);
+                for (int i = 0; i < k; i++) assertTrue(a[i] <= a[k]);
+                for (int i = k + 1; i < n; i++) assertTrue(a[i] >= a[k]);
+                assertTrue(Arrays.equals(expected, sorted(a)), "select musi być permutacją wejścia");
+            }
+        }
+    }
+
+    @Test
+    void selectWorksOnSubrange() {
+        double[] a = {9, 9, 5, 1, 4, 2, 3, 0, 0};
+        RiskService.select(a, 2, 6, 4);
+        assertEquals(3.0, a[4]);
+        assertEquals(9.0, a[0]);
+        assertEquals(0.0, a[8]);
+    }
+
+    /** VaR = sorted[⌊(1-c)·n⌋], CVaR = średnia wartości ≤ VaR (z remisami), jak w opisie summarize. */
+    private void assertMatchesReference(double[] values, double... confidences) {
+        RiskSummary summary = riskService.summarize(values, confidences);
+        double[] sorted = sorted(values.clone());
+        int n = values.length;
+        assertEquals(n, summary.count());
+        assertEquals(sorted[0], summary.min());
+        assertEquals(sorted[n - 1], summary.max());
+        assertEquals(Arrays.stream(values).average().orElseThrow(), summary.mean(), 1e-9 * Math.abs(summary.mean()) + 1e-12);
+        for (int j = 0; j < confidences.length; j++) {
+            int k = (int) ((1 - confidences[j]) * n);
+            if (k >= n) {
+                assertEquals(0.0, summary.var()[j]);
+                continue;
+            }
+            double var = sorted[k];
+            double sum = 0.0;
+            int count = 0;
+            for (double v : sorted) {
+                if (v > var) break;
+                sum += v;
+                count++;
+            }
+            assertEquals(var, summary.var()[j], "VaR dla poziomu " + confidences[j]);
+            assertEquals(sum / count, summary.cvar()[j], 1e-9 * Math.abs(var) + 1e-12, "CVaR dla poziomu " + confidences[j]);
+        }
+    }
+
+    private static double[] sorted(double[] a) {
+        Arrays.sort(a);
+        return a;
+    }
+
+    private static double[] reversed(double[] a) {
+        for (int i = 0, j = a.length - 1; i < j; i++, j--) {
+            double t = a[i];
+            a[i] = a[j];
+            a[j] = t;
+        }
+        return a;
+    }
+
+    private static double[] organPipe(int n) {
+        double[] a = new double[n];
+        for (int i = 0; i < n; i++) a[i] = Math.min(i, n - 1 - i);
+        return a;
+    }
+}
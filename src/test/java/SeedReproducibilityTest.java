@@ -0,0 +1,106 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ten sam seed daje bit w bit te same wyniki niezależnie od liczby wątków puli obliczeniowej.
+ * Rozmiar {@link ComputePool} ustalany jest przy starcie JVM, więc każda liczba wątków to osobny
+ * proces ({@code -XX:ActiveProcessorCount}) liczący {@link #fingerprint()}.
+ */
+class SeedReproducibilityTest {
+
+    private static final int[] THREAD_COUNTS = {1, 2, 4};
+    private static final long PROCESS_TIMEOUT_SECONDS = 300;
+
+    @Test
+    void sameSeedGivesIdenticalResultsForAnyThreadCount() throws Exception {
+        List<String> reference = fingerprint();
+        List<Integer> processors = new ArrayList<>();
+        for (int threads : THREAD_COUNTS) {
+            List<String> lines = runProbe(threads);
+            processors.add(Integer.parseInt(lines.getFirst()));
+            assertEquals(reference, lines.subList(1, lines.size()), "wyniki przy " + threads + " wątkach");
+        }
+        assertEquals(List.of(1, 2, 4), processors, "proces potomny nie przyjął liczby procesorów");
+    }
+
+    @Test
+    void differentSeedsGiveDifferentResults() throws Exception {
+        assertNotEquals(single(VarianceReduction.NONE, 1), single(VarianceReduction.NONE, 2));
+    }
+
+    /** Skróty wartości końcowych i raportów dla każdej metody redukcji wariancji oraz modelu wieloaktywowego. */
+    static List<String> fingerprint() throws Exception {
+        List<String> lines = new ArrayList<>();
+        for (VarianceReduction reduction : VarianceReduction.values()) {
+            lines.add(reduction.name() + " " + single(reduction, 42));
+        }
+        CorrelatedMonteCarloEngine correlated = new CorrelatedMonteCarloEngine(TestFixtures.offlineDataService());
+        for (VarianceReduction reduction : VarianceReduction.values()) {
+            CorrelatedSimulationResult result = correlated.runSimulation(100_000, 63, TestFixtures.TICKERS, List.of(0.4, 0.6),
+                    5, false, options(reduction, 42));
+            lines.add("correlated " + reduction.name() + " " + describe(result.portfolio())
+                    + " contributions=" + Arrays.toString(result.cvarContributions()));
+        }
+        return lines;
+    }
+
+    private static String single(VarianceReduction reduction, long seed) throws Exception {
+        MonteCarloEngine engine = new MonteCarloEngine(TestFixtures.offlineDataService());
+        return describe(engine.runSimulation(100_000, 63, TestFixtures.TICKERS, List.of(0.4, 0.6), 5, false, options(reduction, seed)));
+    }
+
+    /** Liczba ścieżek wielokrotnie większa od bloku, by wątki dzieliły się pracą. */
+    private static SimulationOptions options(VarianceReduction reduction, long seed) {
+        return SimulationOptions.defaults()
+                .withNumSimulations(5_003)
+                .withSeed(seed)
+                .withStorage(SimulationOptions.PathStorage.FINAL_VALUES)
+                .withReduction(reduction)
+                .withHorizonProfile();
+    }
+
+    private static String describe(SimulationResult result) {
+        double[] bands = new double[result.bands().levels().length * (result.bands().horizon() + 1)];
+        for (int j = 0, k = 0; j < result.bands().levels().length; j++) {
+            for (int d = 0; d <= result.bands().horizon(); d++) bands[k++] = result.bands().value(j, d);
+        }
+        PrecisionReport p = result.precision();
+        return "finals=" + Arrays.hashCode(result.finalValues())
+                + " bands=" + Arrays.hashCode(bands)
+                + " profile=" + (result.horizons() == null ? "-" : result.horizons().estimate(100_000, 30).summary().mean())
+                + " precision=" + Arrays.toString(new double[]{p.mean(), p.meanStdError(), p.var(), p.varStdError(), p.cvar(), p.cvarStdError()});
+    }
+
+    private static List<String> runProbe(int threads) throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process process = new ProcessBuilder(java, "-XX:ActiveProcessorCount=" + threads,
+                "--add-modules", "jdk.incubator.vector",
+                "-cp", System.getProperty("java.class.path"), Probe.class.getName())
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertTrue(process.waitFor(PROCESS_TIMEOUT_SECONDS, TimeUnit.SECONDS), "proces potomny nie zakończył się");
+        assertEquals(0, process.exitValue(), "proces potomny zakończył się błędem:\n" + output);
+        return output.lines().toList();
+    }
+
+    /** Punkt wejścia procesu potomnego: liczba procesorów, a po niej {@link #fingerprint()}. */
+    static final class Probe {
+        public static void main(String[] args) throws Exception {
+            System.out.println(Runtime.getRuntime().availableProcessors());
+            for (String line : fingerprint()) System.out.println(line);
+            System.exit(0);
+        }
+    }
+}
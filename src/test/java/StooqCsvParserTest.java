@@ -0,0 +1,157 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StooqCsvParserTest {
+
+    private static final String HEADER = "Data,Otwarcie,Najwyzszy,Najnizszy,Zamkniecie,Wolumen\n";
+
+    @Test
+    void emptyInputGivesEmptySeries() throws IOException {
+        StooqCsvParser parser = new StooqCsvParser().read(stream(""));
+        assertEquals(0, parser.size());
+        assertTrue(parser.toSeries().isEmpty());
+        assertEquals(0, parser.toReturns().size());
+        assertEquals(0, StooqCsvParser.parse(stream(HEADER)).size());
+    }
+
+    @Test
+    void stooqNoDataResponseIsSkipped() throws IOException {
+        assertEquals(0, StooqCsvParser.parse(stream("Brak danych")).size());
+    }
+
+    @Test
+    void parsesDatesClosesAndReturns() throws IOException {
+        StooqCsvParser parser = new StooqCsvParser().read(stream(HEADER
+                + "2024-02-28,10,11,9,10.00,100\n"
+                + "2024-02-29,10,11,9,12.50,100\n"
+                + "2024-03-01,10,11,9,10,100\n"));
+        PriceSeries series = parser.toSeries();
+        assertArrayEquals(new int[]{epochDay("2024-02-28"), epochDay("2024-02-29"), epochDay("2024-03-01")}, series.dates());
+        assertArrayEquals(new double[]{10.0, 12.5, 10.0}, series.closes());
+
+        ReturnSeries returns = parser.toReturns();
+        assertArrayEquals(new int[]{epochDay("2024-02-29"), epochDay("2024-03-01")}, returns.dates());
+        assertArrayEquals(series.returns().returns(), returns.returns());
+        assertArrayEquals(new double[]{0.25, -0.2}, returns.returns());
+    }
+
+    @Test
+    void crlfAndMissingFinalNewlineMatchLf() throws IOException {
+        String lf = HEADER + "2023-01-02,1,1,1,101.5,7\n2023-01-03,1,1,1,99.25,7\n2023-01-04,1,1,1,100,7\n";
+        PriceSeries expected = StooqCsvParser.parse(stream(lf));
+        assertEquals(3, expected.size());
+
+        assertSameSeries(expected, StooqCsvParser.parse(stream(lf.replace("\n", "\r\n"))));
+        assertSameSeries(expected, StooqCsvParser.parse(stream(lf.substring(0, lf.length() - 1))));
+        assertSameSeries(expected, StooqCsvParser.parse(stream(lf.replace("\n", "\r\n").substring(0, lf.length() + 3))));
+    }
+
+    @Test
+    void malformedRowsAreSkipped() throws IOException {
+        PriceSeries series = StooqCsvParser.parse(stream(HEADER
+                + "2023-01-02,1,1,1,100,7\n"
+                + "\n"
+                + "2023-13-01,1,1,1,100,7\n"      // miesiąc spoza zakresu
+                + "2023-02-29,1,1,1,100,7\n"      // brak 29 lutego w roku nieprzestępnym
+                + "2023-1-05,1,1,1,100,7\n"       // zły format daty
+                + "2023-01-06,1,1,1\n"            // brak kolumny zamknięcia
+                + "2023-01-09,1,1,1,abc,7\n"      // cena nieliczbowa
+                + "2023-01-10,1,1,1,,7\n"         // pusta cena
+                + "2023-01-1x,1,1,1,100,7\n"
+                + "2023-01-11X1,1,1,100,7\n"
+                + "2023-01-12,1,1,1,105.5,7\n"));
+        assertArrayEquals(new int[]{epochDay("2023-01-02"), epochDay("2023-01-12")}, series.dates());
+        assertArrayEquals(new double[]{100.0, 105.5}, series.closes());
+    }
+
+    @Test
+    void closeWithoutVolumeColumnIsParsed() throws IOException {
+        PriceSeries series = StooqCsvParser.parse(stream("2023-01-02,1,1,1,100.25\n2023-01-03,1,1,1,101\r\n"));
+        assertArrayEquals(new double[]{100.25, 101.0}, series.closes());
+    }
+
+    @Test
+    void numbersMatchDoubleParseDouble() throws IOException {
+        String[] closes = {"0.1", "123.456", "+7.5", "-0.003", "5.", ".25", "1e3", "2.5E-2", "12345678901234567890.5",
+                "0.30000000000000004", "9007199254740993", "1.000000000000000000000000001"};
+        StringBuilder csv = new StringBuilder(HEADER);
+        LocalDate day = LocalDate.of(2020, 1, 1);
+        for (String close : closes) {
+            csv.append(day).append(",1,1,1,").append(close).append(",0\n");
+            day = day.plusDays(1);
+        }
+        PriceSeries series = StooqCsvParser.parse(stream(csv.toString()));
+        assertEquals(closes.length, series.size());
+        for (int i = 0; i < closes.length; i++) {
+            assertEquals(Double.parseDouble(closes[i]), series.closes()[i], closes[i]);
+        }
+    }
+
+    @Test
+    void datesMatchLocalDateAcrossCenturies() throws IOException {
+        String[] dates = {"1900-02-28", "1900-03-01", "1970-01-01", "1999-12-31", "2000-02-29", "2100-03-01"};
+        StringBuilder csv = new StringBuilder();
+        for (String date : dates) csv.append(date).append(",1,1,1,1,0\n");
+        int[] parsed = StooqCsvParser.parse(stream(csv.toString())).dates();
+        for (int i = 0; i < dates.length; i++) {
+            assertEquals(epochDay(dates[i]), parsed[i], dates[i]);
+        }
+    }
+
+    @Test
+    void lineLongerThanBufferAndByteByByteReads() throws IOException {
+        String junk = "x".repeat(200_000);
+        String csv = HEADER + junk + "\n2023-01-02,1,1,1,100,7\n2023-01-03,1,1,1,110,7\n";
+        PriceSeries whole = StooqCsvParser.parse(stream(csv));
+        assertArrayEquals(new double[]{100.0, 110.0}, whole.closes());
+
+        InputStream trickle = new ByteArrayInputStream(csv.getBytes(StandardCharsets.US_ASCII)) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+        assertSameSeries(whole, StooqCsvParser.parse(trickle));
+    }
+
+    @Test
+    void reusedParserDoesNotKeepPreviousRows() throws IOException {
+        StooqCsvParser parser = new StooqCsvParser();
+        StringBuilder big = new StringBuilder(HEADER);
+        LocalDate day = LocalDate.of(2010, 1, 1);
+        for (int i = 0; i < 3_000; i++) {
+            big.append(day).append(",1,1,1,").append(100 + i % 7).append(",0\n");
+            day = day.plusDays(1);
+        }
+        assertEquals(3_000, parser.read(stream(big.toString())).size());
+
+        parser.read(stream("2023-01-02,1,1,1,50,7\n2023-01-03,1,1,1,55,7\n"));
+        assertSameSeries(StooqCsvParser.parse(stream("2023-01-02,1,1,1,50,7\n2023-01-03,1,1,1,55,7\n")), parser.toSeries());
+        assertArrayEquals(new double[]{0.1}, parser.toReturns().returns(), 1e-15);
+
+        parser.read(stream(""));
+        assertEquals(0, parser.size());
+    }
+
+    private static void assertSameSeries(PriceSeries expected, PriceSeries actual) {
+        assertArrayEquals(expected.dates(), actual.dates());
+        assertArrayEquals(expected.closes(), actual.closes());
+    }
+
+    private static InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static int epochDay(String date) {
+        return (int) LocalDate.parse(date).toEpochDay();
+    }
+}
@@ -0,0 +1,104 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lokalna zaślepka usługi Stooq ({@code /q/d/l/?s=ticker&i=d[&d1=..&d2=..]}) na losowym porcie.
+ * Odpowiedź wybiera {@link Handler}; zaślepka zapisuje zapytania i najwyższą liczbę
+ * obsługiwanych naraz połączeń.
+ */
+final class StooqStub implements AutoCloseable {
+
+    record Response(int status, String body) {
+        static Response ok(String body) {
+            return new Response(200, body);
+        }
+    }
+
+    @FunctionalInterface
+    interface Handler {
+        /** @param attempt numer zapytania o ten ticker (od 1) */
+        Response respond(String ticker, Map<String, String> query, int attempt) throws Exception;
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private final Map<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+
+    StooqStub(Handler handler) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/q/d/l/", exchange -> handle(exchange, handler));
+        server.start();
+    }
+
+    /** Adres bazowy dla {@link DataService#DataService(PriceStore, boolean, String)}. */
+    String baseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/q/d/l/";
+    }
+
+    /** Zapytania w kolejności nadejścia (część po „?”). */
+    List<String> requests() {
+        return List.copyOf(requests);
+    }
+
+    int requestsFor(String ticker) {
+        AtomicInteger n = attempts.get(ticker);
+        return n == null ? 0 : n.get();
+    }
+
+    int maxActive() {
+        return maxActive.get();
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) throws IOException {
+        int now = active.incrementAndGet();
+        maxActive.accumulateAndGet(now, Math::max);
+        try {
+            String raw = exchange.getRequestURI().getRawQuery();
+            requests.add(raw);
+            Map<String, String> query = new ConcurrentHashMap<>();
+            for (String pair : raw.split("&")) {
+                int eq = pair.indexOf('=');
+                query.put(pair.substring(0, eq), pair.substring(eq + 1));
+            }
+            String ticker = query.get("s");
+            int attempt = attempts.computeIfAbsent(ticker, t -> new AtomicInteger()).incrementAndGet();
+            Response response;
+            try {
+                response = handler.respond(ticker, query, attempt);
+            } catch (Exception e) {
+                response = new Response(500, e.toString());
+            }
+            byte[] body = response.body().getBytes(StandardCharsets.US_ASCII);
+            exchange.sendResponseHeaders(response.status(), body.length == 0 ? -1 : body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            active.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,60 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Dane testowe bez sieci: notowania w formacie Stooq generowane deterministycznie procesem GARCH
+ * (te same w każdym uruchomieniu i w każdej JVM) oraz usługa danych offline nad nimi.
+ */
+final class TestFixtures {
+
+    /** Instrumenty z generowanych plików CSV. */
+    static final List<String> TICKERS = List.of("TEST_A", "TEST_B");
+
+    private static final LocalDate FIRST_SESSION = LocalDate.of(2018, 1, 2);
+    private static final int SESSIONS = 6 * 252;
+
+    private TestFixtures() {
+    }
+
+    /** Plik CSV instrumentu {@code TICKERS.get(index)}: sesje w dni robocze, ceny z procesu GARCH(1,1). */
+    static String csv(int index) {
+        Random random = new Random(1000 + index);
+        double omega = 2e-6, alpha = 0.06 + 0.03 * index, beta = 0.90 - 0.03 * index;
+        double variance = omega / (1 - alpha - beta);
+        double common = 0.0;
+        double price = 40.0 + 25.0 * index;
+        StringBuilder sb = new StringBuilder("Data,Otwarcie,Najwyzszy,Najnizszy,Zamkniecie,Wolumen\n");
+        LocalDate day = FIRST_SESSION;
+        for (int s = 0; s < SESSIONS; s++) {
+            while (day.getDayOfWeek() == DayOfWeek.SATURDAY || day.getDayOfWeek() == DayOfWeek.SUNDAY) day = day.plusDays(1);
+            common = 0.5 * common + random.nextGaussian() * 0.5;
+            double r = 0.0003 + Math.sqrt(variance) * (0.6 * common + 0.8 * random.nextGaussian());
+            price *= 1 + r;
+            variance = omega + alpha * r * r + beta * variance;
+            sb.append(String.format(Locale.ROOT, "%s,%.2f,%.2f,%.2f,%.2f,%d\n",
+                    day, price, price * 1.01, price * 0.99, price, 100_000 + s));
+            day = day.plusDays(1);
+        }
+        return sb.toString();
+    }
+
+    /** Usługa danych w trybie offline nad tymczasowym magazynem z fikstur. */
+    static DataService offlineDataService() throws IOException {
+        Path directory = Files.createTempDirectory("riskfolio-test");
+        directory.toFile().deleteOnExit();
+        for (int i = 0; i < TICKERS.size(); i++) {
+            Path file = directory.resolve(PriceStore.fileStem(TICKERS.get(i)) + ".csv");
+            Files.writeString(file, csv(i), StandardCharsets.US_ASCII);
+            file.toFile().deleteOnExit();
+            directory.resolve(PriceStore.fileStem(TICKERS.get(i)) + ".bin").toFile().deleteOnExit();
+        }
+        return new DataService(new PriceStore(directory), true);
+    }
+}